@@ -66,6 +66,30 @@ public class Playlist {
         return playlist.size();
     }
 
+    /**
+     * Returns the video after the current one without moving the current position.
+     *
+     * @return The next video in the playlist, or null if already at the end.
+     */
+    public Video peekNext() {
+        if ((currentPosition + 1) < size()) {
+            return playlist.get(currentPosition + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the video before the current one without moving the current position.
+     *
+     * @return The previous video in the playlist, or null if already at the beginning.
+     */
+    public Video peekPrevious() {
+        if (currentPosition - 1 >= 0 && currentPosition - 1 < size()) {
+            return playlist.get(currentPosition - 1);
+        }
+        return null;
+    }
+
     /**
      * Moves to the next video in the playlist. If already at the end of the playlist, null will
      * be returned and the position will not change.
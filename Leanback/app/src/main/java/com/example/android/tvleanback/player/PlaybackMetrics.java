@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process wide aggregation of {@link PlaybackSessionSummary} values into in-memory histograms.
+ * Summaries are also handed to any registered {@link Exporter}, and the histograms can be printed
+ * through {@code adb shell dumpsys activity} while playback is showing.
+ */
+public final class PlaybackMetrics {
+
+    private static final String TAG = "PlaybackMetrics";
+
+    /** Receives every finished session, e.g. to upload it to an analytics backend. */
+    public interface Exporter {
+
+        /**
+         * Called on the thread that finished the session.
+         *
+         * @param summary of the finished session.
+         */
+        void export(PlaybackSessionSummary summary);
+    }
+
+    private static final long[] LATENCY_BOUNDS_MS = {
+        100, 250, 500, 1000, 2000, 4000, 8000
+    };
+    // Rebuffer ratios are stored in basis points (1/10000).
+    private static final long[] RATIO_BOUNDS_BP = {
+        0, 10, 50, 100, 500, 1000
+    };
+    private static final long[] BITRATE_BOUNDS = {
+        500000, 1000000, 2500000, 5000000, 10000000
+    };
+
+    private static final PlaybackMetrics sInstance = new PlaybackMetrics();
+
+    private final Histogram mTimeToFirstFrame = new Histogram("ttff_ms", LATENCY_BOUNDS_MS);
+    private final Histogram mSeekLatency = new Histogram("seek_latency_ms", LATENCY_BOUNDS_MS);
+    private final Histogram mRebufferRatio = new Histogram("rebuffer_ratio_bp", RATIO_BOUNDS_BP);
+    private final Histogram mAverageBitrate = new Histogram("avg_bitrate_bps", BITRATE_BOUNDS);
+    private final List<Exporter> mExporters = new CopyOnWriteArrayList<>();
+
+    private long mSessionCount;
+    private long mRebufferCount;
+    private long mBitrateSwitches;
+    private long mDroppedFrames;
+
+    public static PlaybackMetrics getInstance() {
+        return sInstance;
+    }
+
+    private PlaybackMetrics() {
+        // Do nothing.
+    }
+
+    public void addExporter(Exporter exporter) {
+        mExporters.add(exporter);
+    }
+
+    public void removeExporter(Exporter exporter) {
+        mExporters.remove(exporter);
+    }
+
+    /** Adds a finished session to the histograms and hands it to the exporters. */
+    public void record(PlaybackSessionSummary summary) {
+        Log.d(TAG, summary.toString());
+        synchronized (this) {
+            mSessionCount++;
+            mRebufferCount += summary.rebufferCount;
+            mBitrateSwitches += summary.bitrateSwitches;
+            mDroppedFrames += summary.droppedFrames;
+            if (summary.timeToFirstFrameMs >= 0) {
+                mTimeToFirstFrame.add(summary.timeToFirstFrameMs);
+            }
+            for (long latency : summary.seekLatenciesMs) {
+                mSeekLatency.add(latency);
+            }
+            if (summary.playingTimeMs > 0) {
+                mRebufferRatio.add(Math.round(summary.getRebufferRatio() * 10000));
+            }
+            if (summary.averageBitrate >= 0) {
+                mAverageBitrate.add(summary.averageBitrate);
+            }
+        }
+        for (Exporter exporter : mExporters) {
+            exporter.export(summary);
+        }
+    }
+
+    /** Prints the aggregated metrics, e.g. from {@link android.app.Activity#dump}. */
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.println("Playback QoE:");
+        String innerPrefix = prefix + "  ";
+        writer.print(innerPrefix);
+        writer.println(String.format(Locale.US,
+                "sessions=%d rebuffers=%d bitrate_switches=%d dropped_frames=%d",
+                mSessionCount, mRebufferCount, mBitrateSwitches, mDroppedFrames));
+        mTimeToFirstFrame.dump(innerPrefix, writer);
+        mSeekLatency.dump(innerPrefix, writer);
+        mRebufferRatio.dump(innerPrefix, writer);
+        mAverageBitrate.dump(innerPrefix, writer);
+    }
+
+    /** Fixed bucket histogram. Bucket {@code i} counts values up to and including bound {@code i}. */
+    static final class Histogram {
+
+        private final String mName;
+        private final long[] mBounds;
+        private final long[] mCounts;
+        private long mCount;
+        private long mSum;
+        private long mMax;
+
+        Histogram(String name, long[] bounds) {
+            mName = name;
+            mBounds = bounds;
+            mCounts = new long[bounds.length + 1];
+        }
+
+        void add(long value) {
+            int bucket = 0;
+            while (bucket < mBounds.length && value > mBounds[bucket]) {
+                bucket++;
+            }
+            mCounts[bucket]++;
+            mCount++;
+            mSum += value;
+            mMax = Math.max(mMax, value);
+        }
+
+        void dump(String prefix, PrintWriter writer) {
+            writer.print(prefix);
+            writer.print(mName);
+            writer.print(String.format(Locale.US, ": count=%d mean=%d max=%d [",
+                    mCount, mCount == 0 ? 0 : mSum / mCount, mMax));
+            for (int i = 0; i < mCounts.length; i++) {
+                if (i > 0) {
+                    writer.print(", ");
+                }
+                writer.print(i < mBounds.length ? "<=" + mBounds[i] : ">" + mBounds[i - 1]);
+                writer.print(':');
+                writer.print(mCounts[i]);
+            }
+            writer.println(']');
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.os.SystemClock;
+import android.view.Surface;
+
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+/**
+ * Hooks the events of a {@link SimpleExoPlayer} and reports a {@link PlaybackSessionSummary} to
+ * {@link PlaybackMetrics} for every playback session.
+ */
+public class PlaybackQoeCollector extends Player.DefaultEventListener
+        implements VideoRendererEventListener {
+
+    private SimpleExoPlayer mPlayer;
+    private PlaybackSessionTracker mTracker;
+
+    /** Starts listening to the player. */
+    public void attach(SimpleExoPlayer player) {
+        mPlayer = player;
+        mPlayer.addListener(this);
+        mPlayer.setVideoDebugListener(this);
+    }
+
+    /** Ends the current session, if any, and stops listening to the player. */
+    public void detach() {
+        endSession();
+        if (mPlayer != null) {
+            mPlayer.removeListener(this);
+            mPlayer.setVideoDebugListener(null);
+            mPlayer = null;
+        }
+    }
+
+    /**
+     * Ends the current session, if any, and starts a new one. Call right before preparing the
+     * player with new media.
+     */
+    public void startSession(String mediaId) {
+        endSession();
+        mTracker = new PlaybackSessionTracker(mediaId, SystemClock.elapsedRealtime());
+    }
+
+    /** Ends the current session, if any, and records its summary. */
+    public void endSession() {
+        if (mTracker != null) {
+            PlaybackMetrics.getInstance().record(mTracker.finish(SystemClock.elapsedRealtime()));
+            mTracker = null;
+        }
+    }
+
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if (mTracker != null) {
+            mTracker.onPlayerStateChanged(
+                    playWhenReady,
+                    playbackState == Player.STATE_BUFFERING,
+                    playbackState == Player.STATE_READY,
+                    SystemClock.elapsedRealtime());
+        }
+        if (playbackState == Player.STATE_ENDED) {
+            endSession();
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(int reason) {
+        if (mTracker != null && reason == Player.DISCONTINUITY_REASON_SEEK) {
+            mTracker.onSeekStarted(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onVideoInputFormatChanged(Format format) {
+        if (mTracker != null && format.bitrate != Format.NO_VALUE) {
+            mTracker.onBitrateChanged(format.bitrate, SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onDroppedFrames(int count, long elapsedMs) {
+        if (mTracker != null) {
+            mTracker.onDroppedFrames(count);
+        }
+    }
+
+    @Override
+    public void onRenderedFirstFrame(Surface surface) {
+        if (mTracker != null) {
+            mTracker.onRenderedFirstFrame(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onVideoEnabled(DecoderCounters counters) {}
+
+    @Override
+    public void onVideoDecoderInitialized(
+            String decoderName, long initializedTimestampMs, long initializationDurationMs) {}
+
+    @Override
+    public void onVideoSizeChanged(
+            int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {}
+
+    @Override
+    public void onVideoDisabled(DecoderCounters counters) {}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the quality of experience of a single playback session from player events and turns it
+ * into a {@link PlaybackSessionSummary}. Every event carries the time it happened at, in
+ * milliseconds on a monotonic clock, so that the tracker does not depend on a particular clock.
+ *
+ * <p>Buffering that happens after the first frame and is not caused by a seek counts as a rebuffer.
+ */
+public class PlaybackSessionTracker {
+
+    private final String mMediaId;
+    private final long mStartTimeMs;
+
+    private long mFirstFrameTimeMs = -1;
+    private boolean mPlaying;
+    private long mPlayingSinceMs;
+    private long mPlayingTimeMs;
+    private boolean mRebuffering;
+    private long mRebufferSinceMs;
+    private long mRebufferTimeMs;
+    private int mRebufferCount;
+    private long mSeekStartMs = -1;
+    private final List<Long> mSeekLatenciesMs = new ArrayList<>();
+    private int mBitrate = -1;
+    private long mBitrateSinceMs;
+    private double mBitrateTimeProduct;
+    private long mBitrateTimeMs;
+    private int mBitrateSwitches;
+    private int mDroppedFrames;
+
+    public PlaybackSessionTracker(String mediaId, long startTimeMs) {
+        mMediaId = mediaId;
+        mStartTimeMs = startTimeMs;
+    }
+
+    /** Called when the video renderer has rendered a frame after starting, seeking or resetting. */
+    public void onRenderedFirstFrame(long nowMs) {
+        if (mFirstFrameTimeMs < 0) {
+            mFirstFrameTimeMs = nowMs;
+        }
+        if (mSeekStartMs >= 0) {
+            mSeekLatenciesMs.add(nowMs - mSeekStartMs);
+            mSeekStartMs = -1;
+        }
+    }
+
+    /**
+     * Called when the player state changes.
+     *
+     * @param playWhenReady whether the user wants playback to progress.
+     * @param buffering whether the player is waiting for data.
+     * @param ready whether the player is able to play immediately.
+     */
+    public void onPlayerStateChanged(
+            boolean playWhenReady, boolean buffering, boolean ready, long nowMs) {
+        boolean rebuffering =
+                buffering && playWhenReady && mFirstFrameTimeMs >= 0 && mSeekStartMs < 0;
+        if (rebuffering && !mRebuffering) {
+            mRebufferCount++;
+            mRebufferSinceMs = nowMs;
+        } else if (!rebuffering && mRebuffering) {
+            mRebufferTimeMs += nowMs - mRebufferSinceMs;
+        }
+        mRebuffering = rebuffering;
+
+        boolean playing = ready && playWhenReady;
+        if (playing && !mPlaying) {
+            mPlayingSinceMs = nowMs;
+        } else if (!playing && mPlaying) {
+            mPlayingTimeMs += nowMs - mPlayingSinceMs;
+        }
+        mPlaying = playing;
+    }
+
+    /** Called when the user seeks. Buffering until the next rendered frame is not a rebuffer. */
+    public void onSeekStarted(long nowMs) {
+        mSeekStartMs = nowMs;
+        if (mRebuffering) {
+            mRebufferTimeMs += nowMs - mRebufferSinceMs;
+            mRebuffering = false;
+        }
+    }
+
+    /** Called when the video format, and therefore the bitrate, changes. */
+    public void onBitrateChanged(int bitrate, long nowMs) {
+        if (bitrate == mBitrate) {
+            return;
+        }
+        accumulateBitrate(nowMs);
+        if (mBitrate > 0) {
+            mBitrateSwitches++;
+        }
+        mBitrate = bitrate;
+    }
+
+    /** Called when the video renderer drops frames. */
+    public void onDroppedFrames(int count) {
+        mDroppedFrames += count;
+    }
+
+    /** Ends the session and summarizes it. */
+    public PlaybackSessionSummary finish(long nowMs) {
+        onPlayerStateChanged(false, false, false, nowMs);
+        accumulateBitrate(nowMs);
+        long timeToFirstFrameMs = mFirstFrameTimeMs < 0 ? -1 : mFirstFrameTimeMs - mStartTimeMs;
+        long averageBitrate =
+                mBitrateTimeMs == 0 ? -1 : Math.round(mBitrateTimeProduct / mBitrateTimeMs);
+        long[] seekLatencies = new long[mSeekLatenciesMs.size()];
+        for (int i = 0; i < seekLatencies.length; i++) {
+            seekLatencies[i] = mSeekLatenciesMs.get(i);
+        }
+        return new PlaybackSessionSummary(
+                mMediaId,
+                nowMs - mStartTimeMs,
+                timeToFirstFrameMs,
+                mPlayingTimeMs,
+                mRebufferCount,
+                mRebufferTimeMs,
+                averageBitrate,
+                mBitrateSwitches,
+                mDroppedFrames,
+                seekLatencies);
+    }
+
+    private void accumulateBitrate(long nowMs) {
+        if (mBitrate > 0) {
+            long elapsed = nowMs - mBitrateSinceMs;
+            mBitrateTimeProduct += (double) mBitrate * elapsed;
+            mBitrateTimeMs += elapsed;
+        }
+        mBitrateSinceMs = nowMs;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+
+/**
+ * Process scoped pool of {@link SimpleExoPlayer} instances.
+ *
+ * <p>A single {@link DefaultBandwidthMeter} is shared by every player and by the media data
+ * sources, so throughput estimates survive from one video to the next. Players handed back through
+ * {@link #release(SimpleExoPlayer)} are stopped and kept for the next playback session, which
+ * avoids building the renderers, track selector and playback thread again. Idle players are
+ * released when the system reports memory pressure.
+ *
+ * <p>All methods must be called from the main thread.
+ */
+public final class PlayerPool implements ComponentCallbacks2 {
+
+    private static final String TAG = "PlayerPool";
+
+    private static PlayerPool sInstance;
+
+    private final Context mContext;
+    private final DefaultBandwidthMeter mBandwidthMeter = new DefaultBandwidthMeter();
+
+    private SimpleExoPlayer mIdlePlayer;
+
+    /**
+     * Returns the shared pool, creating it on first use.
+     *
+     * @param context used for creating players.
+     * @return the shared pool.
+     */
+    public static synchronized PlayerPool getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PlayerPool(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private PlayerPool(Context context) {
+        mContext = context;
+        mContext.registerComponentCallbacks(this);
+    }
+
+    /** Returns the bandwidth meter shared across playback sessions. */
+    public DefaultBandwidthMeter getBandwidthMeter() {
+        return mBandwidthMeter;
+    }
+
+    /**
+     * Creates an idle player ahead of time, e.g. while the user is looking at the details of a
+     * video, so that starting playback does not pay for it.
+     */
+    public void prewarm() {
+        if (mIdlePlayer == null) {
+            mIdlePlayer = createPlayer();
+        }
+    }
+
+    /**
+     * Hands out a player, reusing the idle one if there is one. The caller owns the player until it
+     * hands it back through {@link #release(SimpleExoPlayer)}.
+     */
+    public SimpleExoPlayer acquire() {
+        SimpleExoPlayer player = mIdlePlayer;
+        mIdlePlayer = null;
+        if (player == null) {
+            player = createPlayer();
+        } else {
+            Log.d(TAG, "Reusing pooled player.");
+        }
+        return player;
+    }
+
+    /**
+     * Takes back a player that is no longer used. The player is stopped and detached from its
+     * surface; it is kept for reuse if the pool has room and released otherwise. Callers must have
+     * removed their own listeners from the player.
+     */
+    public void release(SimpleExoPlayer player) {
+        player.stop();
+        player.setPlayWhenReady(false);
+        player.clearVideoSurface();
+        if (mIdlePlayer == null) {
+            mIdlePlayer = player;
+        } else {
+            player.release();
+        }
+    }
+
+    /** Releases the idle player, if any. */
+    public void trim() {
+        if (mIdlePlayer != null) {
+            Log.d(TAG, "Releasing idle player.");
+            mIdlePlayer.release();
+            mIdlePlayer = null;
+        }
+    }
+
+    private SimpleExoPlayer createPlayer() {
+        TrackSelection.Factory videoTrackSelectionFactory =
+                new AdaptiveTrackSelection.Factory(mBandwidthMeter);
+        return ExoPlayerFactory.newSimpleInstance(
+                mContext, new DefaultTrackSelector(videoTrackSelectionFactory));
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trim();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Do nothing.
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.android.tvleanback.model.Playlist;
+import com.example.android.tvleanback.model.Video;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the beginning of the neighbouring items of a {@link Playlist} into the media cache while
+ * the current item plays, so skipping to them starts from local data instead of paying for a new
+ * connection, probe and initial buffer.
+ *
+ * <p>Preloads are delayed so they do not compete with the start of the current item, run one at a
+ * time on a low priority thread, and never read more than the configured byte budget per item.
+ * Items that fall out of the preload window are cancelled.
+ */
+public class PlaylistPreloader {
+
+    private static final String TAG = "PlaylistPreloader";
+
+    public static final long DEFAULT_BYTES_PER_ITEM = 2 * 1024 * 1024;
+    public static final long DEFAULT_START_DELAY_MS = TimeUnit.SECONDS.toMillis(5);
+
+    private final Cache mCache;
+    private final DataSource.Factory mUpstreamFactory;
+    private final long mBytesPerItem;
+    private final long mStartDelayMs;
+    private final boolean mPreloadPrevious;
+    private final ScheduledExecutorService mExecutor;
+    private final Map<String, Future<?>> mInFlight = new HashMap<>();
+
+    /**
+     * @param cache the cache playback reads from.
+     * @param upstreamFactory creates the data sources used to fetch media from the network.
+     * @param bytesPerItem the most bytes preloaded from the start of each item.
+     * @param preloadPrevious whether the previous item is preloaded as well as the next one.
+     */
+    public PlaylistPreloader(
+            Cache cache,
+            DataSource.Factory upstreamFactory,
+            long bytesPerItem,
+            boolean preloadPrevious) {
+        this(cache, upstreamFactory, bytesPerItem, preloadPrevious, DEFAULT_START_DELAY_MS);
+    }
+
+    public PlaylistPreloader(
+            Cache cache,
+            DataSource.Factory upstreamFactory,
+            long bytesPerItem,
+            boolean preloadPrevious,
+            long startDelayMs) {
+        mCache = cache;
+        mUpstreamFactory = upstreamFactory;
+        mBytesPerItem = bytesPerItem;
+        mPreloadPrevious = preloadPrevious;
+        mStartDelayMs = startDelayMs;
+        mExecutor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory() {
+                            @Override
+                            public Thread newThread(final Runnable runnable) {
+                                return new Thread(
+                                        new Runnable() {
+                                            @Override
+                                            public void run() {
+                                                Process.setThreadPriority(
+                                                        Process.THREAD_PRIORITY_BACKGROUND);
+                                                runnable.run();
+                                            }
+                                        },
+                                        TAG);
+                            }
+                        });
+    }
+
+    /**
+     * Preloads the items around the current position of the playlist. Cancels preloads of items
+     * that are no longer next to the current position.
+     */
+    public synchronized void preloadAround(Playlist playlist) {
+        List<Video> window = new ArrayList<>(2);
+        Video next = playlist.peekNext();
+        if (next != null) {
+            window.add(next);
+        }
+        if (mPreloadPrevious) {
+            Video previous = playlist.peekPrevious();
+            if (previous != null) {
+                window.add(previous);
+            }
+        }
+
+        Map<String, Future<?>> stale = new HashMap<>(mInFlight);
+        mInFlight.clear();
+        for (Video video : window) {
+            Future<?> existing = stale.remove(video.videoUrl);
+            if (existing != null && !existing.isDone()) {
+                mInFlight.put(video.videoUrl, existing);
+            } else if (existing == null) {
+                mInFlight.put(video.videoUrl, schedule(video.videoUrl));
+            }
+        }
+        for (Future<?> future : stale.values()) {
+            future.cancel(true);
+        }
+    }
+
+    /** Cancels all pending preloads. */
+    public synchronized void cancelAll() {
+        for (Future<?> future : mInFlight.values()) {
+            future.cancel(true);
+        }
+        mInFlight.clear();
+    }
+
+    /** Cancels all pending preloads and stops the preload thread. */
+    public void release() {
+        cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    private Future<?> schedule(final String url) {
+        return mExecutor.schedule(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        preload(url);
+                    }
+                },
+                mStartDelayMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void preload(String url) {
+        DataSpec dataSpec = new DataSpec(Uri.parse(url), 0, mBytesPerItem, null);
+        CacheUtil.CachingCounters counters = new CacheUtil.CachingCounters();
+        try {
+            CacheUtil.cache(dataSpec, mCache, mUpstreamFactory.createDataSource(), counters);
+            Log.d(TAG, String.format(
+                    "Preloaded %s: %d bytes downloaded, %d already cached.",
+                    url, counters.newlyCachedBytes, counters.alreadyCachedBytes));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to preload " + url, e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.leanback.media.PlayerAdapter;
+
+import com.google.android.exoplayer2.ext.leanback.LeanbackPlayerAdapter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts how often a {@link LeanbackPlayerAdapter} reports progress to its glue.
+ *
+ * <ul>
+ *   <li>While the transport controls (and therefore the seek UI) are visible, the adapter's own
+ *       high frequency update loop is used so the progress bar animates smoothly.
+ *   <li>While the controls are hidden, the adapter loop is stopped and progress is reported at a
+ *       low heartbeat, which is enough for "Watch Next" and analytics.
+ *   <li>While the fragment is in the background, no progress is reported at all.
+ * </ul>
+ *
+ * <p>All methods must be called from the main thread.
+ */
+public class ProgressUpdatePolicy {
+
+    private static final String TAG = "ProgressUpdatePolicy";
+
+    public static final long DEFAULT_HEARTBEAT_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /** Update period reported when progress updates are paused. */
+    public static final long PERIOD_PAUSED = -1;
+
+    /** Receives the current update period so the savings can be verified in the field. */
+    public interface MetricsListener {
+
+        /**
+         * Called whenever the update period changes.
+         *
+         * @param periodMs the new period in milliseconds, or {@link #PERIOD_PAUSED}.
+         */
+        void onUpdatePeriodChanged(long periodMs);
+    }
+
+    private final LeanbackPlayerAdapter mPlayerAdapter;
+    private final long mFastPeriodMs;
+    private final long mHeartbeatMs;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private MetricsListener mMetricsListener;
+    private boolean mForeground;
+    private boolean mControlsVisible;
+    private long mCurrentPeriodMs = PERIOD_PAUSED;
+    private long mHeartbeatCount;
+
+    private final Runnable mHeartbeat =
+            new Runnable() {
+                @Override
+                public void run() {
+                    PlayerAdapter.Callback callback = mPlayerAdapter.getCallback();
+                    if (callback != null) {
+                        callback.onCurrentPositionChanged(mPlayerAdapter);
+                        callback.onBufferedPositionChanged(mPlayerAdapter);
+                    }
+                    mHeartbeatCount++;
+                    mHandler.postDelayed(this, mHeartbeatMs);
+                }
+            };
+
+    /**
+     * @param playerAdapter adapter whose progress updates are controlled.
+     * @param fastPeriodMs the update period the adapter was created with.
+     */
+    public ProgressUpdatePolicy(LeanbackPlayerAdapter playerAdapter, long fastPeriodMs) {
+        this(playerAdapter, fastPeriodMs, DEFAULT_HEARTBEAT_MS);
+    }
+
+    public ProgressUpdatePolicy(
+            LeanbackPlayerAdapter playerAdapter, long fastPeriodMs, long heartbeatMs) {
+        mPlayerAdapter = playerAdapter;
+        mFastPeriodMs = fastPeriodMs;
+        mHeartbeatMs = heartbeatMs;
+    }
+
+    public void setMetricsListener(MetricsListener listener) {
+        mMetricsListener = listener;
+        if (listener != null) {
+            listener.onUpdatePeriodChanged(mCurrentPeriodMs);
+        }
+    }
+
+    /** Sets whether the hosting fragment is in the foreground. */
+    public void setForeground(boolean foreground) {
+        mForeground = foreground;
+        apply();
+    }
+
+    /** Sets whether the transport controls, including the seek UI, are currently visible. */
+    public void setControlsVisible(boolean visible) {
+        mControlsVisible = visible;
+        apply();
+    }
+
+    /**
+     * Re-applies the current policy. Call after the glue has started or stopped the adapter's own
+     * update loop, e.g. when it is attached to its host.
+     */
+    public void apply() {
+        long period;
+        mHandler.removeCallbacks(mHeartbeat);
+        if (!mForeground) {
+            mPlayerAdapter.setProgressUpdatingEnabled(false);
+            period = PERIOD_PAUSED;
+        } else if (mControlsVisible) {
+            mPlayerAdapter.setProgressUpdatingEnabled(true);
+            period = mFastPeriodMs;
+        } else {
+            mPlayerAdapter.setProgressUpdatingEnabled(false);
+            mHandler.postDelayed(mHeartbeat, mHeartbeatMs);
+            period = mHeartbeatMs;
+        }
+        if (period != mCurrentPeriodMs) {
+            mCurrentPeriodMs = period;
+            Log.d(TAG, "Progress update period: " + period + "ms");
+            if (mMetricsListener != null) {
+                mMetricsListener.onUpdatePeriodChanged(period);
+            }
+        }
+    }
+
+    /** Stops all progress updates driven by this policy. */
+    public void release() {
+        mForeground = false;
+        mHandler.removeCallbacks(mHeartbeat);
+        mPlayerAdapter.setProgressUpdatingEnabled(false);
+    }
+
+    /** Returns the current update period in milliseconds, or {@link #PERIOD_PAUSED}. */
+    public long getCurrentPeriodMs() {
+        return mCurrentPeriodMs;
+    }
+
+    /** Returns the number of low frequency heartbeats delivered so far. */
+    public long getHeartbeatCount() {
+        return mHeartbeatCount;
+    }
+}
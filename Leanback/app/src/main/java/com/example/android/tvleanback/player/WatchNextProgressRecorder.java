@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.example.android.tvleanback.player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.tvleanback.model.Video;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind recorder for "Watch Next" progress. Keeps only the latest position for each
+ * program in memory and hands them to {@link WatchNextAdapter} at most once every flush interval,
+ * so repeated updates to the same program are merged into a single provider write. Writes run on a
+ * background thread, in the order they were flushed.
+ *
+ * <p>All methods must be called from the main thread.
+ */
+public class WatchNextProgressRecorder {
+
+    private static final String TAG = "WatchNextRecorder";
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Context mContext;
+    private final WatchNextAdapter mWatchNextAdapter;
+    private final long mFlushIntervalMs;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+    private final Map<Long, PendingProgress> mPending = new LinkedHashMap<>();
+
+    private long mLastFlushTime;
+    private boolean mFlushScheduled;
+    private boolean mReleased;
+
+    private final Runnable mFlushTask =
+            new Runnable() {
+                @Override
+                public void run() {
+                    mFlushScheduled = false;
+                    flush();
+                }
+            };
+
+    public WatchNextProgressRecorder(Context context, WatchNextAdapter watchNextAdapter) {
+        this(context, watchNextAdapter, DEFAULT_FLUSH_INTERVAL_MS);
+    }
+
+    public WatchNextProgressRecorder(
+            Context context, WatchNextAdapter watchNextAdapter, long flushIntervalMs) {
+        mContext = context.getApplicationContext();
+        mWatchNextAdapter = watchNextAdapter;
+        mFlushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * Records the latest playback position of a video. Replaces any position recorded for the same
+     * video since the last flush.
+     */
+    public void record(long channelId, Video video, long position, long duration) {
+        if (mReleased || video == null) {
+            return;
+        }
+        mPending.put(video.id, new PendingProgress(channelId, video, position, duration));
+        scheduleFlush();
+    }
+
+    /**
+     * Drops any pending progress for the video and removes it from the "Watch Next" channel once
+     * previously flushed writes have completed.
+     */
+    public void remove(final long channelId, final Video video) {
+        if (mReleased || video == null) {
+            return;
+        }
+        mPending.remove(video.id);
+        mWriteExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        mWatchNextAdapter.removeFromWatchNext(mContext, channelId, video);
+                    }
+                });
+    }
+
+    /** Immediately writes all pending progress, e.g. when playback is paused or stopped. */
+    public void flush() {
+        mHandler.removeCallbacks(mFlushTask);
+        mFlushScheduled = false;
+        mLastFlushTime = SystemClock.elapsedRealtime();
+        if (mPending.isEmpty()) {
+            return;
+        }
+        final List<PendingProgress> batch = new ArrayList<>(mPending.values());
+        mPending.clear();
+        mWriteExecutor.execute(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        for (PendingProgress progress : batch) {
+                            mWatchNextAdapter.updateProgress(
+                                    mContext,
+                                    progress.channelId,
+                                    progress.video,
+                                    progress.position,
+                                    progress.duration);
+                        }
+                    }
+                });
+        Log.d(TAG, String.format("Flushed %d watch next update(s).", batch.size()));
+    }
+
+    /**
+     * Flushes pending progress and stops accepting new updates. Writes already handed to the
+     * background thread are allowed to finish.
+     */
+    public void release() {
+        if (mReleased) {
+            return;
+        }
+        flush();
+        mReleased = true;
+        mWriteExecutor.shutdown();
+    }
+
+    private void scheduleFlush() {
+        if (mFlushScheduled) {
+            return;
+        }
+        long delay = mLastFlushTime + mFlushIntervalMs - SystemClock.elapsedRealtime();
+        mFlushScheduled = true;
+        mHandler.postDelayed(mFlushTask, Math.max(0, delay));
+    }
+
+    private static final class PendingProgress {
+        final long channelId;
+        final Video video;
+        final long position;
+        final long duration;
+
+        PendingProgress(long channelId, Video video, long position, long duration) {
+            this.channelId = channelId;
+            this.video = video;
+            this.position = position;
+            this.duration = duration;
+        }
+    }
+}
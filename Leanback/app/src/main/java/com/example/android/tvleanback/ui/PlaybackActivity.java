@@ -22,6 +22,10 @@ import android.view.KeyEvent;
 import android.view.MotionEvent;
 
 import com.example.android.tvleanback.R;
+import com.example.android.tvleanback.player.PlaybackMetrics;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * Loads PlaybackFragment and delegates input from a game controller.
@@ -53,6 +57,13 @@ public class PlaybackActivity extends LeanbackActivity {
         finish();
     }
 
+    /** Prints the playback QoE histograms, see {@code adb shell dumpsys activity}. */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        PlaybackMetrics.getInstance().dump(prefix, writer);
+    }
+
     @Override
     public boolean onKeyDown(int keyCode, KeyEvent event) {
         if (keyCode == KeyEvent.KEYCODE_BUTTON_R1) {
@@ -47,22 +47,21 @@ import com.example.android.tvleanback.data.VideoContract;
 import com.example.android.tvleanback.model.Playlist;
 import com.example.android.tvleanback.model.Video;
 import com.example.android.tvleanback.model.VideoCursorMapper;
+import com.example.android.tvleanback.player.MediaCache;
+import com.example.android.tvleanback.player.PlaybackQoeCollector;
+import com.example.android.tvleanback.player.PlayerPool;
+import com.example.android.tvleanback.player.PlaylistPreloader;
+import com.example.android.tvleanback.player.ProgressUpdatePolicy;
 import com.example.android.tvleanback.player.VideoPlayerGlue;
 import com.example.android.tvleanback.player.WatchNextAdapter;
+import com.example.android.tvleanback.player.WatchNextProgressRecorder;
 import com.example.android.tvleanback.presenter.CardPresenter;
-import com.google.android.exoplayer2.ExoPlayerFactory;
 import com.google.android.exoplayer2.SimpleExoPlayer;
 import com.google.android.exoplayer2.ext.leanback.LeanbackPlayerAdapter;
 import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
 import com.google.android.exoplayer2.source.ExtractorMediaSource;
 import com.google.android.exoplayer2.source.MediaSource;
-import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
-import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
-import com.google.android.exoplayer2.trackselection.TrackSelection;
-import com.google.android.exoplayer2.trackselection.TrackSelector;
-import com.google.android.exoplayer2.upstream.BandwidthMeter;
-import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.DataSource;
 import com.google.android.exoplayer2.util.Util;
 
 import static com.example.android.tvleanback.ui.PlaybackFragment.VideoLoaderCallbacks.RELATED_VIDEOS_LOADER;
@@ -77,9 +76,14 @@ public class PlaybackFragment extends VideoSupportFragment {
 
     private VideoPlayerGlue mPlayerGlue;
     private LeanbackPlayerAdapter mPlayerAdapter;
+    private ProgressUpdatePolicy mProgressUpdatePolicy;
+    private final PlaybackQoeCollector mQoeCollector = new PlaybackQoeCollector();
+    private ProgressUpdatePolicy.MetricsListener mProgressMetricsListener;
     private SimpleExoPlayer mPlayer;
-    private TrackSelector mTrackSelector;
     private PlaylistActionListener mPlaylistActionListener;
+    private WatchNextProgressRecorder mWatchNextRecorder;
+    private DataSource.Factory mDataSourceFactory;
+    private PlaylistPreloader mPlaylistPreloader;
 
     private Video mVideo;
     private Playlist mPlaylist;
@@ -98,6 +102,15 @@ public class PlaybackFragment extends VideoSupportFragment {
                 getActivity().getIntent().getLongExtra(VideoDetailsActivity.EXTRA_POSITION, -1L);
         mPlaylist = new Playlist();
 
+        MediaCache mediaCache = MediaCache.getInstance(getActivity());
+        mDataSourceFactory = mediaCache.getDataSourceFactory();
+        mPlaylistPreloader =
+                new PlaylistPreloader(
+                        mediaCache.getCache(),
+                        mediaCache.getUpstreamDataSourceFactory(),
+                        PlaylistPreloader.DEFAULT_BYTES_PER_ITEM,
+                        true);
+
         mVideoLoaderCallbacks = new VideoLoaderCallbacks(mPlaylist);
 
         // Loads the playlist.
@@ -107,6 +120,10 @@ public class PlaybackFragment extends VideoSupportFragment {
                 .initLoader(VideoLoaderCallbacks.QUEUE_VIDEOS_LOADER, args, mVideoLoaderCallbacks);
 
         mVideoCursorAdapter = setupRelatedVideosCursor();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mWatchNextRecorder = new WatchNextProgressRecorder(getContext(), new WatchNextAdapter());
+        }
     }
 
     @Override
@@ -123,6 +140,8 @@ public class PlaybackFragment extends VideoSupportFragment {
         if ((Util.SDK_INT <= 23 || mPlayer == null)) {
             initializePlayer();
         }
+        mProgressUpdatePolicy.setControlsVisible(isControlsOverlayVisible());
+        mProgressUpdatePolicy.setForeground(true);
     }
 
     /** Pauses the player. */
@@ -131,9 +150,16 @@ public class PlaybackFragment extends VideoSupportFragment {
     public void onPause() {
         super.onPause();
 
+        if (mProgressUpdatePolicy != null) {
+            mProgressUpdatePolicy.setForeground(false);
+        }
+
         if (mPlayerGlue != null && mPlayerGlue.isPlaying()) {
             mPlayerGlue.pause();
         }
+        if (mWatchNextRecorder != null) {
+            mWatchNextRecorder.flush();
+        }
         if (Util.SDK_INT <= 23) {
             releasePlayer();
         }
@@ -145,39 +171,47 @@ public class PlaybackFragment extends VideoSupportFragment {
         if (Util.SDK_INT > 23) {
             releasePlayer();
         }
+        if (mWatchNextRecorder != null) {
+            mWatchNextRecorder.flush();
+        }
+        mPlaylistPreloader.cancelAll();
     }
 
-    private void initializePlayer() {
-        BandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
-        TrackSelection.Factory videoTrackSelectionFactory =
-                new AdaptiveTrackSelection.Factory(bandwidthMeter);
-        mTrackSelector = new DefaultTrackSelector(videoTrackSelectionFactory);
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mPlaylistPreloader.release();
+        if (mWatchNextRecorder != null) {
+            mWatchNextRecorder.release();
+            mWatchNextRecorder = null;
+        }
+    }
 
-        mPlayer = ExoPlayerFactory.newSimpleInstance(getActivity(), mTrackSelector);
+    private void initializePlayer() {
+        mPlayer = PlayerPool.getInstance(getActivity()).acquire();
+        mQoeCollector.attach(mPlayer);
         mPlayerAdapter = new LeanbackPlayerAdapter(getActivity(), mPlayer, UPDATE_DELAY);
+        mProgressUpdatePolicy = new ProgressUpdatePolicy(mPlayerAdapter, UPDATE_DELAY);
+        mProgressUpdatePolicy.setMetricsListener(mProgressMetricsListener);
         mPlaylistActionListener = new PlaylistActionListener(mPlaylist);
         mPlayerGlue = new VideoPlayerGlue(getActivity(), mPlayerAdapter, mPlaylistActionListener);
         mPlayerGlue.setHost(new VideoSupportFragmentGlueHost(this));
         mPlayerGlue.playWhenPrepared();
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+        if (mWatchNextRecorder != null) {
             mPlayerGlue.addPlayerCallback(
                     new PlaybackGlue.PlayerCallback() {
-                        WatchNextAdapter watchNextAdapter = new WatchNextAdapter();
-
                         @Override
                         public void onPlayStateChanged(PlaybackGlue glue) {
                             super.onPlayStateChanged(glue);
                             long position = mPlayerGlue.getCurrentPosition();
                             long duration = mPlayerGlue.getDuration();
-                            watchNextAdapter.updateProgress(
-                                    getContext(), mChannelId, mVideo, position, duration);
+                            mWatchNextRecorder.record(mChannelId, mVideo, position, duration);
                         }
 
                         @Override
                         public void onPlayCompleted(PlaybackGlue glue) {
                             super.onPlayCompleted(glue);
-                            watchNextAdapter.removeFromWatchNext(
-                                    getContext(), mChannelId, mVideo);
+                            mWatchNextRecorder.remove(mChannelId, mVideo);
                         }
                     });
         }
@@ -189,11 +223,15 @@ public class PlaybackFragment extends VideoSupportFragment {
 
     private void releasePlayer() {
         if (mPlayer != null) {
-            mPlayer.release();
+            mProgressUpdatePolicy.release();
+            // Detaching the glue removes the adapter's listeners before the player is pooled.
+            mPlayerGlue.setHost(null);
+            mQoeCollector.detach();
+            PlayerPool.getInstance(getActivity()).release(mPlayer);
             mPlayer = null;
-            mTrackSelector = null;
             mPlayerGlue = null;
             mPlayerAdapter = null;
+            mProgressUpdatePolicy = null;
             mPlaylistActionListener = null;
         }
     }
@@ -201,16 +239,17 @@ public class PlaybackFragment extends VideoSupportFragment {
     private void play(Video video) {
         mPlayerGlue.setTitle(video.title);
         mPlayerGlue.setSubtitle(video.description);
+        mQoeCollector.startSession(String.valueOf(video.id));
         prepareMediaForPlaying(Uri.parse(video.videoUrl));
         mPlayerGlue.play();
+        mPlaylistPreloader.preloadAround(mPlaylist);
     }
 
     private void prepareMediaForPlaying(Uri mediaSourceUri) {
-        String userAgent = Util.getUserAgent(getActivity(), "VideoPlayerGlue");
         MediaSource mediaSource =
                 new ExtractorMediaSource(
                         mediaSourceUri,
-                        new DefaultDataSourceFactory(getActivity(), userAgent),
+                        mDataSourceFactory,
                         new DefaultExtractorsFactory(),
                         null,
                         null);
@@ -255,6 +294,33 @@ public class PlaybackFragment extends VideoSupportFragment {
         return videoCursorAdapter;
     }
 
+    @Override
+    public void showControlsOverlay(boolean runAnimation) {
+        super.showControlsOverlay(runAnimation);
+        if (mProgressUpdatePolicy != null) {
+            mProgressUpdatePolicy.setControlsVisible(true);
+        }
+    }
+
+    @Override
+    public void hideControlsOverlay(boolean runAnimation) {
+        super.hideControlsOverlay(runAnimation);
+        if (mProgressUpdatePolicy != null) {
+            mProgressUpdatePolicy.setControlsVisible(false);
+        }
+    }
+
+    /**
+     * Reports the current progress update period, in milliseconds, to the given listener whenever
+     * it changes. Used to verify how much work is done while the controls are hidden.
+     */
+    public void setProgressMetricsListener(ProgressUpdatePolicy.MetricsListener listener) {
+        mProgressMetricsListener = listener;
+        if (mProgressUpdatePolicy != null) {
+            mProgressUpdatePolicy.setMetricsListener(listener);
+        }
+    }
+
     public void skipToNext() {
         mPlayerGlue.next();
     }
@@ -343,6 +409,7 @@ public class PlaybackFragment extends VideoSupportFragment {
                     playlist.add(video);
 
                 } while (cursor.moveToNext());
+                mPlaylistPreloader.preloadAround(playlist);
             } else if (id == RELATED_VIDEOS_LOADER) {
                 mVideoCursorAdapter.changeCursor(cursor);
             }
@@ -73,6 +73,7 @@ import com.example.android.tvleanback.model.MockDatabase;
 import com.example.android.tvleanback.model.Subscription;
 import com.example.android.tvleanback.model.Video;
 import com.example.android.tvleanback.model.VideoCursorMapper;
+import com.example.android.tvleanback.player.PlayerPool;
 import com.example.android.tvleanback.presenter.CardPresenter;
 import com.example.android.tvleanback.presenter.DetailsDescriptionPresenter;
 import com.example.android.tvleanback.util.TvUtil;
@@ -133,6 +134,9 @@ public class VideoDetailsFragment extends DetailsSupportFragment
             setupMovieListRow();
             updateBackground(mSelectedVideo.bgImageUrl);
 
+            // Build the player now so that playback can start without paying for it.
+            PlayerPool.getInstance(getActivity()).prewarm();
+
             // When a Related Video item is clicked.
             setOnItemViewClickedListener(new ItemViewClickedListener());
         }
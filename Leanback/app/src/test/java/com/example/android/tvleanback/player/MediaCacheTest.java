@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.tvleanback.player;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.FileDataSourceFactory;
+
+import junit.framework.Assert;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 21, manifest = "src/main/AndroidManifest.xml")
+public class MediaCacheTest {
+
+    private static final int MEDIA_BYTES = 256 * 1024;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void secondReadIsServedFromCache() throws IOException {
+        Uri origin = createOrigin();
+        MediaCache mediaCache =
+                new MediaCache(mFolder.newFolder("cache"), 1024 * 1024, new FileDataSourceFactory());
+
+        Assert.assertEquals(MEDIA_BYTES, readFully(mediaCache.getDataSourceFactory(), origin));
+        Assert.assertEquals(MEDIA_BYTES, mediaCache.getUpstreamBytesRead());
+        Assert.assertEquals(0, mediaCache.getBytesSaved());
+
+        Assert.assertEquals(MEDIA_BYTES, readFully(mediaCache.getDataSourceFactory(), origin));
+        Assert.assertEquals(MEDIA_BYTES, mediaCache.getUpstreamBytesRead());
+        Assert.assertEquals(MEDIA_BYTES, mediaCache.getBytesSaved());
+        Assert.assertEquals(0.5f, mediaCache.getHitRatio(), 0.001f);
+    }
+
+    @Test
+    public void cacheIsBoundedBySize() throws IOException {
+        MediaCache mediaCache =
+                new MediaCache(mFolder.newFolder("cache"), MEDIA_BYTES, new FileDataSourceFactory());
+
+        for (int i = 0; i < 4; i++) {
+            readFully(mediaCache.getDataSourceFactory(), createOrigin());
+        }
+
+        Assert.assertTrue(mediaCache.getCacheSpace() <= MEDIA_BYTES);
+    }
+
+    private Uri createOrigin() throws IOException {
+        byte[] data = new byte[MEDIA_BYTES];
+        new Random().nextBytes(data);
+        File file = mFolder.newFile();
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(data);
+        } finally {
+            outputStream.close();
+        }
+        return Uri.fromFile(file);
+    }
+
+    private static long readFully(DataSource.Factory factory, Uri uri) throws IOException {
+        DataSource dataSource = factory.createDataSource();
+        byte[] buffer = new byte[16 * 1024];
+        long total = 0;
+        try {
+            dataSource.open(new DataSpec(uri));
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+                total += read;
+            }
+        } finally {
+            dataSource.close();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.tvleanback.player;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class PlaybackSessionTrackerTest {
+
+    @Test
+    public void summarizesStartupRebuffersAndSeeks() {
+        PlaybackSessionTracker tracker = new PlaybackSessionTracker("1", 1000);
+        tracker.onPlayerStateChanged(true, true, false, 1000);
+        tracker.onBitrateChanged(1000000, 1200);
+        tracker.onRenderedFirstFrame(1500);
+        tracker.onPlayerStateChanged(true, false, true, 1500);
+
+        // Rebuffer for 500ms.
+        tracker.onPlayerStateChanged(true, true, false, 5500);
+        tracker.onPlayerStateChanged(true, false, true, 6000);
+
+        // Buffering caused by a seek is not a rebuffer.
+        tracker.onSeekStarted(7000);
+        tracker.onPlayerStateChanged(true, true, false, 7000);
+        tracker.onPlayerStateChanged(true, false, true, 7300);
+        tracker.onRenderedFirstFrame(7400);
+
+        tracker.onBitrateChanged(3000000, 8200);
+        tracker.onDroppedFrames(3);
+        PlaybackSessionSummary summary = tracker.finish(9200);
+
+        Assert.assertEquals(500, summary.timeToFirstFrameMs);
+        Assert.assertEquals(1, summary.rebufferCount);
+        Assert.assertEquals(500, summary.rebufferTimeMs);
+        Assert.assertEquals(6900, summary.playingTimeMs);
+        Assert.assertEquals(1, summary.seekLatenciesMs.length);
+        Assert.assertEquals(400, summary.seekLatenciesMs[0]);
+        Assert.assertEquals(1, summary.bitrateSwitches);
+        Assert.assertEquals(1250000, summary.averageBitrate);
+        Assert.assertEquals(3, summary.droppedFrames);
+        Assert.assertEquals(500f / 7400f, summary.getRebufferRatio(), 0.0001f);
+    }
+
+    @Test
+    public void reportsUnknownValuesForSessionWithoutFrames() {
+        PlaybackSessionSummary summary = new PlaybackSessionTracker("1", 0).finish(100);
+
+        Assert.assertEquals(-1, summary.timeToFirstFrameMs);
+        Assert.assertEquals(-1, summary.averageBitrate);
+        Assert.assertEquals(0f, summary.getRebufferRatio());
+    }
+}
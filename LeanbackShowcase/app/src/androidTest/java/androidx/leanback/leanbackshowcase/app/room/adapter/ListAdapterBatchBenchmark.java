@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Times the live reorder of a 10k item row, made item by item and through a
+ * {@link ListAdapter.Batch}, and a range removal, with an observer registered as the row
+ * presenter does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ListAdapterBatchBenchmark {
+
+    private static final String TAG = "ListAdapterBenchmark";
+
+    private static final int ROW_SIZE = 10000;
+    private static final int BLOCK_SIZE = 500;
+    private static final int WARM_UP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+
+    // A reorder should be applied within a frame.
+    private static final long MAX_BATCH_REORDER_NS = 16000000L;
+
+    private ListAdapter<Integer> mAdapter;
+    private CountingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new ListAdapter<>();
+        mObserver = new CountingObserver();
+        mAdapter.registerObserver(mObserver);
+    }
+
+    @Test
+    public void reorderBlock() {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            timeReorder(false);
+            timeReorder(true);
+        }
+        long individualNs = 0;
+        long batchNs = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            individualNs += timeReorder(false);
+            assertEquals(2 * BLOCK_SIZE, mObserver.mNotifications);
+            batchNs += timeReorder(true);
+            assertEquals(2, mObserver.mNotifications);
+        }
+        individualNs /= ITERATIONS;
+        batchNs /= ITERATIONS;
+        Log.i(TAG, String.format("reorder %d of %d items: item by item %.2fms, batch %.2fms",
+                BLOCK_SIZE, ROW_SIZE, individualNs / 1e6, batchNs / 1e6));
+
+        assertTrue(batchNs < individualNs);
+        assertTrue(batchNs < MAX_BATCH_REORDER_NS);
+    }
+
+    @Test
+    public void removeItems() {
+        long totalNs = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS + ITERATIONS; i++) {
+            fill(ROW_SIZE);
+            long start = System.nanoTime();
+            mAdapter.removeItems(0, ROW_SIZE / 2);
+            if (i >= WARM_UP_ITERATIONS) {
+                totalNs += System.nanoTime() - start;
+            }
+            assertEquals(1, mObserver.mNotifications);
+        }
+        Log.i(TAG, String.format("removeItems(0, %d) of %d items: %.3fms", ROW_SIZE / 2,
+                ROW_SIZE, totalNs / 1e6 / ITERATIONS));
+        assertTrue(totalNs / ITERATIONS < MAX_BATCH_REORDER_NS);
+    }
+
+    /**
+     * Moves the items 1000 to 1499 to position 8000 and returns the time it took.
+     */
+    private long timeReorder(boolean batched) {
+        fill(ROW_SIZE);
+        long start = System.nanoTime();
+        if (batched) {
+            ListAdapter<Integer>.Batch batch = mAdapter.beginBatch();
+            List<Integer> block = new ArrayList<>(BLOCK_SIZE);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                block.add(batch.get(1000));
+                batch.remove(1000, 1);
+            }
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                batch.add(8000 + i, block.get(i));
+            }
+            batch.commit();
+        } else {
+            List<Integer> block = new ArrayList<>(BLOCK_SIZE);
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                Integer item = mAdapter.get(1000);
+                block.add(item);
+                mAdapter.remove(item);
+            }
+            for (int i = 0; i < BLOCK_SIZE; i++) {
+                mAdapter.add(8000 + i, block.get(i));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void fill(int size) {
+        mAdapter.clear();
+        List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        mAdapter.addAll(0, items);
+        mObserver.mNotifications = 0;
+    }
+
+    private static class CountingObserver extends ObjectAdapter.DataObserver {
+        int mNotifications;
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mNotifications++;
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mNotifications++;
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            mNotifications++;
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mNotifications++;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.util.Log;
+import androidx.leanback.leanbackshowcase.app.room.api.VideosWithGoogleTag;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of {@link DatabasePopulator} with the previous population, which
+ * started one AsyncTask and one transaction per category. Runs against a database file, as the
+ * cost of the previous population is mostly committing.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabasePopulatorBenchmark {
+
+    private static final String TAG = "PopulatorBenchmark";
+    private static final String DATABASE_NAME = "populator_benchmark.db";
+
+    private static final int CATEGORIES = 100;
+    private static final int VIDEOS_PER_CATEGORY = 50;
+    private static final int ITERATIONS = 3;
+
+    private Context mContext;
+    private AppDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDb = Room.databaseBuilder(mContext, AppDatabase.class, DATABASE_NAME).build();
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void populatesAllCategoriesAndVideos() {
+        new DatabasePopulator(mDb).populateNow(createContent().getAllResources());
+        assertEquals(CATEGORIES, count(DatabaseColumnConstant.CategoryEntry.TABLE_NAME));
+        assertEquals(CATEGORIES * VIDEOS_PER_CATEGORY,
+                count(DatabaseColumnConstant.VideoEntry.TABLE_NAME));
+    }
+
+    @Test
+    public void compareWithPerCategoryAsyncTasks() throws InterruptedException {
+        long batchedMs = 0;
+        long perCategoryMs = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<VideosWithGoogleTag.VideosGroupByCategory> content =
+                    createContent().getAllResources();
+            mDb.clearAllTables();
+            long start = System.nanoTime();
+            populatePerCategory(content);
+            perCategoryMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(CATEGORIES * VIDEOS_PER_CATEGORY,
+                    count(DatabaseColumnConstant.VideoEntry.TABLE_NAME));
+
+            content = createContent().getAllResources();
+            mDb.clearAllTables();
+            start = System.nanoTime();
+            new DatabasePopulator(mDb).populateNow(content);
+            batchedMs += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals(CATEGORIES * VIDEOS_PER_CATEGORY,
+                    count(DatabaseColumnConstant.VideoEntry.TABLE_NAME));
+        }
+        int videos = CATEGORIES * VIDEOS_PER_CATEGORY;
+        Log.i(TAG, String.format("%d categories, %d videos: per category AsyncTask %dms"
+                        + " (%.0f videos/s), batched %dms (%.0f videos/s)", CATEGORIES, videos,
+                perCategoryMs / ITERATIONS, 1000f * videos * ITERATIONS / perCategoryMs,
+                batchedMs / ITERATIONS, 1000f * videos * ITERATIONS / Math.max(1, batchedMs)));
+        assertTrue(batchedMs < perCategoryMs);
+    }
+
+    /**
+     * The population this benchmark compares with: one AsyncTask per category, executed from the
+     * main thread and run one after the other, each writing its category in a transaction.
+     */
+    private void populatePerCategory(
+            final List<VideosWithGoogleTag.VideosGroupByCategory> videosGroupByCategories)
+            throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(videosGroupByCategories.size());
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                for (final VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory :
+                        videosGroupByCategories) {
+                    final CategoryEntity categoryEntity = new CategoryEntity();
+                    categoryEntity.setCategoryName(videosGroupByCategory.getCategory());
+                    DatabasePopulator.postProcessing(videosGroupByCategory);
+
+                    new AsyncTask<Void, Void, Void>() {
+                        @Override
+                        protected Void doInBackground(Void... voids) {
+                            try {
+                                mDb.beginTransaction();
+                                mDb.categoryDao().insertCategory(categoryEntity);
+                                mDb.videoDao().insertAllVideos(videosGroupByCategory.getVideos());
+                                mDb.setTransactionSuccessful();
+                            } finally {
+                                mDb.endTransaction();
+                            }
+                            done.countDown();
+                            return null;
+                        }
+                    }.execute();
+                }
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.MINUTES));
+    }
+
+    private int count(String table) {
+        Cursor cursor = mDb.query("SELECT COUNT(*) FROM " + table, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static VideosWithGoogleTag createContent() {
+        return TestContent.create(CATEGORIES, VIDEOS_PER_CATEGORY);
+    }
+}
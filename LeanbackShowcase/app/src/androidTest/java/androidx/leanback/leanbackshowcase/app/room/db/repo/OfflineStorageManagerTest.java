@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Provider;
+
+/**
+ * Checks which downloads {@link OfflineStorageManager} evicts, against an in memory database.
+ * The files of the evicted videos are recorded instead of being removed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class OfflineStorageManagerTest {
+
+    private static final long QUOTA_BYTES = 1000;
+
+    // Id of no video, so every download can be evicted.
+    private static final long NO_VIDEO = 0;
+
+    private AppDatabase mDb;
+    private File mDir;
+    private OfflineStorageManager mManager;
+    private final List<String> mRemoved = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDb = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        mDir = new File(context.getCacheDir(), "offline_storage_test");
+        mDir.mkdirs();
+        mManager = new OfflineStorageManager(new Provider<AppDatabase>() {
+            @Override
+            public AppDatabase get() {
+                return mDb;
+            }
+        }, QUOTA_BYTES, new OfflineStorageManager.FileRemover() {
+            @Override
+            public void remove(List<String> localUris) {
+                mRemoved.addAll(localUris);
+            }
+        });
+
+        // 1300 bytes: three videos of 400 bytes and the card image of a fourth one.
+        mDb.videoDao().insertAllVideos(Arrays.asList(
+                createDownloaded(1, 300, "file:///video1.mp4", 400),
+                createDownloaded(2, 100, "file:///video2.mp4", 400),
+                createDownloaded(3, 200, "file:///video3.mp4", 400),
+                createCardDownloaded(4, 50, "file:///card4.jpg", 100)));
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void evictsLeastRecentlyWatchedFirst() {
+        mManager.enforceQuota(NO_VIDEO);
+
+        // The card image alone is not enough, the least recently watched video goes next.
+        assertEquals(Arrays.asList("file:///card4.jpg", "file:///video2.mp4"), mRemoved);
+        assertEvicted(4);
+        assertEvicted(2);
+        assertKept(1, 400);
+        assertKept(3, 400);
+        assertEquals(2, mManager.getEvictedVideoCount());
+        assertEquals(500, mManager.getEvictedBytes());
+    }
+
+    @Test
+    public void neverEvictsKeptVideo() {
+        mManager.enforceQuota(2);
+
+        assertEquals(Arrays.asList("file:///card4.jpg", "file:///video3.mp4"), mRemoved);
+        assertKept(2, 400);
+        assertEvicted(3);
+        assertKept(1, 400);
+    }
+
+    @Test
+    public void evictsNothingWithinQuota() {
+        mDb.videoDao().clearDownload(1);
+        mManager.enforceQuota(NO_VIDEO);
+
+        assertEquals(Collections.<String>emptyList(), mRemoved);
+        assertEquals(0, mManager.getEvictedVideoCount());
+    }
+
+    @Test
+    public void newDownloadIsKeptAndMeasured() throws IOException {
+        mDb.videoDao().insertAllVideos(Collections.singletonList(
+                createDownloaded(5, 0, createFile("video5.mp4", 300), 0)));
+
+        mManager.onResourcesChanged(5, true);
+
+        // 1600 bytes, the new download is the most recently watched.
+        assertKept(5, 300);
+        assertEquals(Arrays.asList("file:///card4.jpg", "file:///video2.mp4",
+                "file:///video3.mp4"), mRemoved);
+        assertTrue(mDb.videoDao().loadVideo(5).getLastWatchedTime() > 0);
+    }
+
+    private void assertEvicted(long videoId) {
+        VideoEntity video = mDb.videoDao().loadVideo(videoId);
+        assertEquals("", video.getVideoLocalStorageUrl());
+        assertEquals("", video.getVideoCardImageLocalStorageUrl());
+        assertEquals(0, video.getDownloadedBytes());
+    }
+
+    private void assertKept(long videoId, long bytes) {
+        VideoEntity video = mDb.videoDao().loadVideo(videoId);
+        assertTrue(!video.getVideoLocalStorageUrl().isEmpty()
+                || !video.getVideoCardImageLocalStorageUrl().isEmpty());
+        assertEquals(bytes, video.getDownloadedBytes());
+    }
+
+    private String createFile(String name, int bytes) throws IOException {
+        File file = new File(mDir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[bytes]);
+        } finally {
+            out.close();
+        }
+        return Uri.fromFile(file).toString();
+    }
+
+    private static VideoEntity createDownloaded(long id, long lastWatchedTime, String videoUri,
+            long bytes) {
+        VideoEntity video = createVideo(id, lastWatchedTime, bytes);
+        video.setVideoLocalStorageUrl(videoUri);
+        return video;
+    }
+
+    private static VideoEntity createCardDownloaded(long id, long lastWatchedTime,
+            String cardUri, long bytes) {
+        VideoEntity video = createVideo(id, lastWatchedTime, bytes);
+        video.setVideoCardImageLocalStorageUrl(cardUri);
+        return video;
+    }
+
+    private static VideoEntity createVideo(long id, long lastWatchedTime, long bytes) {
+        VideoEntity video = new VideoEntity();
+        video.setId(id);
+        video.setTitle("Video " + id);
+        video.setCategory("Category");
+        video.setVideoLocalStorageUrl("");
+        video.setVideoBgImageLocalStorageUrl("");
+        video.setVideoCardImageLocalStorageUrl("");
+        video.setStatus("");
+        video.setLastWatchedTime(lastWatchedTime);
+        video.setDownloadedBytes(bytes);
+        return video;
+    }
+}
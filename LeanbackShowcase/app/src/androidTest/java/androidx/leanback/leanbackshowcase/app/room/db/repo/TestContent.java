@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import androidx.leanback.leanbackshowcase.app.room.api.VideosWithGoogleTag;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Generates content in the format of the videos json file.
+ */
+final class TestContent {
+
+    private TestContent() {
+    }
+
+    /**
+     * Returns categories named "Category c" of videos titled "Video v of category c".
+     */
+    static VideosWithGoogleTag create(int categoryCount, int videosPerCategory) {
+        JsonArray categories = new JsonArray();
+        for (int c = 0; c < categoryCount; c++) {
+            JsonArray videos = new JsonArray();
+            for (int v = 0; v < videosPerCategory; v++) {
+                JsonArray sources = new JsonArray();
+                sources.add("https://example.com/" + c + "/" + v + ".mp4");
+                JsonObject video = new JsonObject();
+                video.addProperty("title", "Video " + v + " of category " + c);
+                video.addProperty("description", "Description of video " + v);
+                video.addProperty("studio", "Studio " + c);
+                video.addProperty("card", "https://example.com/" + c + "/" + v + "/card.jpg");
+                video.addProperty("background", "https://example.com/" + c + "/" + v + "/bg.jpg");
+                video.add("sources", sources);
+                videos.add(video);
+            }
+            JsonObject category = new JsonObject();
+            category.addProperty("category", "Category " + c);
+            category.add("videos", videos);
+            categories.add(category);
+        }
+        JsonObject root = new JsonObject();
+        root.add("googlevideos", categories);
+        return new Gson().fromJson(root, VideosWithGoogleTag.class);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.database.Cursor;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the video queries do not scan the video table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideoQueryPlanTest {
+
+    // "SCAN TABLE videos" on older SQLite versions, "SCAN videos" on newer ones.
+    private static final Pattern FULL_SCAN = Pattern.compile(
+            "^SCAN (TABLE )?" + DatabaseColumnConstant.VideoEntry.TABLE_NAME + "\\b");
+
+    private AppDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mDb = Room.inMemoryDatabaseBuilder(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                AppDatabase.class).build();
+        new DatabasePopulator(mDb).populateNow(TestContent.create(10, 10).getAllResources());
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+    }
+
+    @Test
+    public void categoryQueriesUseCategoryIndex() {
+        List<String> plan = assertNoFullScan(VideoDao.LOAD_VIDEO_IN_SAME_CATEGORY, "Category 1");
+        assertUsesIndex(plan, "index_videos_category");
+    }
+
+    @Test
+    public void pagedCategoryQueriesUseCategoryIndexWithoutSorting() {
+        // The queries run by Room's LimitOffsetDataSource.
+        String query = VideoDao.LOAD_VIDEO_IN_SAME_CATEGORY
+                + " ORDER BY " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID;
+        assertUsesIndex(assertNoFullScan("SELECT COUNT(*) FROM ( " + query + " )",
+                "Category 1"), "index_videos_category");
+        assertUsesIndex(assertNoFullScan("SELECT * FROM ( " + query + " ) LIMIT ? OFFSET ?",
+                "Category 1", 20, 40), "index_videos_category");
+    }
+
+    @Test
+    public void statusQueryUsesStatusIndex() {
+        List<String> plan = assertNoFullScan(VideoDao.LOAD_VIDEOS_WITH_STATUS, "downloading");
+        assertUsesIndex(plan, "index_videos_working_status");
+    }
+
+    @Test
+    public void searchUsesFullTextIndex() {
+        List<String> plan = assertNoFullScan(VideoDao.SEARCH_VIDEOS, "\"video\"* \"4\"*");
+        boolean usesFts = false;
+        for (String detail : plan) {
+            usesFts |= detail.contains(DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME)
+                    && detail.contains("VIRTUAL TABLE");
+        }
+        assertTrue(plan.toString(), usesFts);
+    }
+
+    @Test
+    public void updatesSearchById() {
+        assertNoFullScan("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+                + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS + " = ?"
+                + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = ?",
+                "downloading", 1);
+    }
+
+    /**
+     * Returns the details of the query plan, failing if it scans the video table or sorts the
+     * result in a temporary b-tree.
+     */
+    private List<String> assertNoFullScan(String query, Object... args) {
+        List<String> plan = explain(query, args);
+        for (String detail : plan) {
+            if (FULL_SCAN.matcher(detail).find() || detail.contains("TEMP B-TREE")) {
+                fail(query + ": " + plan);
+            }
+        }
+        return plan;
+    }
+
+    private static void assertUsesIndex(List<String> plan, String index) {
+        for (String detail : plan) {
+            if (detail.contains("USING INDEX " + index)
+                    || detail.contains("USING COVERING INDEX " + index)) {
+                return;
+            }
+        }
+        fail("no " + index + ": " + plan);
+    }
+
+    private List<String> explain(String query, Object... args) {
+        // Room's named parameters are bound by position.
+        String sql = "EXPLAIN QUERY PLAN " + query.replaceAll(":\\w+", "?");
+        Cursor cursor = mDb.query(sql, args);
+        List<String> plan = new ArrayList<>();
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+}
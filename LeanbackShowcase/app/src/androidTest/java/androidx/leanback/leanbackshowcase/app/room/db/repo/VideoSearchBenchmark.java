@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
+import androidx.room.Room;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Times the search and category queries on 50k videos against the queries they replaced: the
+ * LIKE search and the category lookup without index.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideoSearchBenchmark {
+
+    private static final String TAG = "VideoSearchBenchmark";
+    private static final String DATABASE_NAME = "search_benchmark.db";
+
+    private static final int CATEGORIES = 500;
+    private static final int VIDEOS_PER_CATEGORY = 100;
+    private static final String[] SEARCHES = {"Video 42", "category 317", "Vid", "nothing"};
+    private static final int ITERATIONS = 10;
+
+    // The search before the full text search table.
+    private static final String LIKE_SEARCH = "SELECT * FROM "
+            + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_NAME + " LIKE ?"
+            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + " LIKE ?";
+
+    private static final String CATEGORY_NOT_INDEXED = "SELECT * FROM "
+            + DatabaseColumnConstant.VideoEntry.TABLE_NAME + " NOT INDEXED"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + " = ?";
+
+    private Context mContext;
+    private AppDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+        mDb = Room.databaseBuilder(mContext, AppDatabase.class, DATABASE_NAME).build();
+        new DatabasePopulator(mDb).populateNow(
+                TestContent.create(CATEGORIES, VIDEOS_PER_CATEGORY).getAllResources());
+    }
+
+    @After
+    public void tearDown() {
+        mDb.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void search() {
+        long likeNanos = 0;
+        long ftsNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (String search : SEARCHES) {
+                String pattern = "%" + search + "%";
+                long start = System.nanoTime();
+                read(LIKE_SEARCH, pattern, pattern);
+                likeNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                read(VideoDao.SEARCH_VIDEOS.replace(":matchQuery", "?"),
+                        SearchQuery.toMatchQuery(search));
+                ftsNanos += System.nanoTime() - start;
+            }
+        }
+        int searches = ITERATIONS * SEARCHES.length;
+        Log.i(TAG, String.format("search of %d videos: LIKE %.2fms, full text %.2fms",
+                CATEGORIES * VIDEOS_PER_CATEGORY, likeNanos / 1e6 / searches,
+                ftsNanos / 1e6 / searches));
+        assertTrue(ftsNanos < likeNanos);
+    }
+
+    @Test
+    public void loadCategory() {
+        long scanNanos = 0;
+        long indexNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            String category = "Category " + (i * 37 % CATEGORIES);
+            long start = System.nanoTime();
+            read(CATEGORY_NOT_INDEXED, category);
+            scanNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            read(VideoDao.LOAD_VIDEO_IN_SAME_CATEGORY.replace(":category", "?"), category);
+            indexNanos += System.nanoTime() - start;
+        }
+        Log.i(TAG, String.format("category of %d videos: scan %.2fms, index %.2fms",
+                CATEGORIES * VIDEOS_PER_CATEGORY, scanNanos / 1e6 / ITERATIONS,
+                indexNanos / 1e6 / ITERATIONS));
+        assertTrue(indexNanos < scanNanos);
+    }
+
+    /**
+     * Runs the query and reads every row, as Room does.
+     */
+    private int read(String query, Object... args) {
+        Cursor cursor = mDb.query(query, args);
+        int rows = 0;
+        try {
+            int columns = cursor.getColumnCount();
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columns; i++) {
+                    cursor.getString(i);
+                }
+                rows++;
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.os.StrictMode;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what injecting the repository costs the main thread, and how long the bootstrap takes
+ * to report the database readiness.
+ *
+ * <p>The repository is created and used the way the browse fragment does on the main thread,
+ * under a strict mode policy killing the process on any disk or network access, so the test
+ * run fails if injection does I/O on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideosRepositoryStartupBenchmark {
+
+    private static final String TAG = "RepositoryStartup";
+
+    // Creating the repository only allocates, it should take far less than a frame.
+    private static final long MAX_INJECTION_MS = 16;
+    private static final long BOOTSTRAP_TIMEOUT_SECONDS = 60;
+
+    private VideosRepository mRepository;
+    private LiveData<Boolean> mDatabaseReady;
+    private long mStartNs;
+    private long mInjectionNs;
+
+    @Test
+    public void injectionDoesNoIoOnMainThread() throws InterruptedException {
+        final CountDownLatch ready = new CountDownLatch(1);
+        final long[] readyNs = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                StrictMode.ThreadPolicy policy = StrictMode.getThreadPolicy();
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .detectNetwork()
+                        .penaltyLog()
+                        .penaltyDeath()
+                        .build());
+                try {
+                    mStartNs = System.nanoTime();
+                    mRepository = new VideosRepository();
+                    LiveData<List<CategoryEntity>> categories = mRepository.getAllCategories();
+                    mDatabaseReady = mRepository.getDatabaseReady();
+                    mRepository.getPagedVideosInSameCategoryLiveData("category");
+                    mInjectionNs = System.nanoTime() - mStartNs;
+                    assertNotNull(categories);
+                } finally {
+                    StrictMode.setThreadPolicy(policy);
+                }
+
+                mDatabaseReady.observeForever(new Observer<Boolean>() {
+                    @Override
+                    public void onChanged(@Nullable Boolean isReady) {
+                        readyNs[0] = System.nanoTime();
+                        ready.countDown();
+                    }
+                });
+            }
+        });
+
+        boolean reported = ready.await(BOOTSTRAP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long injectionMs = TimeUnit.NANOSECONDS.toMillis(mInjectionNs);
+        Log.i(TAG, "injection on the main thread " + injectionMs + "ms, readiness "
+                + (reported ? mDatabaseReady.getValue() + " after "
+                + TimeUnit.NANOSECONDS.toMillis(readyNs[0] - mStartNs) + "ms" : "not reported"));
+        assertTrue(reported);
+        assertTrue(injectionMs < MAX_INJECTION_MS);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.ui;
+
+import static androidx.leanback.leanbackshowcase.app.room.ui.VideoCardTestHelper.createVideo;
+import static org.junit.Assert.assertTrue;
+
+import android.util.Log;
+import android.widget.FrameLayout;
+import androidx.leanback.leanbackshowcase.app.room.controller.overview.LiveDataRowsActivity;
+import androidx.leanback.widget.Presenter;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.ActivityTestRule;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Times the creation and the first bind of the card view holders while the rows fill, on the
+ * main thread, the way the browse fragment creates them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideoCardPresenterBenchmark {
+
+    private static final String TAG = "CardPresenterBenchmark";
+
+    private static final int ROWS = 5;
+
+    // The cards a row creates until it fills the screen, plus the ones prefetched.
+    private static final int CARDS_PER_ROW = 10;
+
+    // The cards of a row should be created within a frame.
+    private static final long MAX_ROW_CREATION_NS = 16000000L;
+
+    @Rule
+    public ActivityTestRule<LiveDataRowsActivity> mActivityRule =
+            VideoCardTestHelper.createActivityRule();
+
+    @Test
+    public void createViewHolders() {
+        final LiveDataRowsActivity activity = mActivityRule.getActivity();
+        final long[] createNs = new long[ROWS];
+        final long[] bindNs = new long[ROWS];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                FrameLayout parent = new FrameLayout(activity);
+
+                // All the rows share the fragment's presenter.
+                VideoCardPresenter presenter = new VideoCardPresenter();
+                for (int row = 0; row < ROWS; row++) {
+                    Presenter.ViewHolder[] viewHolders = new Presenter.ViewHolder[CARDS_PER_ROW];
+                    long start = System.nanoTime();
+                    for (int i = 0; i < CARDS_PER_ROW; i++) {
+                        viewHolders[i] = presenter.onCreateViewHolder(parent);
+                    }
+                    createNs[row] = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    for (int i = 0; i < CARDS_PER_ROW; i++) {
+                        presenter.onBindViewHolder(viewHolders[i],
+                                createVideo(row * CARDS_PER_ROW + i));
+                    }
+                    bindNs[row] = System.nanoTime() - start;
+                }
+            }
+        });
+
+        long totalCreateNs = 0;
+        long totalBindNs = 0;
+        for (int row = 0; row < ROWS; row++) {
+            Log.i(TAG, String.format("row %d: create %.2fms, bind %.2fms", row,
+                    createNs[row] / 1e6, bindNs[row] / 1e6));
+            totalCreateNs += createNs[row];
+            totalBindNs += bindNs[row];
+        }
+        int cards = ROWS * CARDS_PER_ROW;
+        Log.i(TAG, String.format("%d cards: create %.3fms, bind %.3fms per card", cards,
+                totalCreateNs / 1e6 / cards, totalBindNs / 1e6 / cards));
+
+        // Averaged over the rows, the first one also loads the resources shared by the cards.
+        assertTrue(totalCreateNs / ROWS < MAX_ROW_CREATION_NS);
+    }
+}
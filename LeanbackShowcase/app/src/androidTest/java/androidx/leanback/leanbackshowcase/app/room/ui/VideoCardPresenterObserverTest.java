@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.ui;
+
+import static androidx.leanback.leanbackshowcase.app.room.ui.VideoCardTestHelper.createVideo;
+import static org.junit.Assert.assertEquals;
+
+import android.widget.FrameLayout;
+import androidx.leanback.leanbackshowcase.app.room.controller.overview.LiveDataRowsActivity;
+import androidx.leanback.widget.Presenter;
+import androidx.lifecycle.LifecycleRegistry;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.ActivityTestRule;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Binds 1,000 cards the way a scrolled row does, recycling a few view holders, and checks that
+ * no observer is left behind: an observer of the network or permission live data bound to the
+ * activity is also an observer of its lifecycle.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VideoCardPresenterObserverTest {
+
+    private static final int CARDS = 1000;
+
+    // About the number of view holders a row keeps and rebinds while scrolling.
+    private static final int VIEW_HOLDERS = 12;
+
+    @Rule
+    public ActivityTestRule<LiveDataRowsActivity> mActivityRule =
+            VideoCardTestHelper.createActivityRule();
+
+    @Test
+    public void scrollingCardsRegistersNoObserver() {
+        final LiveDataRowsActivity activity = mActivityRule.getActivity();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LifecycleRegistry lifecycle = (LifecycleRegistry) activity.getLifecycle();
+                int lifecycleObservers = lifecycle.getObserverCount();
+
+                VideoCardPresenter presenter = new VideoCardPresenter();
+                FrameLayout parent = new FrameLayout(activity);
+                Presenter.ViewHolder[] viewHolders = new Presenter.ViewHolder[VIEW_HOLDERS];
+                for (int i = 0; i < VIEW_HOLDERS; i++) {
+                    viewHolders[i] = presenter.onCreateViewHolder(parent);
+                }
+                for (int i = 0; i < CARDS; i++) {
+                    Presenter.ViewHolder viewHolder = viewHolders[i % VIEW_HOLDERS];
+                    if (i >= VIEW_HOLDERS) {
+                        presenter.onUnbindViewHolder(viewHolder);
+                    }
+                    presenter.onBindViewHolder(viewHolder, createVideo(i));
+                }
+
+                assertEquals(lifecycleObservers, lifecycle.getObserverCount());
+            }
+        });
+    }
+}
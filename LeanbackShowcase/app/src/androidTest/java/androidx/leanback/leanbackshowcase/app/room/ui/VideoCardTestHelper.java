@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.ui;
+
+import androidx.leanback.leanbackshowcase.app.room.controller.overview.LiveDataRowsActivity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.test.rule.ActivityTestRule;
+
+/**
+ * Activity and videos shared by the tests binding video cards.
+ */
+final class VideoCardTestHelper {
+
+    private VideoCardTestHelper() {
+    }
+
+    /**
+     * Returns a rule launching the browse activity, which the cards are created in.
+     */
+    static ActivityTestRule<LiveDataRowsActivity> createActivityRule() {
+        return new ActivityTestRule<>(LiveDataRowsActivity.class);
+    }
+
+    /**
+     * Returns a video with no card image, so its card is bound without network access.
+     */
+    static VideoEntity createVideo(long id) {
+        VideoEntity video = new VideoEntity();
+        video.setId(id);
+        video.setTitle("Video " + id);
+        video.setStudio("Studio");
+        video.setCategory("Category");
+        video.setCardImageUrl(null);
+        video.setVideoCardImageLocalStorageUrl("");
+        video.setVideoBgImageLocalStorageUrl("");
+        video.setVideoLocalStorageUrl("");
+        video.setStatus("");
+        return video;
+    }
+}
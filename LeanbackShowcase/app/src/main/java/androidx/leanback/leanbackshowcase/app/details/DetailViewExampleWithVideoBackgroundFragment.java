@@ -22,8 +22,8 @@ import android.os.Handler;
 import androidx.leanback.app.DetailsFragment;
 import androidx.leanback.app.DetailsFragmentBackgroundController;
 import androidx.leanback.media.MediaPlayerAdapter;
-import androidx.leanback.media.MediaPlayerGlue;
 import androidx.leanback.leanbackshowcase.R;
+import androidx.leanback.leanbackshowcase.app.media.ExoPlayerAdapter;
 import androidx.leanback.leanbackshowcase.app.media.PlaybackSeekDiskDataProvider;
 import androidx.leanback.leanbackshowcase.app.media.VideoMediaPlayerGlue;
 import androidx.leanback.leanbackshowcase.app.wizard.WizardExampleActivity;
@@ -178,12 +178,14 @@ public class DetailViewExampleWithVideoBackgroundFragment extends DetailsFragmen
     private void initializeBackground() {
         mDetailsBackground.enableParallax();
 
-        MediaPlayerGlue playerGlue = new MediaPlayerGlue(getActivity());
+        // The trailer plays through ExoPlayer so that replays are served from the media cache.
+        VideoMediaPlayerGlue<ExoPlayerAdapter> playerGlue = new VideoMediaPlayerGlue(
+                getActivity(), new ExoPlayerAdapter(getActivity()));
         mDetailsBackground.setupVideoPlayback(playerGlue);
 
         playerGlue.setTitle(data.getTitle().concat(" (Trailer)"));
-        playerGlue.setArtist(data.getDescription());
-        playerGlue.setVideoUrl(data.getTrailerUrl());
+        playerGlue.setSubtitle(data.getDescription());
+        playerGlue.getPlayerAdapter().setDataSource(Uri.parse(data.getTrailerUrl()));
     }
 
     private void playMainVideoOnBackground() {
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Byte bounded pool of mutable bitmaps that are no longer displayed, handed out again as
+ * {@link android.graphics.BitmapFactory.Options#inBitmap} so that decoding a thumbnail does not
+ * allocate a new bitmap. When the pool is full the oldest bitmaps are dropped.
+ */
+public class BitmapPool {
+
+    private final int mMaxBytes;
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+    private int mBytes;
+
+    public BitmapPool(int maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a bitmap that nobody displays anymore to the pool.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled()) {
+            return;
+        }
+        int bytes = bitmap.getAllocationByteCount();
+        if (bytes > mMaxBytes) {
+            return;
+        }
+        mBitmaps.addLast(bitmap);
+        mBytes += bytes;
+        while (mBytes > mMaxBytes) {
+            mBytes -= mBitmaps.removeFirst().getAllocationByteCount();
+        }
+    }
+
+    /**
+     * Removes and returns a bitmap large enough to decode an image of the given size into, or
+     * null if the pool has none.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+        for (Iterator<Bitmap> it = mBitmaps.iterator(); it.hasNext(); ) {
+            Bitmap bitmap = it.next();
+            int bytes = bitmap.getAllocationByteCount();
+            if (bytes >= needed && bitmap.getConfig() == config) {
+                it.remove();
+                mBytes -= bytes;
+                return bitmap;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drops all pooled bitmaps.
+     */
+    public synchronized void clear() {
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    public synchronized int getSizeInBytes() {
+        return mBytes;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 4;
+    }
+}
@@ -37,8 +37,6 @@ import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
 import com.google.android.exoplayer2.trackselection.TrackSelectionArray;
-import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
-import com.google.android.exoplayer2.util.Util;
 
 /**
  * This implementation extends the {@link PlayerAdapter} with a {@link SimpleExoPlayer}.
@@ -61,6 +59,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
     Uri mMediaSourceUri = null;
     boolean mHasDisplay;
     boolean mBufferingStart;
+    final PlaybackQoeCollector mQoeCollector = new PlaybackQoeCollector();
     @C.StreamType int mAudioStreamType;
 
     /**
@@ -72,6 +71,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
                 new DefaultTrackSelector(),
                 new DefaultLoadControl());
         mPlayer.addListener(this);
+        mPlayer.setVideoDebugListener(mQoeCollector);
     }
 
     @Override
@@ -115,6 +115,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
      * Release internal {@link SimpleExoPlayer}. Should not use the object after call release().
      */
     public void release() {
+        mQoeCollector.endSession();
         changeToUninitialized();
         mHasDisplay = false;
         mPlayer.release();
@@ -207,6 +208,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
         if (!mInitialized) {
             return;
         }
+        mQoeCollector.onSeekStarted();
         mPlayer.seekTo(newPosition);
     }
 
@@ -250,9 +252,8 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
      * @return MediaSource for the player
      */
     public MediaSource onCreateMediaSource(Uri uri) {
-        String userAgent = Util.getUserAgent(mContext, "ExoPlayerAdapter");
         return new ExtractorMediaSource(uri,
-                new DefaultDataSourceFactory(mContext, userAgent),
+                MediaCache.getInstance(mContext).getDataSourceFactory(),
                 new DefaultExtractorsFactory(),
                 null,
                 null);
@@ -261,6 +262,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
     private void prepareMediaForPlaying() {
         reset();
         if (mMediaSourceUri != null) {
+            mQoeCollector.startSession(mMediaSourceUri.toString());
             MediaSource mediaSource = onCreateMediaSource(mMediaSourceUri);
             mPlayer.prepare(mediaSource);
         } else {
@@ -316,6 +318,7 @@ public class ExoPlayerAdapter extends PlayerAdapter implements ExoPlayer.EventLi
 
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        mQoeCollector.onPlayerStateChanged(playWhenReady, playbackState);
         mBufferingStart = false;
         if (playbackState == ExoPlayer.STATE_READY && !mInitialized) {
             mInitialized = true;
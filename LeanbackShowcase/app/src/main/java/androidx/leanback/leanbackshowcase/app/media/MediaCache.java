@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.upstream.FileDataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSink;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide on-disk media cache with least recently used eviction. {@link ExoPlayerAdapter}
+ * reads through {@link #getDataSourceFactory()} so rewatching, seeking backwards and replaying a
+ * video or trailer are served from disk. {@link SimpleCache} locks its directory, so there must
+ * only ever be one instance per process.
+ *
+ * <p>Counts the bytes served from the cache and from the network so the hit ratio and the bytes
+ * saved can be reported.
+ */
+public final class MediaCache {
+
+    public static final long DEFAULT_MAX_CACHE_BYTES = 100 * 1024 * 1024;
+
+    private static final String CACHE_DIRECTORY = "media";
+    private static final long MAX_CACHE_FILE_BYTES = 2 * 1024 * 1024;
+
+    private static long sMaxCacheBytes = DEFAULT_MAX_CACHE_BYTES;
+    private static MediaCache sInstance;
+
+    private final Cache mCache;
+    private final DataSource.Factory mUpstreamFactory;
+    private final DataSource.Factory mDataSourceFactory;
+    private final AtomicLong mCacheBytesRead = new AtomicLong();
+    private final AtomicLong mUpstreamBytesRead = new AtomicLong();
+
+    /**
+     * Sets the maximum size of the cache. Must be called before the cache is first used.
+     *
+     * @param maxCacheBytes the size above which the least recently used media is evicted.
+     */
+    public static synchronized void setMaxCacheBytes(long maxCacheBytes) {
+        if (sInstance != null) {
+            throw new IllegalStateException("The media cache has already been created.");
+        }
+        sMaxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Returns the shared media cache, creating it on first use.
+     *
+     * @param context used for locating the cache directory and creating network data sources.
+     * @return the shared cache.
+     */
+    public static synchronized MediaCache getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            String userAgent = Util.getUserAgent(appContext, "ExoPlayerAdapter");
+            sInstance =
+                    new MediaCache(
+                            new File(appContext.getCacheDir(), CACHE_DIRECTORY),
+                            sMaxCacheBytes,
+                            new DefaultDataSourceFactory(appContext, userAgent));
+        }
+        return sInstance;
+    }
+
+    MediaCache(File directory, long maxCacheBytes, final DataSource.Factory upstreamFactory) {
+        mCache = new SimpleCache(directory, new LeastRecentlyUsedCacheEvictor(maxCacheBytes));
+        mUpstreamFactory =
+                new DataSource.Factory() {
+                    @Override
+                    public DataSource createDataSource() {
+                        return new CountingDataSource(
+                                upstreamFactory.createDataSource(), mUpstreamBytesRead);
+                    }
+                };
+        mDataSourceFactory =
+                new DataSource.Factory() {
+                    @Override
+                    public DataSource createDataSource() {
+                        return new CacheDataSource(
+                                mCache,
+                                mUpstreamFactory.createDataSource(),
+                                new CountingDataSource(new FileDataSource(), mCacheBytesRead),
+                                new CacheDataSink(mCache, MAX_CACHE_FILE_BYTES),
+                                CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR,
+                                null);
+                    }
+                };
+    }
+
+    /** Returns the underlying cache, e.g. for warming media into it ahead of playback. */
+    public Cache getCache() {
+        return mCache;
+    }
+
+    /** Returns a factory for data sources that read from the cache and fill it from the network. */
+    public DataSource.Factory getDataSourceFactory() {
+        return mDataSourceFactory;
+    }
+
+    /** Returns a factory for data sources that bypass the cache and read from the network. */
+    public DataSource.Factory getUpstreamDataSourceFactory() {
+        return mUpstreamFactory;
+    }
+
+    /** Returns the number of bytes served from the cache instead of the network. */
+    public long getBytesSaved() {
+        return mCacheBytesRead.get();
+    }
+
+    /** Returns the number of bytes read from the network. */
+    public long getUpstreamBytesRead() {
+        return mUpstreamBytesRead.get();
+    }
+
+    /** Returns the fraction of bytes served from the cache, or 0 if nothing has been read yet. */
+    public float getHitRatio() {
+        long cached = mCacheBytesRead.get();
+        long total = cached + mUpstreamBytesRead.get();
+        return total == 0 ? 0f : (float) cached / total;
+    }
+
+    /** Returns the number of bytes currently stored in the cache. */
+    public long getCacheSpace() {
+        return mCache.getCacheSpace();
+    }
+
+    /** Wraps a {@link DataSource} and adds the bytes read from it to a counter. */
+    private static final class CountingDataSource implements DataSource {
+
+        private final DataSource mDataSource;
+        private final AtomicLong mCounter;
+
+        CountingDataSource(DataSource dataSource, AtomicLong counter) {
+            mDataSource = dataSource;
+            mCounter = counter;
+        }
+
+        @Override
+        public long open(DataSpec dataSpec) throws IOException {
+            return mDataSource.open(dataSpec);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) throws IOException {
+            int read = mDataSource.read(buffer, offset, readLength);
+            if (read > 0) {
+                mCounter.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public Uri getUri() {
+            return mDataSource.getUri();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDataSource.close();
+        }
+    }
+}
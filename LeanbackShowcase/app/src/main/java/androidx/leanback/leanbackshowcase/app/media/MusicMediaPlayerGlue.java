@@ -178,6 +178,12 @@ public class MusicMediaPlayerGlue extends MediaPlayerGlue implements
             if (mPlaybackService != null) {
                 mPlaybackService.setRepeatState(mapActionIndexToServiceRepeatState(index));
             }
+        } else if (action instanceof PlaybackControlsRow.ShuffleAction) {
+            int index = ((PlaybackControlsRow.ShuffleAction) action).getIndex();
+            if (mPlaybackService != null) {
+                mPlaybackService.setShuffleEnabled(
+                        index == PlaybackControlsRow.ShuffleAction.INDEX_ON);
+            }
         }
     }
 
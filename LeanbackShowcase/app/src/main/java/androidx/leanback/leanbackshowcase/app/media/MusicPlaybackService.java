@@ -30,6 +30,7 @@ import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
@@ -67,6 +68,13 @@ public class MusicPlaybackService extends Service {
     private int mRepeatState = MEDIA_ACTION_NO_REPEAT;
 
     private MediaPlayer mPlayer;
+    // Prepared with the item following the current one and chained to mPlayer with
+    // setNextMediaPlayer, so the next track starts without the gap of a prepare.
+    private MediaPlayer mNextPlayer;
+    private MediaMetaData mNextMediaItem;
+    private int mNextMediaPosition = -1;
+    private boolean mNextPrepared = false;
+    private boolean mGaplessEnabled = true;
     // MediaSession created for communication between NowPlayingCard in the launcher and the current MediaPlayer state
     private MediaSessionCompat mMediaSession;
 
@@ -74,9 +82,21 @@ public class MusicPlaybackService extends Service {
     int mCurrentMediaPosition = -1;
     int mCurrentMediaState = -1;
     MediaMetaData mCurrentMediaItem;
-    List<MediaMetaData> mMediaItemList = new ArrayList<>();
+    final PlayQueue<MediaMetaData> mPlayQueue = new PlayQueue<>(
+            new PlayQueue.KeyProvider<MediaMetaData>() {
+                @Override
+                public Object getKey(MediaMetaData item) {
+                    return item.getMediaSourceUri();
+                }
+            });
     private boolean mInitialized = false; // true when the MediaPlayer is prepared/initialized
 
+    // Time from the end of a track, or a skip, until the following track plays.
+    private long mTrackSwitchStartMs = -1;
+    private long mLastTrackSwitchLatencyMs;
+    private long mTotalTrackSwitchLatencyMs;
+    private int mTrackSwitchCount;
+
     private static final int FOCUS_CHANGE = 2;
     private NotificationManager mNotificationManager = (NotificationManager) getApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
 
@@ -206,15 +226,92 @@ public class MusicPlaybackService extends Service {
     }
 
     public void setMediaItemList(List<MediaMetaData> mediaItemList, boolean isQueue) {
-        if (!isQueue) {
-            mMediaItemList.clear();
+        if (isQueue) {
+            mPlayQueue.addAll(mediaItemList);
+        } else {
+            mPlayQueue.setItems(mediaItemList);
         }
-        mMediaItemList.addAll(mediaItemList);
+        onQueueChanged();
+    }
+
+    /**
+     * Inserts a media item in the list at the given position.
+     */
+    public void addMediaItem(int position, MediaMetaData mediaItem) {
+        mPlayQueue.add(position, mediaItem);
+        onQueueChanged();
+    }
+
+    /**
+     * Removes the media item at the given position from the list. If it is the current item, it
+     * keeps playing and playback stops when it completes.
+     */
+    public void removeMediaItem(int position) {
+        mPlayQueue.remove(position);
+        onQueueChanged();
+    }
+
+    /**
+     * Moves a media item of the list to another position.
+     */
+    public void moveMediaItem(int fromPosition, int toPosition) {
+        mPlayQueue.move(fromPosition, toPosition);
+        onQueueChanged();
+    }
+
+    /**
+     * @return An immutable snapshot of the media item list, safe to iterate while the list changes.
+     */
+    public List<MediaMetaData> getMediaItemList() {
+        return mPlayQueue.snapshot();
+    }
+
+    /**
+     * Plays the media items in a random order instead of the list order. The list order is kept
+     * and used again when shuffle is disabled.
+     */
+    public void setShuffleEnabled(boolean enabled) {
+        mPlayQueue.setShuffleEnabled(enabled, mCurrentMediaPosition);
+        onQueueChanged();
+    }
 
+    public boolean isShuffleEnabled() {
+        return mPlayQueue.isShuffleEnabled();
+    }
+
+    /**
+     * Updates the positions of the current and next items after the list or its order changed,
+     * re-preparing the next item only if it is a different one.
+     */
+    private void onQueueChanged() {
+        mCurrentMediaPosition = mCurrentMediaItem == null ? -1
+                : mPlayQueue.indexOf(mCurrentMediaItem);
+        int nextPosition = getNextMediaPosition();
+        if (mNextMediaItem != null && nextPosition != -1 && mNextMediaItem.getMediaSourceUri()
+                .equals(mPlayQueue.get(nextPosition).getMediaSourceUri())) {
+            mNextMediaPosition = nextPosition;
+            return;
+        }
+        releaseNextMedia();
+        prepareNextMedia();
     }
 
     public void setRepeatState(int repeatState) {
         mRepeatState = repeatState;
+        prepareNextMedia();
+    }
+
+    /**
+     * Enables preparing the next media item while the current one plays, so that tracks follow
+     * each other without a gap. Enabled by default.
+     */
+    public void setGaplessEnabled(boolean enabled) {
+        mGaplessEnabled = enabled;
+        if (enabled) {
+            prepareNextMedia();
+        } else {
+            releaseNextMedia();
+        }
     }
 
     public int getRepeatState() {
@@ -249,18 +346,14 @@ public class MusicPlaybackService extends Service {
             }
         } else {
             mCurrentMediaPosition = mediaItemPos;
+            mTrackSwitchStartMs = SystemClock.elapsedRealtime();
             notifyMediaItemChanged(mediaItemToPlay);
             prepareNewMedia();
         }
     }
 
     int findMediaItemPosition(MediaMetaData mediaItem) {
-        for(int i = 0; i < mMediaItemList.size(); i++) {
-            if (mMediaItemList.get(i).getMediaSourceUri().equals(mediaItem.getMediaSourceUri())) {
-                return i;
-            }
-        }
-        return -1;
+        return mPlayQueue.indexOf(mediaItem);
     }
 
     private void prepareNewMedia() {
@@ -272,52 +365,195 @@ public class MusicPlaybackService extends Service {
             throw new RuntimeException(e);
         }
         mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-        mPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
-            @Override public void onPrepared(MediaPlayer mp) {
-                updateMediaSessionMetaData();
-                mInitialized = true;
-                play();
+        mPlayer.setOnPreparedListener(mOnPreparedListener);
+        mPlayer.setOnErrorListener(mOnErrorListener);
+        mPlayer.setOnCompletionListener(mOnCompletionListener);
+        mPlayer.prepareAsync();
+        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PREPARING);
+    }
+
+    private final MediaPlayer.OnPreparedListener mOnPreparedListener =
+            new MediaPlayer.OnPreparedListener() {
+        @Override public void onPrepared(MediaPlayer mp) {
+            if (mp == mNextPlayer) {
+                mNextPrepared = true;
+                mPlayer.setNextMediaPlayer(mNextPlayer);
+                return;
             }
-        });
-        mPlayer.setOnErrorListener(new MediaPlayer.OnErrorListener() {
-            @Override
-            public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
-                Log.e(TAG, "Error: what=" + what + ", extra=" + extra);
-                return true;
+            updateMediaSessionMetaData();
+            mInitialized = true;
+            play();
+            onTrackSwitched();
+            prepareNextMedia();
+        }
+    };
+
+    private final MediaPlayer.OnErrorListener mOnErrorListener = new MediaPlayer.OnErrorListener() {
+        @Override
+        public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+            Log.e(TAG, "Error: what=" + what + ", extra=" + extra);
+            if (mediaPlayer == mNextPlayer) {
+                // Fall back to preparing the next item when the current one completes.
+                releaseNextMedia();
             }
-        });
-
-        mPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
-            @Override public void onCompletion(MediaPlayer mp) {
-                updateMediaSessionPlayState();
-                if (mRepeatState == MEDIA_ACTION_REPEAT_ALL &&
-                        mCurrentMediaPosition == mMediaItemList.size() - 1) {
-                    // The last media item is played and repeatAll action is enabled;
-                    // start over the media list from the beginning
-                    mCurrentMediaPosition = 0;
-                    notifyMediaItemChanged(mMediaItemList.get(mCurrentMediaPosition));
-                    prepareNewMedia();
-                } else if (mRepeatState == MEDIA_ACTION_REPEAT_ONE) {
-                    // repeat playing the same media item
-                    prepareNewMedia();
-                } else if (mCurrentMediaPosition < mMediaItemList.size() - 1) {
-                    // Move on to playing the next media item in the list
-                    mCurrentMediaPosition++;
-                    notifyMediaItemChanged(mMediaItemList.get(mCurrentMediaPosition));
-                    prepareNewMedia();
-                } else {
-                    // Last media item is reached, and the service is no longer necessary;
-                    // Stop the service after some delay, since the service might need to stay alive
-                    // for some time for the cleanup (such as updating the progress bar during the
-                    // final seconds).
-                    notifyMediaStateChanged(MediaUtils.MEDIA_STATE_MEDIALIST_COMPLETED);
-                    stopServiceIfNeeded();
+            return true;
+        }
+    };
 
+    private final MediaPlayer.OnCompletionListener mOnCompletionListener =
+            new MediaPlayer.OnCompletionListener() {
+        @Override public void onCompletion(MediaPlayer mp) {
+            if (mp != mPlayer) {
+                return;
+            }
+            mTrackSwitchStartMs = SystemClock.elapsedRealtime();
+            int nextPosition = getNextMediaPosition();
+            if (nextPosition != -1 && nextPosition == mNextMediaPosition && mNextPrepared) {
+                // The chained player has already started playing the next item.
+                switchToNextPlayer();
+                return;
+            }
+            updateMediaSessionPlayState();
+            if (nextPosition != -1) {
+                mCurrentMediaPosition = nextPosition;
+                if (mRepeatState != MEDIA_ACTION_REPEAT_ONE) {
+                    notifyMediaItemChanged(mPlayQueue.get(mCurrentMediaPosition));
                 }
+                prepareNewMedia();
+            } else {
+                // Last media item is reached, and the service is no longer necessary;
+                // Stop the service after some delay, since the service might need to stay alive
+                // for some time for the cleanup (such as updating the progress bar during the
+                // final seconds).
+                mTrackSwitchStartMs = -1;
+                notifyMediaStateChanged(MediaUtils.MEDIA_STATE_MEDIALIST_COMPLETED);
+                stopServiceIfNeeded();
             }
-        });
-        mPlayer.prepareAsync();
-        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PREPARING);
+        }
+    };
+
+    /**
+     * @return The position of the media item to play once the current one completes, following
+     * the repeat state, or -1 if playback stops.
+     */
+    int getNextMediaPosition() {
+        if (mCurrentMediaPosition == -1 || mPlayQueue.isEmpty()) {
+            return -1;
+        }
+        if (mRepeatState == MEDIA_ACTION_REPEAT_ONE) {
+            // repeat playing the same media item
+            return mCurrentMediaPosition;
+        }
+        // After the last media item, start over from the beginning if repeatAll is enabled
+        return mPlayQueue.getNextPosition(mCurrentMediaPosition,
+                mRepeatState == MEDIA_ACTION_REPEAT_ALL);
+    }
+
+    /**
+     * Prepares the media item that follows the current one on the second player and chains it to
+     * the current player. Does nothing if it is already prepared or being prepared.
+     */
+    private void prepareNextMedia() {
+        if (!mGaplessEnabled || !mInitialized || mPlayer == null) {
+            return;
+        }
+        int nextPosition = getNextMediaPosition();
+        if (nextPosition == mNextMediaPosition && mNextPlayer != null) {
+            return;
+        }
+        releaseNextMedia();
+        if (nextPosition == -1) {
+            return;
+        }
+        if (mNextPlayer == null) {
+            mNextPlayer = new MediaPlayer();
+        }
+        MediaMetaData nextMediaItem = mPlayQueue.get(nextPosition);
+        try {
+            mNextPlayer.setDataSource(getApplicationContext(),
+                    nextMediaItem.getMediaSourceUri());
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot prepare the next media item", e);
+            mNextPlayer.reset();
+            return;
+        }
+        mNextMediaPosition = nextPosition;
+        mNextMediaItem = nextMediaItem;
+        mNextPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        mNextPlayer.setOnPreparedListener(mOnPreparedListener);
+        mNextPlayer.setOnErrorListener(mOnErrorListener);
+        mNextPlayer.setOnCompletionListener(mOnCompletionListener);
+        mNextPlayer.prepareAsync();
+    }
+
+    /**
+     * Unchains and resets the second player, keeping it around for the next preparation.
+     */
+    private void releaseNextMedia() {
+        if (mNextPrepared && mPlayer != null) {
+            mPlayer.setNextMediaPlayer(null);
+        }
+        if (mNextPlayer != null) {
+            mNextPlayer.reset();
+        }
+        mNextMediaPosition = -1;
+        mNextMediaItem = null;
+        mNextPrepared = false;
+    }
+
+    /**
+     * Makes the prepared next player the current one and starts it if it is not already playing.
+     * The old player is reset and becomes the next player.
+     */
+    private void switchToNextPlayer() {
+        MediaPlayer previousPlayer = mPlayer;
+        mPlayer = mNextPlayer;
+        mNextPlayer = previousPlayer;
+        mNextPlayer.reset();
+        mNextPrepared = false;
+        mCurrentMediaPosition = mNextMediaPosition;
+        mNextMediaPosition = -1;
+        mNextMediaItem = null;
+        if (!mPlayer.isPlaying()) {
+            mPlayer.start();
+        }
+        notifyMediaItemChanged(mPlayQueue.get(mCurrentMediaPosition));
+        updateMediaSessionMetaData();
+        updateMediaSessionPlayState();
+        notifyMediaStateChanged(MediaUtils.MEDIA_STATE_PLAYING);
+        onTrackSwitched();
+        prepareNextMedia();
+    }
+
+    private void onTrackSwitched() {
+        if (mTrackSwitchStartMs == -1) {
+            return;
+        }
+        mLastTrackSwitchLatencyMs = SystemClock.elapsedRealtime() - mTrackSwitchStartMs;
+        mTotalTrackSwitchLatencyMs += mLastTrackSwitchLatencyMs;
+        mTrackSwitchCount++;
+        mTrackSwitchStartMs = -1;
+        Log.d(TAG, "Track switch took " + mLastTrackSwitchLatencyMs + "ms, average "
+                + getAverageTrackSwitchLatencyMs() + "ms over " + mTrackSwitchCount);
+    }
+
+    /**
+     * @return The time in milliseconds between the end of the previous track, or a skip, and the
+     * start of the current one.
+     */
+    public long getLastTrackSwitchLatencyMs() {
+        return mLastTrackSwitchLatencyMs;
+    }
+
+    /**
+     * @return The average track switch time in milliseconds since the service started.
+     */
+    public long getAverageTrackSwitchLatencyMs() {
+        return mTrackSwitchCount == 0 ? 0 : mTotalTrackSwitchLatencyMs / mTrackSwitchCount;
+    }
+
+    public int getTrackSwitchCount() {
+        return mTrackSwitchCount;
     }
 
     private void updateMediaSessionMetaData() {
@@ -388,6 +624,7 @@ public class MusicPlaybackService extends Service {
     }
 
     void reset() {
+        releaseNextMedia();
         if (mPlayer != null) {
             mPlayer.reset();
             mInitialized = false;
@@ -420,18 +657,20 @@ public class MusicPlaybackService extends Service {
      * skip to next item
      */
     public void next() {
-        if (mMediaItemList.size() == 0) {
+        if (mPlayQueue.isEmpty()) {
             return;
         }
-        if (mCurrentMediaPosition == mMediaItemList.size() - 1) {
-            // The last media item is played and repeatAll action is enabled;
-            // start over the media list from the beginning
-            mCurrentMediaPosition = 0;
-        } else {
-            // Move on to playing the next media item in the list
-            mCurrentMediaPosition++;
+        // Move on to the next media item in the list, or start over from the beginning
+        mCurrentMediaPosition = mCurrentMediaPosition == -1 ? 0
+                : mPlayQueue.getNextPosition(mCurrentMediaPosition, true);
+        mTrackSwitchStartMs = SystemClock.elapsedRealtime();
+        if (mCurrentMediaPosition == mNextMediaPosition && mNextPrepared) {
+            mPlayer.setNextMediaPlayer(null);
+            mPlayer.pause();
+            switchToNextPlayer();
+            return;
         }
-        notifyMediaItemChanged(mMediaItemList.get(mCurrentMediaPosition));
+        notifyMediaItemChanged(mPlayQueue.get(mCurrentMediaPosition));
         prepareNewMedia();
     }
 
@@ -439,18 +678,14 @@ public class MusicPlaybackService extends Service {
      * skip to previous item
      */
     public void previous() {
-        if (mMediaItemList.size() == 0) {
+        if (mPlayQueue.isEmpty()) {
             return;
         }
-        if (mCurrentMediaPosition == 0) {
-            // The last media item is played and repeatAll action is enabled;
-            // start over the media list from the beginning
-            mCurrentMediaPosition = mMediaItemList.size() - 1;
-        } else {
-            // Move on to playing the next media item in the list
-            mCurrentMediaPosition--;
-        }
-        notifyMediaItemChanged(mMediaItemList.get(mCurrentMediaPosition));
+        // Move back to the previous media item in the list, or to the end of the list
+        mCurrentMediaPosition = mCurrentMediaPosition == -1 ? mPlayQueue.size() - 1
+                : mPlayQueue.getPreviousPosition(mCurrentMediaPosition, true);
+        mTrackSwitchStartMs = SystemClock.elapsedRealtime();
+        notifyMediaItemChanged(mPlayQueue.get(mCurrentMediaPosition));
         prepareNewMedia();
     }
 
@@ -544,6 +779,10 @@ public class MusicPlaybackService extends Service {
             mPlayer.release();
             mPlayer = null;
         }
+        if (mNextPlayer != null) {
+            mNextPlayer.release();
+            mNextPlayer = null;
+        }
         if (mMediaSession != null) {
             mMediaSession.release();
             mMediaSession = null;
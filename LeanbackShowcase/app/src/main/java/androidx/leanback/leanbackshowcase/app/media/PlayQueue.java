@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Play queue of media items in their original order, with a key to position index and an
+ * optional shuffle order kept beside the original one.
+ *
+ * <p>Looking up an item and moving to the next or previous one take constant time, so they do not
+ * slow down with large playlists. Editing the queue shifts the positions after the edit; the index
+ * is only rebuilt from the first shifted position the next time a lookup needs it.
+ *
+ * <p>Not thread safe; {@link #snapshot()} returns an immutable copy for callers on other threads
+ * or iterating while the queue changes.
+ */
+public class PlayQueue<T> {
+
+    /**
+     * Returns the key identifying an item in the queue, e.g. its media uri.
+     */
+    public interface KeyProvider<T> {
+        Object getKey(T item);
+    }
+
+    private final KeyProvider<T> mKeyProvider;
+    private final Random mRandom;
+    private final ArrayList<T> mItems = new ArrayList<>();
+    // Key to the position of its first occurrence. Entries below mIndexedCount are up to date.
+    private final HashMap<Object, Integer> mPositions = new HashMap<>();
+    private int mIndexedCount;
+
+    private boolean mShuffleEnabled;
+    // mShuffleOrder[i] is the position of the i-th item to play; mShuffleIndex is its inverse.
+    private int[] mShuffleOrder = new int[0];
+    private int[] mShuffleIndex = new int[0];
+
+    private List<T> mSnapshot;
+
+    public PlayQueue(KeyProvider<T> keyProvider) {
+        this(keyProvider, new Random());
+    }
+
+    PlayQueue(KeyProvider<T> keyProvider, Random random) {
+        mKeyProvider = keyProvider;
+        mRandom = random;
+    }
+
+    public int size() {
+        return mItems.size();
+    }
+
+    public boolean isEmpty() {
+        return mItems.isEmpty();
+    }
+
+    public T get(int position) {
+        return mItems.get(position);
+    }
+
+    /**
+     * @return The position of the first item with the same key as the given one, or -1.
+     */
+    public int indexOf(T item) {
+        return indexOfKey(mKeyProvider.getKey(item));
+    }
+
+    /**
+     * @return The position of the first item with the given key, or -1.
+     */
+    public int indexOfKey(Object key) {
+        Integer position = mPositions.get(key);
+        if (position != null && position < mIndexedCount && isAt(key, position)) {
+            return position;
+        }
+        if (mIndexedCount < mItems.size()) {
+            reindex();
+            position = mPositions.get(key);
+            if (position != null && isAt(key, position)) {
+                return position;
+            }
+        }
+        if (position != null) {
+            // Left behind by an edit that removed the key.
+            mPositions.remove(key);
+        }
+        return -1;
+    }
+
+    private boolean isAt(Object key, int position) {
+        return position < mItems.size() && key.equals(mKeyProvider.getKey(mItems.get(position)));
+    }
+
+    /**
+     * Replaces all the items of the queue.
+     */
+    public void setItems(List<T> items) {
+        mItems.clear();
+        mPositions.clear();
+        mIndexedCount = 0;
+        mItems.addAll(items);
+        if (mShuffleEnabled) {
+            shuffle(-1);
+        }
+        onChanged(0);
+    }
+
+    /**
+     * Appends items to the end of the queue.
+     */
+    public void addAll(List<T> items) {
+        int start = mItems.size();
+        mItems.addAll(items);
+        if (mShuffleEnabled) {
+            insertIntoShuffle(start, items.size());
+        }
+        onChanged(start);
+    }
+
+    /**
+     * Inserts an item at the given position, shifting the following items.
+     */
+    public void add(int position, T item) {
+        mItems.add(position, item);
+        if (mShuffleEnabled) {
+            insertIntoShuffle(position, 1);
+        }
+        onChanged(position);
+    }
+
+    /**
+     * Removes the item at the given position.
+     */
+    public T remove(int position) {
+        T item = mItems.remove(position);
+        Object key = mKeyProvider.getKey(item);
+        Integer indexed = mPositions.get(key);
+        if (indexed != null && indexed == position) {
+            // A later duplicate, if any, is found when the tail is reindexed.
+            mPositions.remove(key);
+        }
+        if (mShuffleEnabled) {
+            removeFromShuffle(position);
+        }
+        onChanged(position);
+        return item;
+    }
+
+    /**
+     * Moves an item to another position, keeping its place in the shuffle order.
+     */
+    public void move(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        mItems.add(to, mItems.remove(from));
+        if (mShuffleEnabled) {
+            int size = mItems.size();
+            for (int i = 0; i < size; i++) {
+                mShuffleOrder[i] = movedPosition(mShuffleOrder[i], from, to);
+                mShuffleIndex[mShuffleOrder[i]] = i;
+            }
+        }
+        onChanged(Math.min(from, to));
+    }
+
+    private static int movedPosition(int position, int from, int to) {
+        if (position == from) {
+            return to;
+        } else if (from < to && position > from && position <= to) {
+            return position - 1;
+        } else if (from > to && position >= to && position < from) {
+            return position + 1;
+        }
+        return position;
+    }
+
+    public void clear() {
+        mItems.clear();
+        mPositions.clear();
+        mIndexedCount = 0;
+        mShuffleOrder = new int[0];
+        mShuffleIndex = new int[0];
+        mSnapshot = null;
+    }
+
+    /**
+     * Enables or disables the shuffle order. A new shuffle order starts with the item at
+     * {@code firstPosition}, or is fully random if it is -1. The shuffle order is only maintained
+     * while it is enabled.
+     */
+    public void setShuffleEnabled(boolean enabled, int firstPosition) {
+        if (enabled && !mShuffleEnabled) {
+            shuffle(firstPosition);
+        }
+        mShuffleEnabled = enabled;
+    }
+
+    public boolean isShuffleEnabled() {
+        return mShuffleEnabled;
+    }
+
+    /**
+     * Creates a new random shuffle order, starting with the item at {@code firstPosition} unless
+     * it is -1.
+     */
+    public void shuffle(int firstPosition) {
+        int size = mItems.size();
+        ensureShuffleCapacity(size);
+        for (int i = 0; i < size; i++) {
+            mShuffleOrder[i] = i;
+        }
+        int start = 0;
+        if (firstPosition >= 0 && firstPosition < size) {
+            mShuffleOrder[0] = firstPosition;
+            mShuffleOrder[firstPosition] = 0;
+            start = 1;
+        }
+        for (int i = size - 1; i > start; i--) {
+            int j = start + mRandom.nextInt(i - start + 1);
+            int swap = mShuffleOrder[i];
+            mShuffleOrder[i] = mShuffleOrder[j];
+            mShuffleOrder[j] = swap;
+        }
+        for (int i = 0; i < size; i++) {
+            mShuffleIndex[mShuffleOrder[i]] = i;
+        }
+    }
+
+    /**
+     * @return The position played after the given one in the current order, or -1 at the end of
+     * the queue unless {@code wrap} is set.
+     */
+    public int getNextPosition(int position, boolean wrap) {
+        int size = mItems.size();
+        if (size == 0) {
+            return -1;
+        }
+        int index = orderIndexOf(position) + 1;
+        if (index == size) {
+            if (!wrap) {
+                return -1;
+            }
+            index = 0;
+        }
+        return positionAt(index);
+    }
+
+    /**
+     * @return The position played before the given one in the current order, or -1 at the start
+     * of the queue unless {@code wrap} is set.
+     */
+    public int getPreviousPosition(int position, boolean wrap) {
+        int size = mItems.size();
+        if (size == 0) {
+            return -1;
+        }
+        int index = orderIndexOf(position) - 1;
+        if (index < 0) {
+            if (!wrap) {
+                return -1;
+            }
+            index = size - 1;
+        }
+        return positionAt(index);
+    }
+
+    private int orderIndexOf(int position) {
+        return mShuffleEnabled ? mShuffleIndex[position] : position;
+    }
+
+    private int positionAt(int orderIndex) {
+        return mShuffleEnabled ? mShuffleOrder[orderIndex] : orderIndex;
+    }
+
+    /**
+     * @return An immutable copy of the items in their original order. The same copy is returned
+     * until the queue changes.
+     */
+    public List<T> snapshot() {
+        if (mSnapshot == null) {
+            mSnapshot = Collections.unmodifiableList(new ArrayList<>(mItems));
+        }
+        return mSnapshot;
+    }
+
+    /**
+     * Gives the {@code count} items just inserted at {@code position} random places in the shuffle
+     * order and shifts the positions after them. Linear in the size of the queue, however many
+     * items are inserted.
+     */
+    private void insertIntoShuffle(int position, int count) {
+        int size = mItems.size();
+        int oldSize = size - count;
+        // The new items in random order, and the index of the old order each goes before.
+        int[] added = new int[count];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            int j = mRandom.nextInt(i + 1);
+            added[i] = added[j];
+            added[j] = position + i;
+            slots[i] = mRandom.nextInt(oldSize + 1);
+        }
+        Arrays.sort(slots);
+        int[] order = new int[Math.max(size, mShuffleOrder.length)];
+        int next = 0;
+        int out = 0;
+        for (int i = 0; i <= oldSize; i++) {
+            while (next < count && slots[next] == i) {
+                order[out++] = added[next++];
+            }
+            if (i < oldSize) {
+                int shifted = mShuffleOrder[i];
+                order[out++] = shifted >= position ? shifted + count : shifted;
+            }
+        }
+        mShuffleOrder = order;
+        ensureShuffleCapacity(size);
+        for (int i = 0; i < size; i++) {
+            mShuffleIndex[mShuffleOrder[i]] = i;
+        }
+    }
+
+    private void removeFromShuffle(int position) {
+        int oldSize = mItems.size() + 1;
+        int index = mShuffleIndex[position];
+        System.arraycopy(mShuffleOrder, index + 1, mShuffleOrder, index, oldSize - index - 1);
+        int size = oldSize - 1;
+        for (int i = 0; i < size; i++) {
+            if (mShuffleOrder[i] > position) {
+                mShuffleOrder[i]--;
+            }
+            mShuffleIndex[mShuffleOrder[i]] = i;
+        }
+    }
+
+    private void ensureShuffleCapacity(int size) {
+        if (mShuffleOrder.length < size) {
+            int capacity = Math.max(size, mShuffleOrder.length * 2);
+            mShuffleOrder = Arrays.copyOf(mShuffleOrder, capacity);
+        }
+        if (mShuffleIndex.length < mShuffleOrder.length) {
+            mShuffleIndex = new int[mShuffleOrder.length];
+        }
+    }
+
+    private void onChanged(int firstChangedPosition) {
+        mIndexedCount = Math.min(mIndexedCount, firstChangedPosition);
+        mSnapshot = null;
+    }
+
+    /**
+     * Indexes the positions from mIndexedCount to the end of the queue.
+     */
+    private void reindex() {
+        int size = mItems.size();
+        for (int i = mIndexedCount; i < size; i++) {
+            Object key = mKeyProvider.getKey(mItems.get(i));
+            Integer existing = mPositions.get(key);
+            // Keep the entry if it is an earlier occurrence of the key.
+            if (existing == null || existing >= i || !isAt(key, existing)) {
+                mPositions.put(key, i);
+            }
+        }
+        mIndexedCount = size;
+    }
+}
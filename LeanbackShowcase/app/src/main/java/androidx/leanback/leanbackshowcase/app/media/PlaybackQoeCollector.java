@@ -0,0 +1,108 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.os.SystemClock;
+import android.view.Surface;
+
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.decoder.DecoderCounters;
+import com.google.android.exoplayer2.video.VideoRendererEventListener;
+
+/**
+ * Collects the quality of experience of the playback sessions of an {@link ExoPlayerAdapter} and
+ * reports a {@link PlaybackSessionSummary} to {@link PlaybackMetrics} for each of them. The
+ * adapter forwards its player events; video renderer events arrive through the player's video
+ * debug listener.
+ */
+public class PlaybackQoeCollector implements VideoRendererEventListener {
+
+    private PlaybackSessionTracker mTracker;
+
+    /** Ends the current session, if any, and starts a new one for the given media. */
+    public void startSession(String mediaId) {
+        endSession();
+        mTracker = new PlaybackSessionTracker(mediaId, SystemClock.elapsedRealtime());
+    }
+
+    /** Ends the current session, if any, and records its summary. */
+    public void endSession() {
+        if (mTracker != null) {
+            PlaybackMetrics.getInstance().record(mTracker.finish(SystemClock.elapsedRealtime()));
+            mTracker = null;
+        }
+    }
+
+    /** @see ExoPlayer.EventListener#onPlayerStateChanged(boolean, int) */
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        if (mTracker != null) {
+            mTracker.onPlayerStateChanged(playWhenReady,
+                    playbackState == ExoPlayer.STATE_BUFFERING,
+                    playbackState == ExoPlayer.STATE_READY,
+                    SystemClock.elapsedRealtime());
+        }
+        if (playbackState == ExoPlayer.STATE_ENDED) {
+            endSession();
+        }
+    }
+
+    /** Called when the adapter starts a seek. */
+    public void onSeekStarted() {
+        if (mTracker != null) {
+            mTracker.onSeekStarted(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onVideoInputFormatChanged(Format format) {
+        if (mTracker != null && format.bitrate != Format.NO_VALUE) {
+            mTracker.onBitrateChanged(format.bitrate, SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onDroppedFrames(int count, long elapsedMs) {
+        if (mTracker != null) {
+            mTracker.onDroppedFrames(count);
+        }
+    }
+
+    @Override
+    public void onRenderedFirstFrame(Surface surface) {
+        if (mTracker != null) {
+            mTracker.onRenderedFirstFrame(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public void onVideoEnabled(DecoderCounters counters) {
+    }
+
+    @Override
+    public void onVideoDecoderInitialized(String decoderName, long initializedTimestampMs,
+            long initializationDurationMs) {
+    }
+
+    @Override
+    public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees,
+            float pixelWidthHeightRatio) {
+    }
+
+    @Override
+    public void onVideoDisabled(DecoderCounters counters) {
+    }
+}
@@ -17,24 +17,65 @@
 package androidx.leanback.leanbackshowcase.app.media;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
+import android.os.SystemClock;
 import androidx.leanback.widget.PlaybackSeekDataProvider;
 import androidx.collection.LruCache;
 import android.util.Log;
 import android.util.SparseArray;
 
 import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
- * Base class that implements PlaybackSeekDataProvider using AsyncTask.THREAD_POOL_EXECUTOR with
- * prefetching.
+ * Base class that implements PlaybackSeekDataProvider using a small dedicated executor with
+ * prefetching. Both caches are bounded by the number of bytes of the bitmaps they hold. The
+ * prefetched bitmaps evicted before being shown are reused to decode new thumbnails; the ones
+ * given to the seek UI are not, as it may still display them.
  */
 public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProvider {
 
     static final String TAG = "SeekAsyncProvider";
 
+    static final int DEFAULT_CACHE_BYTES = 4 * 1024 * 1024;
+    static final int DEFAULT_PREFETCH_CACHE_BYTES = 6 * 1024 * 1024;
+    static final int DEFAULT_THUMB_WIDTH = 320;
+    static final int DEFAULT_THUMB_HEIGHT = 180;
+
+    private static final int LOADER_THREADS = 2;
+    private static final int LOADER_QUEUE_SIZE = 16;
+    static final int PREFETCH_WINDOW = 8;
+    static final int MAX_PREFETCH_STRIDE = 8;
+
+    // Thumbnails requested long ago are stale while scrubbing, so when the queue is full the
+    // oldest waiting load is cancelled to make room for the new one.
+    static final ThreadPoolExecutor LOADER_EXECUTOR = new ThreadPoolExecutor(
+            LOADER_THREADS, LOADER_THREADS, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(LOADER_QUEUE_SIZE),
+            new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                    if (executor.isShutdown()) {
+                        cancel(runnable);
+                        return;
+                    }
+                    cancel(executor.getQueue().poll());
+                    executor.execute(runnable);
+                }
+
+                private void cancel(Runnable runnable) {
+                    if (runnable instanceof Future) {
+                        ((Future) runnable).cancel(true);
+                    }
+                }
+            });
+
     long[] mSeekPositions;
     // mCache is for the bitmap requested by user
     final LruCache<Integer, Bitmap> mCache;
@@ -42,8 +83,15 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
     // estimation. We use a different LruCache so that items in mCache will not be evicted by
     // prefeteched items.
     final LruCache<Integer, Bitmap> mPrefetchCache;
+    final BitmapPool mBitmapPool;
     final SparseArray<LoadBitmapTask> mRequests = new SparseArray<>();
+    final SeekPrefetchScheduler mScheduler =
+            new SeekPrefetchScheduler(PREFETCH_WINDOW, MAX_PREFETCH_STRIDE);
     int mLastRequestedIndex = -1;
+    int mThumbWidth = DEFAULT_THUMB_WIDTH;
+    int mThumbHeight = DEFAULT_THUMB_HEIGHT;
+    // Size of the last loaded thumbnail, used to estimate how much an in flight prefetch will take.
+    int mLastBitmapBytes;
 
     protected boolean isCancelled(Object task) {
         return ((AsyncTask) task).isCancelled();
@@ -63,14 +111,25 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
 
         @Override
         protected Bitmap doInBackground(Object[] params) {
-            return PlaybackSeekAsyncDataProvider.this
+            long start = SystemClock.uptimeMillis();
+            Bitmap bitmap = PlaybackSeekAsyncDataProvider.this
                     .doInBackground(this, mIndex, mSeekPositions[mIndex]);
+            if (bitmap != null) {
+                mScheduler.onDecoded(SystemClock.uptimeMillis() - start);
+            }
+            return bitmap;
         }
 
         @Override
         protected void onPostExecute(Bitmap bitmap) {
-            mRequests.remove(mIndex);
+            if (mRequests.get(mIndex) == this) {
+                mRequests.remove(mIndex);
+            }
             Log.d(TAG, "thumb Loaded " + mIndex);
+            if (bitmap == null) {
+                return;
+            }
+            mLastBitmapBytes = bitmap.getAllocationByteCount();
             if (mResultCallback != null) {
                 mCache.put(mIndex, bitmap);
                 mResultCallback.onThumbnailLoaded(bitmap, mIndex);
@@ -79,15 +138,87 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
             }
         }
 
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (mRequests.get(mIndex) == this) {
+                mRequests.remove(mIndex);
+            }
+            mBitmapPool.put(bitmap);
+        }
+
     }
 
     public PlaybackSeekAsyncDataProvider() {
-        this(16, 24);
+        this(DEFAULT_CACHE_BYTES, DEFAULT_PREFETCH_CACHE_BYTES);
+    }
+
+    /**
+     * @param cacheBytes Maximum bytes of the bitmaps requested by the user.
+     * @param prefetchCacheBytes Maximum bytes of the prefetched bitmaps.
+     */
+    public PlaybackSeekAsyncDataProvider(int cacheBytes, int prefetchCacheBytes) {
+        mBitmapPool = new BitmapPool(prefetchCacheBytes / 2);
+        mCache = new ThumbnailCache(cacheBytes, false);
+        mPrefetchCache = new ThumbnailCache(prefetchCacheBytes, true);
+    }
+
+    /**
+     * Sets the size thumbnails are decoded to. Images are subsampled to the smallest size that is
+     * still at least as large as this.
+     */
+    public void setThumbnailSize(int width, int height) {
+        mThumbWidth = width;
+        mThumbHeight = height;
+    }
+
+    /**
+     * Decodes an image file, subsampled to the thumbnail size, into a pooled bitmap when possible.
+     * Can be called from {@link #doInBackground(Object, int, long)}.
+     */
+    protected Bitmap decodeThumbnail(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(
+                options.outWidth, options.outHeight, mThumbWidth, mThumbHeight);
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = mBitmapPool.get(
+                divideRoundingUp(options.outWidth, options.inSampleSize),
+                divideRoundingUp(options.outHeight, options.inSampleSize),
+                Bitmap.Config.ARGB_8888);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap could not be reused for this image.
+            mBitmapPool.put(options.inBitmap);
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * Returns the largest power of two sample size that keeps the image at least as large as the
+     * requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        if (reqWidth <= 0 || reqHeight <= 0) {
+            return inSampleSize;
+        }
+        while (width / (inSampleSize * 2) >= reqWidth
+                && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
     }
 
-    public PlaybackSeekAsyncDataProvider(int cacheSize, int prefetchCacheSize) {
-        mCache = new LruCache<Integer, Bitmap>(cacheSize);
-        mPrefetchCache = new LruCache<Integer, Bitmap>(prefetchCacheSize);
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
     }
 
     public void setSeekPositions(long[] positions) {
@@ -117,7 +248,7 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
                     // no normal task or prefetch for the position, create a new task
                     task = new LoadBitmapTask(index, callback);
                     mRequests.put(index, task);
-                    task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+                    task.executeOnExecutor(LOADER_EXECUTOR);
                 } else {
                     // update existing ResultCallback which might be normal task or prefetch
                     task.mResultCallback = callback;
@@ -125,33 +256,36 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
             }
         }
         if (mLastRequestedIndex != index) {
-            if (mLastRequestedIndex != -1) {
-                prefetch(mLastRequestedIndex, index > mLastRequestedIndex);
-            }
+            mScheduler.onRequest(index, SystemClock.uptimeMillis());
+            prefetch();
             mLastRequestedIndex = index;
         }
     }
 
-    protected void prefetch(int hintIndex, boolean forward) {
-        for (Iterator<Map.Entry<Integer, Bitmap>> it =
-                mPrefetchCache.snapshot().entrySet().iterator(); it.hasNext(); ) {
-            Map.Entry<Integer, Bitmap> entry = it.next();
-            if (forward ? entry.getKey() < hintIndex : entry.getKey() > hintIndex) {
-                mPrefetchCache.remove(entry.getKey());
+    /**
+     * Cancels prefetches the user is no longer heading to and starts loading the thumbnails
+     * predicted by the scheduler. Prefetched thumbnails left behind are not searched for; they are
+     * the least recently used ones and get evicted first.
+     */
+    protected void prefetch() {
+        for (int i = mRequests.size() - 1; i >= 0; i--) {
+            LoadBitmapTask task = mRequests.valueAt(i);
+            if (task.mResultCallback == null && !mScheduler.isInWindow(mRequests.keyAt(i))) {
+                task.cancel(true);
+                mRequests.removeAt(i);
             }
         }
-        int inc = forward ? 1 : -1;
-        for (int i = hintIndex; (mRequests.size() + mPrefetchCache.size()
-                < mPrefetchCache.maxSize()) && (inc > 0 ? i < mSeekPositions.length : i >= 0);
-                i += inc) {
-            Integer key = i;
-            if (mCache.get(key) == null && mPrefetchCache.get(key) == null) {
-                LoadBitmapTask task = mRequests.get(i);
-                if (task == null) {
-                    task = new LoadBitmapTask(key, null);
-                    mRequests.put(i, task);
-                    task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
-                }
+        int estimatedBytes = mLastBitmapBytes > 0
+                ? mLastBitmapBytes : mThumbWidth * mThumbHeight * 4;
+        int[] window = mScheduler.getWindow(mSeekPositions.length);
+        for (int i = 0; i < window.length && mRequests.size() * estimatedBytes
+                + mPrefetchCache.size() < mPrefetchCache.maxSize(); i++) {
+            Integer key = window[i];
+            if (mRequests.get(key) == null && mCache.get(key) == null
+                    && mPrefetchCache.get(key) == null) {
+                LoadBitmapTask task = new LoadBitmapTask(key, null);
+                mRequests.put(key, task);
+                task.executeOnExecutor(LOADER_EXECUTOR);
             }
         }
     }
@@ -165,9 +299,41 @@ public abstract class PlaybackSeekAsyncDataProvider extends PlaybackSeekDataProv
         mRequests.clear();
         mCache.evictAll();
         mPrefetchCache.evictAll();
+        mScheduler.reset();
         mLastRequestedIndex = -1;
     }
 
+    /**
+     * LruCache sized by the bytes of its bitmaps.
+     */
+    class ThumbnailCache extends LruCache<Integer, Bitmap> {
+        private final boolean mPoolEvicted;
+
+        /**
+         * @param poolEvicted Whether the evicted bitmaps go to the pool for reuse. Only for the
+         *                    bitmaps never given to the seek UI: the thumbs bar keeps showing a
+         *                    bitmap after it is evicted, and decoding into it would change it on
+         *                    screen.
+         */
+        ThumbnailCache(int maxBytes, boolean poolEvicted) {
+            super(maxBytes);
+            mPoolEvicted = poolEvicted;
+        }
+
+        @Override
+        protected int sizeOf(Integer key, Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+        }
+
+        @Override
+        protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue,
+                Bitmap newValue) {
+            if (evicted && mPoolEvicted) {
+                mBitmapPool.put(oldValue);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
@@ -17,7 +17,6 @@
 package androidx.leanback.leanbackshowcase.app.media;
 
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -51,17 +50,12 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
     }
 
     protected Bitmap doInBackground(Object task, int index, long position) {
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException ex) {
-            // Thread might be interrupted by cancel() call.
-        }
         if (isCancelled(task)) {
             return null;
         }
         String path = String.format(mPathPattern, (index + 1));
         if (new File(path).exists()) {
-            return BitmapFactory.decodeFile(path);
+            return decodeThumbnail(path);
         } else {
             Bitmap bmp = Bitmap.createBitmap(160, 160, Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bmp);
@@ -72,16 +66,27 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
         }
     }
 
+    /**
+     * Prefers the trick-play file at /sdcard/seek/trickplay.tply, see {@link TrickPlayGenerator},
+     * and falls back to one image file per seek position.
+     */
+    static PlaybackSeekAsyncDataProvider createDemoSeekProvider(long duration) {
+        PlaybackSeekAsyncDataProvider provider = PlaybackSeekTrickPlayDataProvider.open(
+                new File("/sdcard/seek/trickplay.tply"));
+        if (provider != null) {
+            return provider;
+        }
+        return new PlaybackSeekDiskDataProvider(duration, duration / 100,
+                "/sdcard/seek/frame_%04d.jpg");
+    }
+
     /**
      * Helper function to set a demo seek provider on PlaybackTransportControlGlue based on
      * duration.
      */
     public static void setDemoSeekProvider(final PlaybackTransportControlGlue glue) {
         if (glue.isPrepared()) {
-            glue.setSeekProvider(new PlaybackSeekDiskDataProvider(
-                    glue.getDuration(),
-                    glue.getDuration() / 100,
-                    "/sdcard/seek/frame_%04d.jpg"));
+            glue.setSeekProvider(createDemoSeekProvider(glue.getDuration()));
         } else {
             glue.addPlayerCallback(new PlaybackGlue.PlayerCallback() {
                 @Override
@@ -90,10 +95,8 @@ public class PlaybackSeekDiskDataProvider extends PlaybackSeekAsyncDataProvider
                         glue.removePlayerCallback(this);
                         PlaybackTransportControlGlue transportControlGlue =
                                 (PlaybackTransportControlGlue) glue;
-                        transportControlGlue.setSeekProvider(new PlaybackSeekDiskDataProvider(
-                                transportControlGlue.getDuration(),
-                                transportControlGlue.getDuration() / 100,
-                                "/sdcard/seek/frame_%04d.jpg"));
+                        transportControlGlue.setSeekProvider(
+                                createDemoSeekProvider(transportControlGlue.getDuration()));
                     }
                 }
             });
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * PlaybackSeekDataProvider that reads thumbnails from a {@link TrickPlayFile}. Each sprite sheet
+ * is decoded once and kept while its neighbours are being requested; thumbnails are cropped out
+ * of it into pooled bitmaps.
+ * e.g. PlaybackSeekTrickPlayDataProvider.open(new File("/sdcard/seek/trickplay.tply"))
+ */
+public class PlaybackSeekTrickPlayDataProvider extends PlaybackSeekAsyncDataProvider {
+
+    static final String TAG = "SeekTrickPlayProvider";
+
+    // Scrubbing moves through neighbouring sheets, so only the last few decoded ones are kept.
+    private static final int MAX_DECODED_SHEETS = 2;
+
+    final TrickPlayFile mTrickPlayFile;
+    private final SparseArray<Bitmap> mSheets = new SparseArray<>();
+    private final Rect mSource = new Rect();
+    private final Rect mDestination = new Rect();
+
+    PlaybackSeekTrickPlayDataProvider(TrickPlayFile trickPlayFile) {
+        mTrickPlayFile = trickPlayFile;
+        setSeekPositions(trickPlayFile.getPositions());
+        setThumbnailSize(trickPlayFile.getTileWidth(), trickPlayFile.getTileHeight());
+    }
+
+    /**
+     * Returns a provider for the given trick-play file, or null if it cannot be read.
+     */
+    public static PlaybackSeekTrickPlayDataProvider open(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new PlaybackSeekTrickPlayDataProvider(new TrickPlayFile(file));
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot open trick-play file " + file, e);
+            return null;
+        }
+    }
+
+    @Override
+    protected Bitmap doInBackground(Object task, int index, long position) {
+        if (isCancelled(task)) {
+            return null;
+        }
+        int tileWidth = mTrickPlayFile.getTileWidth();
+        int tileHeight = mTrickPlayFile.getTileHeight();
+        Bitmap thumbnail = mBitmapPool.get(tileWidth, tileHeight, Bitmap.Config.ARGB_8888);
+        if (thumbnail == null) {
+            thumbnail = Bitmap.createBitmap(tileWidth, tileHeight, Bitmap.Config.ARGB_8888);
+        } else {
+            thumbnail.reconfigure(tileWidth, tileHeight, Bitmap.Config.ARGB_8888);
+        }
+        synchronized (mSheets) {
+            Bitmap sheet = getSheet(mTrickPlayFile.getSheetIndex(index));
+            if (sheet == null) {
+                mBitmapPool.put(thumbnail);
+                return null;
+            }
+            int left = mTrickPlayFile.getTileLeft(index);
+            int top = mTrickPlayFile.getTileTop(index);
+            mSource.set(left, top, left + tileWidth, top + tileHeight);
+            mDestination.set(0, 0, tileWidth, tileHeight);
+            new Canvas(thumbnail).drawBitmap(sheet, mSource, mDestination, null);
+        }
+        return thumbnail;
+    }
+
+    // Must hold mSheets.
+    private Bitmap getSheet(int sheetIndex) {
+        Bitmap sheet = mSheets.get(sheetIndex);
+        if (sheet != null) {
+            return sheet;
+        }
+        byte[] data = mTrickPlayFile.readSheet(sheetIndex);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        if (mSheets.size() >= MAX_DECODED_SHEETS) {
+            // Decode into the sheet furthest away from the requested one.
+            int furthest = 0;
+            for (int i = 1; i < mSheets.size(); i++) {
+                if (Math.abs(mSheets.keyAt(i) - sheetIndex)
+                        > Math.abs(mSheets.keyAt(furthest) - sheetIndex)) {
+                    furthest = i;
+                }
+            }
+            options.inBitmap = mSheets.valueAt(furthest);
+            mSheets.removeAt(furthest);
+        }
+        try {
+            sheet = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            options.inBitmap = null;
+            sheet = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (sheet != null) {
+            mSheets.put(sheetIndex, sheet);
+        }
+        return sheet;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        synchronized (mSheets) {
+            mSheets.clear();
+        }
+    }
+}
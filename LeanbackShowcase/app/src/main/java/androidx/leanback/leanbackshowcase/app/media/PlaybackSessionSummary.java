@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package androidx.leanback.leanbackshowcase.app.media;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Quality of experience summary of a single playback session. Times are in milliseconds and
+ * bitrates in bits per second; -1 means the value is unknown.
+ */
+public final class PlaybackSessionSummary {
+
+    public final String mediaId;
+    public final long sessionDurationMs;
+    public final long timeToFirstFrameMs;
+    public final long playingTimeMs;
+    public final int rebufferCount;
+    public final long rebufferTimeMs;
+    public final long averageBitrate;
+    public final int bitrateSwitches;
+    public final int droppedFrames;
+    public final long[] seekLatenciesMs;
+
+    public PlaybackSessionSummary(
+            String mediaId,
+            long sessionDurationMs,
+            long timeToFirstFrameMs,
+            long playingTimeMs,
+            int rebufferCount,
+            long rebufferTimeMs,
+            long averageBitrate,
+            int bitrateSwitches,
+            int droppedFrames,
+            long[] seekLatenciesMs) {
+        this.mediaId = mediaId;
+        this.sessionDurationMs = sessionDurationMs;
+        this.timeToFirstFrameMs = timeToFirstFrameMs;
+        this.playingTimeMs = playingTimeMs;
+        this.rebufferCount = rebufferCount;
+        this.rebufferTimeMs = rebufferTimeMs;
+        this.averageBitrate = averageBitrate;
+        this.bitrateSwitches = bitrateSwitches;
+        this.droppedFrames = droppedFrames;
+        this.seekLatenciesMs = seekLatenciesMs;
+    }
+
+    /** Returns the share of watch time spent rebuffering, between 0 and 1. */
+    public float getRebufferRatio() {
+        long total = playingTimeMs + rebufferTimeMs;
+        return total == 0 ? 0f : (float) rebufferTimeMs / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                Locale.US,
+                "PlaybackSessionSummary{media=%s, duration=%dms, ttff=%dms, playing=%dms,"
+                        + " rebuffers=%d (%dms, ratio=%.4f), avgBitrate=%d, bitrateSwitches=%d,"
+                        + " droppedFrames=%d, seekLatencies=%s}",
+                mediaId,
+                sessionDurationMs,
+                timeToFirstFrameMs,
+                playingTimeMs,
+                rebufferCount,
+                rebufferTimeMs,
+                getRebufferRatio(),
+                averageBitrate,
+                bitrateSwitches,
+                droppedFrames,
+                Arrays.toString(seekLatenciesMs));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+/**
+ * Predicts which seek thumbnails are worth prefetching from the velocity and direction of
+ * scrubbing.
+ *
+ * <p>While the user scrubs slowly every upcoming thumbnail is prefetched. While the user scrubs
+ * fast, the thumbnails the user would fly past before a decode finishes are skipped: the window
+ * starts one stride ahead of the current index and advances by the number of thumbnails passed
+ * during one decode.
+ */
+public class SeekPrefetchScheduler {
+
+    // Requests further apart than this start a new scrub gesture.
+    static final long GESTURE_TIMEOUT_MS = 1000;
+    static final long DEFAULT_DECODE_TIME_MS = 50;
+    private static final float SMOOTHING = 0.5f;
+
+    private final int mWindowSize;
+    private final int mMaxStride;
+
+    private int mLastIndex = -1;
+    private long mLastRequestTimeMs;
+    // Thumbnails per millisecond, negative when scrubbing backwards.
+    private float mVelocity;
+    private volatile float mDecodeTimeMs = DEFAULT_DECODE_TIME_MS;
+
+    /**
+     * @param windowSize Number of thumbnails to prefetch ahead of the user.
+     * @param maxStride Largest number of thumbnails to skip between two prefetches.
+     */
+    public SeekPrefetchScheduler(int windowSize, int maxStride) {
+        mWindowSize = windowSize;
+        mMaxStride = maxStride;
+    }
+
+    /**
+     * Records a thumbnail request by the user.
+     */
+    public void onRequest(int index, long nowMs) {
+        if (mLastIndex < 0 || nowMs - mLastRequestTimeMs > GESTURE_TIMEOUT_MS) {
+            mVelocity = mLastIndex < 0 || index == mLastIndex
+                    ? 0 : Math.signum(index - mLastIndex) / GESTURE_TIMEOUT_MS;
+        } else if (index != mLastIndex) {
+            float instant = (float) (index - mLastIndex) / Math.max(1, nowMs - mLastRequestTimeMs);
+            if (Math.signum(instant) != Math.signum(mVelocity)) {
+                // Reversing direction, forget the old speed.
+                mVelocity = instant;
+            } else {
+                mVelocity = SMOOTHING * instant + (1 - SMOOTHING) * mVelocity;
+            }
+        }
+        mLastIndex = index;
+        mLastRequestTimeMs = nowMs;
+    }
+
+    /**
+     * Records how long decoding a thumbnail took. May be called from any thread.
+     */
+    public void onDecoded(long decodeTimeMs) {
+        mDecodeTimeMs = SMOOTHING * decodeTimeMs + (1 - SMOOTHING) * mDecodeTimeMs;
+    }
+
+    /**
+     * Returns 1 when scrubbing forwards, -1 backwards and 0 before the direction is known.
+     */
+    public int getDirection() {
+        return (int) Math.signum(mVelocity);
+    }
+
+    /**
+     * Returns the distance between two prefetched thumbnails.
+     */
+    public int getStride() {
+        int stride = Math.round(Math.abs(mVelocity) * mDecodeTimeMs);
+        return Math.max(1, Math.min(mMaxStride, stride));
+    }
+
+    /**
+     * Returns the indices to prefetch, nearest first, given the number of seek positions.
+     */
+    public int[] getWindow(int positionCount) {
+        if (mLastIndex < 0) {
+            return new int[0];
+        }
+        int direction = getDirection() == 0 ? 1 : getDirection();
+        int stride = getStride();
+        int count = 0;
+        int[] window = new int[mWindowSize];
+        for (int i = 1; i <= mWindowSize; i++) {
+            int index = mLastIndex + direction * stride * i;
+            if (index < 0 || index >= positionCount) {
+                break;
+            }
+            window[count++] = index;
+        }
+        if (count == window.length) {
+            return window;
+        }
+        int[] clipped = new int[count];
+        System.arraycopy(window, 0, clipped, 0, count);
+        return clipped;
+    }
+
+    /**
+     * Returns whether a prefetch of the given index is still useful.
+     */
+    public boolean isInWindow(int index) {
+        if (mLastIndex < 0) {
+            return false;
+        }
+        int direction = getDirection() == 0 ? 1 : getDirection();
+        int distance = (index - mLastIndex) * direction;
+        return distance > 0 && distance <= getStride() * mWindowSize;
+    }
+
+    public void reset() {
+        mLastIndex = -1;
+        mVelocity = 0;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * Trick-play container holding all seek thumbnails of a video in one file. Thumbnails are tiles
+ * of a few encoded sprite sheets, laid out row by row; thumbnail {@code i} is tile
+ * {@code i % tilesPerSheet} of sheet {@code i / tilesPerSheet}.
+ *
+ * <pre>
+ * header:      int magic, int version, int tileWidth, int tileHeight, int columns, int rows,
+ *              int positionCount, int sheetCount
+ * positions:   positionCount x long positionMs
+ * sheet table: sheetCount x (long offset, int length)
+ * sheets:      encoded images (e.g. JPEG)
+ * </pre>
+ *
+ * The file is read through a memory mapped buffer so the index costs no reads or allocations.
+ */
+public class TrickPlayFile {
+
+    static final int MAGIC = 0x54504C59; // "TPLY"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8 * 4;
+    static final int SHEET_ENTRY_BYTES = 8 + 4;
+
+    private final MappedByteBuffer mBuffer;
+    private final int mTileWidth;
+    private final int mTileHeight;
+    private final int mColumns;
+    private final int mRows;
+    private final int mPositionCount;
+    private final int mSheetCount;
+
+    /**
+     * Opens and maps a trick-play file.
+     *
+     * @throws IOException if the file cannot be read or is not a trick-play file.
+     */
+    public TrickPlayFile(File file) throws IOException {
+        // The mapping stays valid after the file is closed.
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            mBuffer = randomAccessFile.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            if (mBuffer.capacity() < HEADER_BYTES || mBuffer.getInt(0) != MAGIC
+                    || mBuffer.getInt(4) != VERSION) {
+                throw new IOException("Not a trick-play file: " + file);
+            }
+            mTileWidth = mBuffer.getInt(8);
+            mTileHeight = mBuffer.getInt(12);
+            mColumns = mBuffer.getInt(16);
+            mRows = mBuffer.getInt(20);
+            mPositionCount = mBuffer.getInt(24);
+            mSheetCount = mBuffer.getInt(28);
+            if (!isValidGeometry(mTileWidth, mTileHeight, mColumns, mRows, mPositionCount,
+                    mSheetCount)) {
+                throw new IOException("Invalid trick-play geometry: " + file);
+            }
+            long sheetTableOffset = HEADER_BYTES + (long) mPositionCount * 8;
+            if (sheetTableOffset + (long) mSheetCount * SHEET_ENTRY_BYTES > mBuffer.capacity()) {
+                throw new IOException("Truncated trick-play file: " + file);
+            }
+            for (int i = 0; i < mSheetCount; i++) {
+                int entry = (int) sheetTableOffset + i * SHEET_ENTRY_BYTES;
+                long offset = mBuffer.getLong(entry);
+                int length = mBuffer.getInt(entry + 8);
+                if (offset < 0 || length < 0 || offset + length > mBuffer.capacity()) {
+                    throw new IOException("Truncated trick-play file: " + file);
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public int getTileWidth() {
+        return mTileWidth;
+    }
+
+    public int getTileHeight() {
+        return mTileHeight;
+    }
+
+    public int getTilesPerSheet() {
+        return mColumns * mRows;
+    }
+
+    public int getPositionCount() {
+        return mPositionCount;
+    }
+
+    public int getSheetCount() {
+        return mSheetCount;
+    }
+
+    /**
+     * Returns the position, in milliseconds, of thumbnail {@code index}.
+     */
+    public long getPosition(int index) {
+        return mBuffer.getLong(HEADER_BYTES + index * 8);
+    }
+
+    /**
+     * Returns all thumbnail positions in milliseconds.
+     */
+    public long[] getPositions() {
+        long[] positions = new long[mPositionCount];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = getPosition(i);
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the index of the sheet holding thumbnail {@code index}.
+     */
+    public int getSheetIndex(int index) {
+        return index / getTilesPerSheet();
+    }
+
+    /**
+     * Returns the left pixel of thumbnail {@code index} within its sheet.
+     */
+    public int getTileLeft(int index) {
+        return (index % getTilesPerSheet()) % mColumns * mTileWidth;
+    }
+
+    /**
+     * Returns the top pixel of thumbnail {@code index} within its sheet.
+     */
+    public int getTileTop(int index) {
+        return (index % getTilesPerSheet()) / mColumns * mTileHeight;
+    }
+
+    /**
+     * Copies the encoded bytes of a sheet out of the mapped file.
+     */
+    public byte[] readSheet(int sheetIndex) {
+        int entry = getSheetTableOffset() + sheetIndex * SHEET_ENTRY_BYTES;
+        long offset = mBuffer.getLong(entry);
+        int length = mBuffer.getInt(entry + 8);
+        byte[] data = new byte[length];
+        ByteBuffer sheet = mBuffer.duplicate();
+        sheet.position((int) offset);
+        sheet.get(data);
+        return data;
+    }
+
+    private int getSheetTableOffset() {
+        return HEADER_BYTES + mPositionCount * 8;
+    }
+
+    /**
+     * Returns true if the tiles have a size, the sheets hold at least one tile, and there are
+     * enough sheets for all the thumbnails.
+     */
+    private static boolean isValidGeometry(int tileWidth, int tileHeight, int columns, int rows,
+            int positionCount, int sheetCount) {
+        if (tileWidth <= 0 || tileHeight <= 0 || columns <= 0 || rows <= 0
+                || positionCount < 0 || sheetCount < 0) {
+            return false;
+        }
+        long tilesPerSheet = (long) columns * rows;
+        return tilesPerSheet <= Integer.MAX_VALUE
+                && (long) sheetCount * tilesPerSheet >= positionCount;
+    }
+
+    /**
+     * Writes a trick-play file.
+     *
+     * @param file Destination file.
+     * @param positions Position, in milliseconds, of each thumbnail.
+     * @param sheets Encoded sprite sheets, each holding {@code columns * rows} tiles.
+     */
+    public static void write(File file, long[] positions, int tileWidth, int tileHeight,
+            int columns, int rows, List<byte[]> sheets) throws IOException {
+        if (!isValidGeometry(tileWidth, tileHeight, columns, rows, positions.length,
+                sheets.size())) {
+            throw new IllegalArgumentException("Invalid trick-play geometry");
+        }
+        int sheetTableOffset = HEADER_BYTES + positions.length * 8;
+        int dataOffset = sheetTableOffset + sheets.size() * SHEET_ENTRY_BYTES;
+        ByteBuffer index = ByteBuffer.allocate(dataOffset);
+        index.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(tileWidth)
+                .putInt(tileHeight)
+                .putInt(columns)
+                .putInt(rows)
+                .putInt(positions.length)
+                .putInt(sheets.size());
+        for (long position : positions) {
+            index.putLong(position);
+        }
+        long offset = dataOffset;
+        for (byte[] sheet : sheets) {
+            index.putLong(offset).putInt(sheet.length);
+            offset += sheet.length;
+        }
+
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(index.array());
+            for (byte[] sheet : sheets) {
+                out.write(sheet);
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link TrickPlayFile} from a local video by grabbing a frame every interval, scaling
+ * it to the tile size and packing the tiles into JPEG sprite sheets. Slow; run it off the main
+ * thread, e.g. when a video has been downloaded.
+ */
+public class TrickPlayGenerator {
+
+    private static final int JPEG_QUALITY = 80;
+
+    private final int mTileWidth;
+    private final int mTileHeight;
+    private final int mColumns;
+    private final int mRows;
+
+    public TrickPlayGenerator(int tileWidth, int tileHeight, int columns, int rows) {
+        mTileWidth = tileWidth;
+        mTileHeight = tileHeight;
+        mColumns = columns;
+        mRows = rows;
+    }
+
+    /**
+     * Generates the trick-play file of a video.
+     *
+     * @param videoPath Path of the local video.
+     * @param output Trick-play file to write.
+     * @param intervalMs Distance between two thumbnails.
+     */
+    public void generate(String videoPath, File output, long intervalMs) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(videoPath);
+            String durationString = retriever.extractMetadata(
+                    MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (durationString == null) {
+                throw new IOException("Unknown duration: " + videoPath);
+            }
+            long duration = Long.parseLong(durationString);
+            int count = (int) (duration / intervalMs) + 1;
+            long[] positions = new long[count];
+            for (int i = 0; i < count; i++) {
+                positions[i] = i * intervalMs;
+            }
+
+            int tilesPerSheet = mColumns * mRows;
+            Bitmap sheet = Bitmap.createBitmap(
+                    mTileWidth * mColumns, mTileHeight * mRows, Bitmap.Config.RGB_565);
+            Canvas canvas = new Canvas(sheet);
+            Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            Rect destination = new Rect();
+            List<byte[]> sheets = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int tile = i % tilesPerSheet;
+                if (tile == 0) {
+                    canvas.drawColor(Color.BLACK);
+                }
+                Bitmap frame = retriever.getFrameAtTime(
+                        positions[i] * 1000, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+                if (frame != null) {
+                    int left = tile % mColumns * mTileWidth;
+                    int top = tile / mColumns * mTileHeight;
+                    destination.set(left, top, left + mTileWidth, top + mTileHeight);
+                    canvas.drawBitmap(frame, null, destination, paint);
+                    frame.recycle();
+                }
+                if (tile == tilesPerSheet - 1 || i == count - 1) {
+                    sheets.add(compress(sheet));
+                }
+            }
+            sheet.recycle();
+            TrickPlayFile.write(output, positions, mTileWidth, mTileHeight, mColumns, mRows,
+                    sheets);
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read frames of " + videoPath, e);
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private static byte[] compress(Bitmap sheet) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sheet.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        return out.toByteArray();
+    }
+}
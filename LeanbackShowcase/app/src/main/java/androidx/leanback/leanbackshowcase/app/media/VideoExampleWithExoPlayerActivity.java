@@ -23,6 +23,9 @@ import android.os.Bundle;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.core.os.BuildCompat;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 /**
  * Activity that hosts VideoConsumptionExampleWithExoPlayerFragment.
  */
@@ -52,6 +55,15 @@ public class VideoExampleWithExoPlayerActivity extends Activity {
         setIntent(intent);
     }
 
+    /**
+     * Prints the playback QoE histograms, see {@code adb shell dumpsys activity}.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        PlaybackMetrics.getInstance().dump(prefix, writer);
+    }
+
     public static boolean supportsPictureInPicture(Context context) {
         return BuildCompat.isAtLeastN() &&
                 context.getPackageManager().hasSystemFeature(
@@ -16,6 +16,8 @@
 
 package androidx.leanback.leanbackshowcase.app.room.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
 import androidx.leanback.widget.ObjectAdapter;
 import androidx.leanback.widget.Presenter;
 import androidx.leanback.widget.PresenterSelector;
@@ -24,10 +26,13 @@ import androidx.recyclerview.widget.ListUpdateCallback;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class ListAdapter<T> extends ObjectAdapter {
 
@@ -35,11 +40,42 @@ public class ListAdapter<T> extends ObjectAdapter {
     private final static String TAG =  "ListAdapter";
     private final static Boolean DEBUG = false;
 
+    // Shared by all adapters, diffs are computed one at a time off the main thread.
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
     private List<T> mItems = new ArrayList<>();
 
     // Un modifiable version of mItems
     private List<T> mUnmodifiableItems;
 
+    private ItemCallback<T> mItemCallback;
+    private Handler mMainHandler;
+    // Incremented for each new list; a background diff is dropped if it is no longer the latest.
+    private volatile int mGeneration;
+    // List whose diff is being computed in the background.
+    private List<T> mPendingItems;
+    // Incremented by every change of the items, to detect batches started before another change.
+    private int mModCount;
+
+    /**
+     * Identity and content of the items, used to diff a new list against the current one off the
+     * main thread.
+     */
+    public abstract static class ItemCallback<T> {
+
+        /**
+         * Returns the stable id of an item. Items with the same id are the same item, possibly
+         * with different content. Also used as the adapter's stable id.
+         */
+        public abstract long getId(T item);
+
+        /**
+         * Returns whether two items with the same id have the same content. Called on a
+         * background thread.
+         */
+        public abstract boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
     /**
      * Constructs an adapter with the given {@link PresenterSelector}.
      */
@@ -62,6 +98,20 @@ public class ListAdapter<T> extends ObjectAdapter {
     }
 
 
+    /**
+     * Sets the identity and content comparison used by {@link #setItems(List)}, and makes the
+     * adapter report stable ids. Must be called before the adapter is attached to a view.
+     */
+    public void setItemCallback(ItemCallback<T> itemCallback) {
+        mItemCallback = itemCallback;
+        setHasStableIds(itemCallback != null);
+    }
+
+    @Override
+    public long getId(int position) {
+        return mItemCallback != null ? mItemCallback.getId(mItems.get(position)) : NO_ID;
+    }
+
     public int size() {
         return mItems.size();
     }
@@ -102,6 +152,7 @@ public class ListAdapter<T> extends ObjectAdapter {
     public void add(int index, T item) {
         mItems.add(index, item);
         notifyItemRangeInserted(index, 1);
+        onItemsMutated();
     }
 
     /**
@@ -118,6 +169,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         }
         mItems.addAll(index, items);
         notifyItemRangeInserted(index, itemsCount);
+        onItemsMutated();
     }
 
     /**
@@ -131,6 +183,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         if (index >= 0) {
             mItems.remove(index);
             notifyItemRangeRemoved(index, 1);
+            onItemsMutated();
         }
         return index >= 0;
     }
@@ -147,6 +200,7 @@ public class ListAdapter<T> extends ObjectAdapter {
     public void replace(int position, T item) {
         mItems.set(position, item);
         notifyItemRangeChanged(position, 1);
+        onItemsMutated();
     }
 
     /**
@@ -163,13 +217,27 @@ public class ListAdapter<T> extends ObjectAdapter {
             return 0;
         }
 
-        for (int i = 0; i < itemsToRemove; i++) {
-            mItems.remove(position);
-        }
+        mItems.subList(position, position + itemsToRemove).clear();
         notifyItemRangeRemoved(position, itemsToRemove);
+        onItemsMutated();
         return itemsToRemove;
     }
 
+    /**
+     * Moves an item from one position to another.
+     *
+     * @param fromPosition The position of the item to move.
+     * @param toPosition   The position of the item once moved.
+     */
+    public void move(int fromPosition, int toPosition) {
+        if (fromPosition == toPosition) {
+            return;
+        }
+        mItems.add(toPosition, mItems.remove(fromPosition));
+        notifyItemMoved(fromPosition, toPosition);
+        onItemsMutated();
+    }
+
     /**
      * Removes all items from this adapter, leaving it empty.
      */
@@ -180,6 +248,7 @@ public class ListAdapter<T> extends ObjectAdapter {
         }
         mItems.clear();
         notifyItemRangeRemoved(0, itemCount);
+        onItemsMutated();
     }
 
     /**
@@ -211,6 +280,9 @@ public class ListAdapter<T> extends ObjectAdapter {
             Log.e(TAG, "new items: " + itemList);
             Log.e(TAG, "old items: " + mItems);
         }
+        // Supersedes any diff computed in the background.
+        mGeneration++;
+        mPendingItems = null;
 
         DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
             @Override
@@ -238,52 +310,349 @@ public class ListAdapter<T> extends ObjectAdapter {
 
         mItems.clear();
         mItems.addAll(itemList);
+        mModCount++;
 
-        result.dispatchUpdatesTo(new ListUpdateCallback() {
+        result.dispatchUpdatesTo(mUpdateCallback);
+    }
 
+    /**
+     * Sets a new item list. The difference with the current list is computed on a background
+     * thread using the {@link ItemCallback}, then dispatched on the main thread. If another list
+     * is set before the diff completes, the diff is dropped and only the latest list is applied.
+     *
+     * @param itemList List of new Items. The adapter keeps its own copy.
+     */
+    public void setItems(List<T> itemList) {
+        if (mItemCallback == null) {
+            throw new IllegalStateException("setItemCallback() must be called first");
+        }
+        final int generation = ++mGeneration;
+        final List<T> newItems = new ArrayList<>(itemList);
+        if (mItems.isEmpty() || newItems.isEmpty()) {
+            // Nothing to diff.
+            mPendingItems = null;
+            applyItems(newItems, null);
+            return;
+        }
+        mPendingItems = newItems;
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        final List<T> oldItems = new ArrayList<>(mItems);
+        final ItemCallback<T> itemCallback = mItemCallback;
+        DIFF_EXECUTOR.execute(new Runnable() {
             @Override
-            public void onInserted(int position, int count) {
-                if (DEBUG) {
-                    Log.e(TAG, "onInserted: ");
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
                 }
-                notifyItemRangeInserted(position, count);
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                        new IdDiffCallback<>(oldItems, newItems, itemCallback), true);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mPendingItems = null;
+                            applyItems(newItems, result);
+                        }
+                    }
+                });
             }
+        });
+    }
 
-            @Override
-            public void onRemoved(int position, int count) {
-                if (DEBUG) {
-                    Log.e(TAG, "onRemoed: ");
-                }
-                notifyItemRangeRemoved(position, count);
+    /**
+     * Replaces the items and dispatches the diff, or a full removal or insertion if there is none.
+     */
+    private void applyItems(List<T> newItems, DiffUtil.DiffResult result) {
+        mModCount++;
+        int oldSize = mItems.size();
+        mItems.clear();
+        mItems.addAll(newItems);
+        if (result != null) {
+            result.dispatchUpdatesTo(mUpdateCallback);
+        } else if (oldSize > 0) {
+            notifyItemRangeRemoved(0, oldSize);
+        } else if (!newItems.isEmpty()) {
+            notifyItemRangeInserted(0, newItems.size());
+        }
+    }
+
+    /**
+     * Called after the items are edited directly. A diff computed in the background against the
+     * previous items no longer applies, so it is computed again.
+     */
+    private void onItemsMutated() {
+        mModCount++;
+        if (mPendingItems != null) {
+            setItems(mPendingItems);
+        }
+    }
+
+    /**
+     * Starts a batch of edits. The edits are applied to a copy of the items and only become
+     * visible, with merged notifications, when the batch is committed.
+     */
+    public Batch beginBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Batch of inserts, removes, moves and replaces applied with range operations. Consecutive
+     * edits of adjacent ranges are merged, so e.g. removing items one by one from the same
+     * position notifies a single range removal. Positions given to each edit are relative to the
+     * items after the previous edits of the batch.
+     */
+    public class Batch {
+
+        private static final int INSERT = 0;
+        private static final int REMOVE = 1;
+        private static final int CHANGE = 2;
+        private static final int MOVE = 3;
+
+        private final ArrayList<T> mWorkingItems = new ArrayList<>(mItems);
+        private final int mExpectedModCount = mModCount;
+        // Pending notifications as (type, start, count or target position) triples.
+        private int[] mOps = new int[3 * 8];
+        private int mOpCount;
+        private boolean mCommitted;
+
+        Batch() {
+        }
+
+        public int size() {
+            return mWorkingItems.size();
+        }
+
+        public T get(int position) {
+            return mWorkingItems.get(position);
+        }
+
+        public Batch add(T item) {
+            return add(mWorkingItems.size(), item);
+        }
+
+        public Batch add(int position, T item) {
+            mWorkingItems.add(position, item);
+            addOp(INSERT, position, 1);
+            return this;
+        }
+
+        public Batch addAll(int position, Collection<? extends T> items) {
+            if (!items.isEmpty()) {
+                mWorkingItems.addAll(position, items);
+                addOp(INSERT, position, items.size());
             }
+            return this;
+        }
 
-            /**
-             * Currently Leanback support library doesn't support move operation, use item range
-             * changed method to replace it as a temporal solution.
-             * @param fromPosition from position.
-             * @param toPosition to position.
-             */
-            @Override
-            public void onMoved(int fromPosition, int toPosition) {
-                if (DEBUG){
-                    Log.e(TAG, "onMoved: ");
-                }
-                notifyItemRangeChanged(fromPosition, toPosition - fromPosition + 1);
+        public Batch remove(int position, int count) {
+            count = Math.min(count, mWorkingItems.size() - position);
+            if (count > 0) {
+                mWorkingItems.subList(position, position + count).clear();
+                addOp(REMOVE, position, count);
             }
+            return this;
+        }
 
-            @Override
-            public void onChanged(int position, int count, Object payload) {
-                if (DEBUG) {
-                    Log.e(TAG, "onChanged: ");
+        public Batch replace(int position, T item) {
+            mWorkingItems.set(position, item);
+            addOp(CHANGE, position, 1);
+            return this;
+        }
+
+        public Batch move(int fromPosition, int toPosition) {
+            if (fromPosition != toPosition) {
+                mWorkingItems.add(toPosition, mWorkingItems.remove(fromPosition));
+                addOp(MOVE, fromPosition, toPosition);
+            }
+            return this;
+        }
+
+        /**
+         * Makes the edits visible and notifies them.
+         *
+         * @throws IllegalStateException if the adapter changed since the batch began or the
+         * batch was already committed.
+         */
+        public void commit() {
+            if (mCommitted) {
+                throw new IllegalStateException("Batch already committed");
+            }
+            if (mModCount != mExpectedModCount) {
+                throw new IllegalStateException("Adapter changed since the batch began");
+            }
+            mCommitted = true;
+            if (mOpCount == 0) {
+                return;
+            }
+            mItems.clear();
+            mItems.addAll(mWorkingItems);
+            for (int i = 0; i < mOpCount; i += 3) {
+                int start = mOps[i + 1];
+                int countOrTarget = mOps[i + 2];
+                switch (mOps[i]) {
+                    case INSERT:
+                        notifyItemRangeInserted(start, countOrTarget);
+                        break;
+                    case REMOVE:
+                        notifyItemRangeRemoved(start, countOrTarget);
+                        break;
+                    case CHANGE:
+                        notifyItemRangeChanged(start, countOrTarget);
+                        break;
+                    default:
+                        notifyItemMoved(start, countOrTarget);
+                        break;
                 }
+            }
+            onItemsMutated();
+        }
+
+        /**
+         * @return The number of notifications the batch dispatches when committed.
+         */
+        public int getNotificationCount() {
+            return mOpCount / 3;
+        }
 
-                // the support for payload has not been added to leanback support library, just
-                // ignore it currently.
-                notifyItemRangeChanged(position, count);
+        private void addOp(int type, int start, int count) {
+            if (mOpCount > 0 && type != MOVE && mOps[mOpCount - 3] == type
+                    && merge(type, start, count)) {
+                return;
             }
-        });
+            if (mOpCount == mOps.length) {
+                mOps = Arrays.copyOf(mOps, mOps.length * 2);
+            }
+            mOps[mOpCount++] = type;
+            mOps[mOpCount++] = start;
+            mOps[mOpCount++] = count;
+        }
+
+        // Tries to extend the last op of the same type by the new range.
+        private boolean merge(int type, int start, int count) {
+            int lastStart = mOps[mOpCount - 2];
+            int lastCount = mOps[mOpCount - 1];
+            switch (type) {
+                case INSERT:
+                    // Inserted inside or right after the last inserted range.
+                    if (start >= lastStart && start <= lastStart + lastCount) {
+                        mOps[mOpCount - 1] = lastCount + count;
+                        return true;
+                    }
+                    return false;
+                case REMOVE:
+                    if (start == lastStart) {
+                        // Removed the items that followed the last removed range.
+                        mOps[mOpCount - 1] = lastCount + count;
+                        return true;
+                    } else if (start + count == lastStart) {
+                        // Removed the items preceding the last removed range.
+                        mOps[mOpCount - 2] = start;
+                        mOps[mOpCount - 1] = lastCount + count;
+                        return true;
+                    }
+                    return false;
+                default:
+                    // Changed range overlapping or adjacent to the last changed range.
+                    if (start <= lastStart + lastCount && start + count >= lastStart) {
+                        int end = Math.max(lastStart + lastCount, start + count);
+                        mOps[mOpCount - 2] = Math.min(lastStart, start);
+                        mOps[mOpCount - 1] = end - mOps[mOpCount - 2];
+                        return true;
+                    }
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Compares items by id, reading every id once.
+     */
+    private static class IdDiffCallback<T> extends DiffUtil.Callback {
+
+        private final List<T> mOldItems;
+        private final List<T> mNewItems;
+        private final ItemCallback<T> mItemCallback;
+        private final long[] mOldIds;
+        private final long[] mNewIds;
+
+        IdDiffCallback(List<T> oldItems, List<T> newItems, ItemCallback<T> itemCallback) {
+            mOldItems = oldItems;
+            mNewItems = newItems;
+            mItemCallback = itemCallback;
+            mOldIds = getIds(oldItems, itemCallback);
+            mNewIds = getIds(newItems, itemCallback);
+        }
+
+        private static <T> long[] getIds(List<T> items, ItemCallback<T> itemCallback) {
+            long[] ids = new long[items.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = itemCallback.getId(items.get(i));
+            }
+            return ids;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldIds.length;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewIds.length;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldIds[oldItemPosition] == mNewIds[newItemPosition];
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mItemCallback.areContentsTheSame(mOldItems.get(oldItemPosition),
+                    mNewItems.get(newItemPosition));
+        }
     }
 
+    private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+
+        @Override
+        public void onInserted(int position, int count) {
+            if (DEBUG) {
+                Log.e(TAG, "onInserted: ");
+            }
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if (DEBUG) {
+                Log.e(TAG, "onRemoed: ");
+            }
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            if (DEBUG) {
+                Log.e(TAG, "onMoved: ");
+            }
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            if (DEBUG) {
+                Log.e(TAG, "onChanged: ");
+            }
+
+            // the support for payload has not been added to leanback support library, just
+            // ignore it currently.
+            notifyItemRangeChanged(position, count);
+        }
+    };
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
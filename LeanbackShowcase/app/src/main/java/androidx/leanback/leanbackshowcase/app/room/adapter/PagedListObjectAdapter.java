@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.adapter;
+
+import androidx.annotation.Nullable;
+import androidx.leanback.widget.ObjectAdapter;
+import androidx.leanback.widget.Presenter;
+import androidx.paging.AsyncPagedListDiffer;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+/**
+ * Object adapter presenting a {@link PagedList}.
+ *
+ * <p>Only the pages around the items being bound are loaded: {@link #get(int)} tells the paged
+ * list which position is accessed, and the grid binds the cards around the focused one. Items of
+ * pages not loaded yet are null placeholders, so the presenter has to bind null items.
+ *
+ * <p>A new paged list, e.g. after the database is updated, is diffed against the loaded pages of
+ * the current one off the main thread, and only the items which changed are notified.
+ */
+public class PagedListObjectAdapter<T> extends ObjectAdapter {
+
+    private final AsyncPagedListDiffer<T> mDiffer;
+
+    private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position, count);
+        }
+    };
+
+    public PagedListObjectAdapter(Presenter presenter, DiffUtil.ItemCallback<T> itemCallback) {
+        super(presenter);
+        mDiffer = new AsyncPagedListDiffer<>(mUpdateCallback,
+                new AsyncDifferConfig.Builder<>(itemCallback).build());
+    }
+
+    /**
+     * Sets the paged list to present. The previous list keeps being presented until the
+     * difference between the two is computed.
+     */
+    public void submitList(@Nullable PagedList<T> pagedList) {
+        mDiffer.submitList(pagedList);
+    }
+
+    /**
+     * Returns the paged list currently presented, or null.
+     */
+    @Nullable
+    public PagedList<T> getCurrentList() {
+        return mDiffer.getCurrentList();
+    }
+
+    @Override
+    public int size() {
+        return mDiffer.getItemCount();
+    }
+
+    /**
+     * Returns the item at the given position, or null if its page is not loaded yet. Loads the
+     * pages around the position.
+     */
+    @Override
+    @Nullable
+    public T get(int position) {
+        return mDiffer.getItem(position);
+    }
+}
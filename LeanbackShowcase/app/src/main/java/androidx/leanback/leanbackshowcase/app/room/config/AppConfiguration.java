@@ -38,4 +38,7 @@ public class AppConfiguration {
 
     // only use small data set (live_movie_debug.json) for debugging
     public static boolean IS_DEBUGGING_VERSION = false;
+
+    // storage the offline downloads can use before the least recently watched ones are removed
+    public static long OFFLINE_STORAGE_QUOTA_BYTES = 2L * 1024 * 1024 * 1024;
 }
@@ -59,7 +59,6 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.SimpleTarget;
 import com.bumptech.glide.request.transition.Transition;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
@@ -236,18 +235,7 @@ public class LiveDataDetailViewWithVideoBackgroundFragment extends DetailsSuppor
                     @Override
                     public void onChanged(@Nullable List<VideoEntity> videoEntities) {
                         if (videoEntities != null) {
-                            mRelatedRowAdapter
-                                    .setItems(videoEntities, new Comparator<VideoEntity>() {
-                                        @Override
-                                        public int compare(VideoEntity o1, VideoEntity o2) {
-                                            return o1.getId() == o2.getId() ? 0 : -1;
-                                        }
-                                    }, new Comparator<VideoEntity>() {
-                                        @Override
-                                        public int compare(VideoEntity o1, VideoEntity o2) {
-                                            return o1.equals(o2) ? 0 : -1;
-                                        }
-                                    });
+                            mRelatedRowAdapter.setItems(videoEntities);
                         }
                     }
                 });
@@ -294,6 +282,15 @@ public class LiveDataDetailViewWithVideoBackgroundFragment extends DetailsSuppor
                 getActivity().findViewById(R.id.renting_progressbar).setVisibility(View.VISIBLE);
                 getActivity().findViewById(R.id.loading_renting).setVisibility(View.VISIBLE);
             } else if (action == mActionPlay) {
+                new AsyncTask<Void, Void, Void>() {
+                    @Override
+                    protected Void doInBackground(Void... voids) {
+
+                        // the downloads of the videos watched recently are evicted last
+                        mViewModel.markWatched(mObservedVideo);
+                        return null;
+                    }
+                }.execute();
                 mDetailsBgController.switchToVideo();
             } else if (action == mActionPreview) {
                 mDetailsBgController.switchToVideo();
@@ -20,13 +20,12 @@ import androidx.lifecycle.LifecycleOwner;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.lifecycle.ViewModelProviders;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import androidx.annotation.Nullable;
 import androidx.leanback.app.BrowseSupportFragment;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.adapter.ListAdapter;
-import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
+import androidx.leanback.leanbackshowcase.app.room.adapter.PagedListObjectAdapter;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 import androidx.leanback.leanbackshowcase.app.room.di.adapter.qualifier.ListAdapteWithLiveDataRowPresenterQualifier;
@@ -127,6 +126,12 @@ public class LiveDataFragment extends BrowseSupportFragment
         prepareEntranceTransition();
     }
 
+    @Override
+    public void onDestroy() {
+        DownloadCompleteBroadcastReceiver.getInstance().unregisterListener(this);
+        super.onDestroy();
+    }
+
     @Override
     public void onActivityCreated(@Nullable Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
@@ -134,6 +139,7 @@ public class LiveDataFragment extends BrowseSupportFragment
         mViewModel = ViewModelProviders.of(getActivity(), viewModelFactory)
                 .get(VideosViewModel.class);
         subscribeUi(mViewModel);
+        subscribeDatabaseReady(mViewModel);
     }
 
     @Override
@@ -143,80 +149,23 @@ public class LiveDataFragment extends BrowseSupportFragment
 
     @Override
     public void onDownloadingCompleted(final DownloadingTaskDescription desc) {
+        // The local storage path is already saved, only the user is told.
         final VideoEntity videoEntity = desc.getVideo();
+        String message;
         switch (desc.getCategory()) {
-
             case VIDEO:
-                new AsyncTask<Void, Void, Void>() {
-                    @Override
-                    protected Void doInBackground(Void... voids) {
-
-                        if (AppConfiguration.IS_NETWORK_LATENCY_ENABLED) {
-                            addLatency(3000L);
-                        }
-                        mViewModel.updateDatabase(videoEntity, VIDEO, desc.getStoragePath());
-                        return null;
-                    }
-
-                    @Override
-                    protected void onPostExecute(Void aVoid) {
-                        super.onPostExecute(aVoid);
-                        Toast.makeText(
-                                getActivity().getApplicationContext(),
-                                "video " + videoEntity.getId() + " " +
-                                        "downloaded",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                }.execute();
+                message = "video " + videoEntity.getId() + " downloaded";
                 break;
-
             case BACKGROUND:
-                new AsyncTask<Void, Void, Void>() {
-                    @Override
-                    protected Void doInBackground(Void... voids) {
-
-                        if (AppConfiguration.IS_NETWORK_LATENCY_ENABLED) {
-                            addLatency(2000L);
-                        }
-                        mViewModel.updateDatabase(videoEntity, BACKGROUND, desc.getStoragePath());
-                        return null;
-                    }
-
-                    @Override
-                    protected void onPostExecute(Void aVoid) {
-                        super.onPostExecute(aVoid);
-                        Toast.makeText(
-                                getActivity().getApplicationContext(),
-                                "background" + videoEntity.getId() + " " +
-                                        "downloaded",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                }.execute();
+                message = "background" + videoEntity.getId() + " downloaded";
                 break;
-
             case CARD:
-                new AsyncTask<Void, Void, Void>() {
-                    @Override
-                    protected Void doInBackground(Void... voids) {
-
-                        if (AppConfiguration.IS_NETWORK_LATENCY_ENABLED) {
-                            addLatency(1000L);
-                        }
-                        mViewModel.updateDatabase(videoEntity, CARD, desc.getStoragePath());
-                        return null;
-                    }
-
-                    @Override
-                    protected void onPostExecute(Void aVoid) {
-                        super.onPostExecute(aVoid);
-                        Toast.makeText(
-                                getActivity().getApplicationContext(),
-                                "card " + videoEntity.getId() + " downloaded",
-                                Toast.LENGTH_SHORT).show();
-                    }
-                }.execute();
+                message = "card " + videoEntity.getId() + " downloaded";
                 break;
+            default:
+                return;
         }
+        Toast.makeText(getActivity().getApplicationContext(), message, Toast.LENGTH_SHORT).show();
     }
 
     private void subscribeNetworkInfo() {
@@ -236,12 +185,37 @@ public class LiveDataFragment extends BrowseSupportFragment
                 });
     }
 
+    private void subscribeDatabaseReady(VideosViewModel viewModel) {
+        // The progress bar only shows up if populating the database takes a while
+        viewModel.getPopulationProgress().observe((LifecycleOwner) getActivity(),
+                new Observer<Integer>() {
+                    @Override
+                    public void onChanged(@Nullable Integer percent) {
+                        if (percent != null && percent < 100) {
+                            getProgressBarManager().show();
+                        }
+                    }
+                });
+        viewModel.getDatabaseReady().observe((LifecycleOwner) getActivity(),
+                new Observer<Boolean>() {
+                    @Override
+                    public void onChanged(@Nullable Boolean ready) {
+                        getProgressBarManager().hide();
+
+                        // Also started when there is nothing to show, so the no internet message
+                        // is not hidden behind a pending transition
+                        startEntranceTransition();
+                    }
+                });
+    }
+
     private void subscribeUi(final VideosViewModel viewModel) {
         viewModel.getAllCategories().observe((LifecycleOwner) getActivity(),
                 new Observer<List<CategoryEntity>>() {
                     @Override
                     public void onChanged(@Nullable List<CategoryEntity> categoryEntities) {
                         if (categoryEntities != null) {
+                            viewModel.prewarmCategories(categoryEntities);
                             List<ListRow> rows = new ArrayList<>();
 
                             // The ListRow here cannot be used with dependency injection, since it
@@ -249,7 +223,8 @@ public class LiveDataFragment extends BrowseSupportFragment
                             for (CategoryEntity categoryEntity : categoryEntities) {
                                 ListRow row = new ListRow(
                                         new HeaderItem(categoryEntity.getCategoryName()),
-                                        new ListAdapter<>(videoCardPresenter));
+                                        new PagedListObjectAdapter<>(videoCardPresenter,
+                                                LiveDataRowPresenter.VIDEO_ITEM_CALLBACK));
                                 rows.add(row);
                             }
 
@@ -269,16 +244,4 @@ public class LiveDataFragment extends BrowseSupportFragment
                     }
                 });
     }
-
-    private void addLatency(Long ms) {
-        try {
-            // add 1s latency for video downloading, when network latency option
-            // is enabled.
-            Thread.sleep(ms);
-        } catch (InterruptedException e) {
-            if (DEBUG) {
-                Log.e(TAG, "doInBackground: ", e);
-            }
-        }
-    }
 }
@@ -24,7 +24,9 @@ import android.content.pm.PackageManager;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.leanback.leanbackshowcase.R;
+import androidx.leanback.leanbackshowcase.app.room.network.ConnectivityState;
 import androidx.leanback.leanbackshowcase.app.room.network.DownloadCompleteBroadcastReceiver;
+import androidx.leanback.leanbackshowcase.app.room.network.DownloadScheduler;
 import androidx.leanback.leanbackshowcase.app.room.network.PermissionLiveData;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
@@ -51,6 +53,8 @@ public class LiveDataRowsActivity extends FragmentActivity implements HasSupport
 
         setContentView(R.layout.activity_livedata_rows);
 
+        // Starts following the network, so its state is known when a card's menu shows up.
+        ConnectivityState.get(this);
 
         if (ContextCompat.checkSelfPermission(LiveDataRowsActivity.this,
                 Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED) {
@@ -98,6 +102,9 @@ public class LiveDataRowsActivity extends FragmentActivity implements HasSupport
         // the main frame.
         mReceiver = DownloadCompleteBroadcastReceiver.getInstance();
         registerReceiver(mReceiver, new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE));
+
+        // Downloads of a previous process completing from now on are reported to the receiver.
+        DownloadScheduler.getInstance().resumeAsync();
     }
 
     @Override
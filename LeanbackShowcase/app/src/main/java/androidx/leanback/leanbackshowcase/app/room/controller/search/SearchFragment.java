@@ -38,7 +38,6 @@ import android.text.TextUtils;
 import android.view.View;
 
 import dagger.android.support.AndroidSupportInjection;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
@@ -113,9 +112,8 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
     @Override
     public boolean onQueryTextChange(String newQuery) {
 
+        // The progress bar follows VideosViewModel.getSearchPending().
         if (!TextUtils.isEmpty(newQuery) && !newQuery.equals("nil")) {
-            getActivity().findViewById(R.id.search_progressbar).setVisibility(View.VISIBLE);
-            newQuery = "%" + newQuery + "%";
             mViewModel.setQueryMessage(newQuery);
         }
         return true;
@@ -125,14 +123,20 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
     public boolean onQueryTextSubmit(String query) {
 
         if (!TextUtils.isEmpty(query) && !query.equals("nil")) {
-            getActivity().findViewById(R.id.search_progressbar).setVisibility(View.VISIBLE);
-            query = "%" + query + "%";
-            mViewModel.setQueryMessage(query);
+            mViewModel.submitQueryMessage(query);
         }
         return true;
     }
 
     private void subscribeUi(VideosViewModel viewModel) {
+        viewModel.getSearchPending()
+                .observe((LifecycleOwner) this.getActivity(), new Observer<Boolean>() {
+                    @Override
+                    public void onChanged(@Nullable Boolean pending) {
+                        getActivity().findViewById(R.id.search_progressbar).setVisibility(
+                                pending != null && pending ? View.VISIBLE : View.GONE);
+                    }
+                });
         viewModel.getSearchResult()
                 .observe((LifecycleOwner) this.getActivity(), new Observer<List<VideoEntity>>() {
                     @Override
@@ -141,19 +145,7 @@ public class SearchFragment extends androidx.leanback.app.SearchSupportFragment
                         if (videoEntities != null && !videoEntities.isEmpty()) {
                             getActivity().findViewById(R.id.no_search_result)
                                     .setVisibility(View.GONE);
-                            getActivity().findViewById(R.id.search_progressbar)
-                                    .setVisibility(View.GONE);
-                            mRelatedAdapter.setItems(videoEntities, new Comparator<VideoEntity>() {
-                                @Override
-                                public int compare(VideoEntity o1, VideoEntity o2) {
-                                    return o1.getId() == o2.getId() ? 0 : -1;
-                                }
-                            }, new Comparator<VideoEntity>() {
-                                @Override
-                                public int compare(VideoEntity o1, VideoEntity o2) {
-                                    return o1.equals(o2) ? 0 : -1;
-                                }
-                            });
+                            mRelatedAdapter.setItems(videoEntities);
                         } else {
                             // When the search result is null (when data base has not been created) or
                             // empty, the text view field will be visible and telling user that no search
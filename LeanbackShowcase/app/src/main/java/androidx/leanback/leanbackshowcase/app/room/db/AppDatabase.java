@@ -14,18 +14,37 @@
 
 package androidx.leanback.leanbackshowcase.app.room.db;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant.VideoEntry;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoFtsEntity;
 
 
-@Database(entities = {VideoEntity.class, CategoryEntity.class}, version = 1, exportSchema = false)
+@Database(entities = {VideoEntity.class, CategoryEntity.class, VideoFtsEntity.class}, version = 3,
+        exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase{
     public static final String DATABASE_NAME = "leanback_showcase.db";
 
+    /**
+     * Adds the storage accounting of the offline downloads, so the downloaded videos are kept.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE " + VideoEntry.TABLE_NAME + " ADD COLUMN "
+                    + VideoEntry.COLUMN_DOWNLOADED_BYTES + " INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE " + VideoEntry.TABLE_NAME + " ADD COLUMN "
+                    + VideoEntry.COLUMN_LAST_WATCHED_TIME + " INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
     public abstract VideoDao videoDao();
 
     public abstract CategoryDao categoryDao();
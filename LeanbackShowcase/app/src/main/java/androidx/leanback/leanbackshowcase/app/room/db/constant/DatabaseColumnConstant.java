@@ -68,6 +68,12 @@ public class DatabaseColumnConstant {
         public static final String COLUMN_CARD_IMG_CACHE = "card_image_downloaded_uri";
 
         public static final String COLUMN_VIDEO_STATUS = "working_status";
+
+        // Size of the downloaded resources of the video.
+        public static final String COLUMN_DOWNLOADED_BYTES = "downloaded_bytes";
+
+        // When the video was last played or downloaded, in milliseconds since epoch.
+        public static final String COLUMN_LAST_WATCHED_TIME = "last_watched_time";
     }
 
     /**
@@ -84,4 +90,14 @@ public class DatabaseColumnConstant {
         // Name of the column of category name
         public static final String COLUMN_CATEGORY_NAME = "category_name";
     }
+
+    /**
+     * Define the name of the full text search table of the video entry, whose columns are the
+     * searchable columns of the video entry
+     */
+    public static final class VideoFtsEntry {
+
+        // Name of the full text search table.
+        public static final String TABLE_NAME = "videos_fts";
+    }
 }
@@ -16,19 +16,41 @@
 
 package androidx.leanback.leanbackshowcase.app.room.db.dao;
 
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
+import androidx.paging.DataSource;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.StorageUsage;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 
 import java.util.List;
 
 @Dao
 public interface VideoDao {
+
+    // Queries which are also checked against the query plan in the instrumented tests
+
+    String LOAD_VIDEO_IN_SAME_CATEGORY = "SELECT * FROM "
+            + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY + " = :category";
+
+    String LOAD_VIDEOS_WITH_STATUS = "SELECT * FROM "
+            + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS + " = :status";
+
+    String SEARCH_VIDEOS = "SELECT " + DatabaseColumnConstant.VideoEntry.TABLE_NAME + ".*"
+            + " FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " JOIN " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME
+            + " ON " + DatabaseColumnConstant.VideoEntry.TABLE_NAME + "."
+            + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID
+            + " = " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + ".rowid"
+            + " WHERE " + DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME + " MATCH :matchQuery";
+
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAllVideos(List<VideoEntity> videos);
 
@@ -38,18 +60,110 @@ public interface VideoDao {
     LiveData<VideoEntity> loadVideoById(long videoId);
 
 
-    @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
-            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY
-            + " = :category")
+    @Query(LOAD_VIDEO_IN_SAME_CATEGORY)
     LiveData<List<VideoEntity>> loadVideoInSameCateogry(String category);
 
+    /**
+     * Pages of the videos in the same category. Pages are loaded by offset, so the videos are
+     * ordered by id to keep the same position across pages and updates.
+     */
+    @Query(LOAD_VIDEO_IN_SAME_CATEGORY
+            + " ORDER BY " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID)
+    DataSource.Factory<Integer, VideoEntity> loadPagedVideosInSameCategory(String category);
+
+    @WorkerThread
+    @Query(LOAD_VIDEOS_WITH_STATUS)
+    List<VideoEntity> loadVideosWithStatus(String status);
+
+    @WorkerThread
+    @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID
+            + " = :videoId")
+    VideoEntity loadVideo(long videoId);
+
+    /**
+     * The videos with downloaded resources, including the ones with only their images or whose
+     * video is still downloading, least recently watched first. These are the videos counted by
+     * {@link #loadDownloadedBytes()}.
+     */
+    @WorkerThread
     @Query("SELECT * FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
-            + " WHERE "+ DatabaseColumnConstant.VideoEntry.COLUMN_NAME
-            + " LIKE " + ":queryMessage"
-            + " OR " + DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY
-            +" LIKE " + ":queryMessage")
-    LiveData<List<VideoEntity>> searchVideos(String queryMessage);
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + " > 0"
+            + " ORDER BY " + DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_TIME)
+    List<VideoEntity> loadVideosWithDownloadsByLastWatched();
+
+    /**
+     * The storage used by the downloaded resources of all the videos.
+     */
+    @WorkerThread
+    @Query("SELECT IFNULL(SUM(" + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES
+            + "), 0) FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME)
+    long loadDownloadedBytes();
+
+    @Query("SELECT COUNT(*) AS downloadedVideos, IFNULL(SUM("
+            + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + "), 0) AS usedBytes"
+            + " FROM " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + " > 0")
+    LiveData<StorageUsage> loadStorageUsage();
+
+    /**
+     * Searches the titles and categories through the full text search table.
+     *
+     * @param matchQuery Full text search query, e.g. built by
+     * {@link androidx.leanback.leanbackshowcase.app.room.db.repo.SearchQuery}.
+     */
+    @Query(SEARCH_VIDEOS)
+    LiveData<List<VideoEntity>> searchVideos(String matchQuery);
 
     @Update(onConflict = OnConflictStrategy.REPLACE)
     void updateVideo(VideoEntity video);
+
+    // The following updates only write the changed column of one video
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS + " = :status"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateStatus(long videoId, String status);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_CACHE + " = :url"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateVideoLocalStorageUrl(long videoId, String url);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_CACHE + " = :url"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateVideoBgImageLocalStorageUrl(long videoId, String url);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMG_CACHE + " = :url"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateVideoCardImageLocalStorageUrl(long videoId, String url);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_IS_RENTED + " = :rented"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateRented(long videoId, boolean rented);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + " = :bytes"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateDownloadedBytes(long videoId, long bytes);
+
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_TIME + " = :time"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void updateLastWatchedTime(long videoId, long time);
+
+    /**
+     * Forgets the downloaded resources of the video, so it can be downloaded again.
+     */
+    @Query("UPDATE " + DatabaseColumnConstant.VideoEntry.TABLE_NAME
+            + " SET " + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_CACHE + " = '', "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_BG_IMAGE_CACHE + " = '', "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_CARD_IMG_CACHE + " = '', "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES + " = 0, "
+            + DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS + " = ''"
+            + " WHERE " + DatabaseColumnConstant.VideoEntry.COLUMN_AUTO_GENERATE_ID + " = :videoId")
+    void clearDownload(long videoId);
 }
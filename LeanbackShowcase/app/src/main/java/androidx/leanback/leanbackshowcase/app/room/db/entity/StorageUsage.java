@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.entity;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Storage used by the offline downloads, aggregated over the video table.
+ */
+public class StorageUsage {
+
+    @ColumnInfo(name = "downloadedVideos")
+    private int mDownloadedVideos;
+
+    @ColumnInfo(name = "usedBytes")
+    private long mUsedBytes;
+
+    public int getDownloadedVideos() {
+        return mDownloadedVideos;
+    }
+
+    public void setDownloadedVideos(int downloadedVideos) {
+        mDownloadedVideos = downloadedVideos;
+    }
+
+    public long getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public void setUsedBytes(long usedBytes) {
+        mUsedBytes = usedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageUsage{downloadedVideos=" + mDownloadedVideos + ", usedBytes=" + mUsedBytes
+                + "}";
+    }
+}
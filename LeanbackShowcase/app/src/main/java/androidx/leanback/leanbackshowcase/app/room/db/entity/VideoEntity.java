@@ -19,6 +19,7 @@ package androidx.leanback.leanbackshowcase.app.room.db.entity;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -29,7 +30,11 @@ import com.google.gson.annotations.SerializedName;
 
 import java.util.List;
 
-@Entity(tableName = DatabaseColumnConstant.VideoEntry.TABLE_NAME)
+@Entity(tableName = DatabaseColumnConstant.VideoEntry.TABLE_NAME,
+        indices = {
+                @Index(DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY),
+                @Index(DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS)
+        })
 public class VideoEntity implements  Parcelable {
 
     @SerializedName(GsonConstant.DESCRIPTION)
@@ -91,6 +96,7 @@ public class VideoEntity implements  Parcelable {
 
     public void setTrailerVideoUrl(String mTrailerVideoUrl) {
         this.mTrailerVideoUrl = mTrailerVideoUrl;
+        mContentVersion = 0;
     }
 
     // The first url in urls array
@@ -103,6 +109,17 @@ public class VideoEntity implements  Parcelable {
     @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_VIDEO_STATUS)
     private String mStatus;
 
+    // Storage accounting of the offline downloads, not shown so not part of the content version.
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_DOWNLOADED_BYTES)
+    private long mDownloadedBytes;
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_LAST_WATCHED_TIME)
+    private long mLastWatchedTime;
+
+    // 64 bit hash of the content, computed on first use and cleared by the setters.
+    @Ignore
+    private transient volatile long mContentVersion;
+
     /**
      * The constructor is requried by room database
      */
@@ -122,8 +139,25 @@ public class VideoEntity implements  Parcelable {
      */
     public void setStatus(String status) {
         this.mStatus = status;
+        mContentVersion = 0;
+    }
+
+
+    public long getDownloadedBytes() {
+        return mDownloadedBytes;
+    }
+
+    public void setDownloadedBytes(long downloadedBytes) {
+        mDownloadedBytes = downloadedBytes;
+    }
+
+    public long getLastWatchedTime() {
+        return mLastWatchedTime;
     }
 
+    public void setLastWatchedTime(long lastWatchedTime) {
+        mLastWatchedTime = lastWatchedTime;
+    }
 
     /**
      * Is video entity rented or not
@@ -137,6 +171,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setRented(boolean mIsRented) {
         this.mRented = mIsRented;
+        mContentVersion = 0;
     }
 
     /**
@@ -144,6 +179,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setId(long id) {
         mId = id;
+        mContentVersion = 0;
     }
 
     /**
@@ -165,6 +201,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setCategory(String category) {
         this.mCategory = category;
+        mContentVersion = 0;
     }
 
     /**
@@ -179,6 +216,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setVideoUrls(List<String> videoUrls) {
         mVideoUrls = videoUrls;
+        mContentVersion = 0;
     }
 
     /**
@@ -193,6 +231,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setDescription(String description) {
         this.mDescription = description;
+        mContentVersion = 0;
     }
 
     /**
@@ -207,6 +246,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setVideoUrl(String videoUrl) {
         this.mVideoUrl = videoUrl;
+        mContentVersion = 0;
     }
 
     /**
@@ -221,6 +261,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setCardImageUrl(String cardImageUrl) {
         this.mCardImageUrl = cardImageUrl;
+        mContentVersion = 0;
     }
 
     /**
@@ -235,6 +276,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setBgImageUrl(String bgImageUrl) {
         this.mBgImageUrl = bgImageUrl;
+        mContentVersion = 0;
     }
 
     /**
@@ -249,6 +291,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setTitle(String title) {
         this.mTitle = title;
+        mContentVersion = 0;
     }
 
     /**
@@ -263,6 +306,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setStudio(String studio) {
         this.mStudio = studio;
+        mContentVersion = 0;
     }
 
     /**
@@ -277,6 +321,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setVideoLocalStorageUrl(String videoLocalStorageUrl) {
         this.mVideoLocalStorageUrl = videoLocalStorageUrl;
+        mContentVersion = 0;
     }
 
     /**
@@ -291,6 +336,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setVideoBgImageLocalStorageUrl(String videoBgImageLocalStorageUrl) {
         this.mVideoBgImageLocalStorageUrl = videoBgImageLocalStorageUrl;
+        mContentVersion = 0;
     }
 
     /**
@@ -305,6 +351,7 @@ public class VideoEntity implements  Parcelable {
      */
     public void setVideoCardImageLocalStorageUrl(String videoCardImageLocalStorageUrl) {
         this.mVideoCardImageLocalStorageUrl = videoCardImageLocalStorageUrl;
+        mContentVersion = 0;
     }
 
     // This constructor is needed since we will pass the video item between different activities.
@@ -371,6 +418,51 @@ public class VideoEntity implements  Parcelable {
         dest.writeByte((byte) (mRented ? 1:0));
     }
 
+    /**
+     * Returns a version of the content of this entity: entities with the same id and the same
+     * version have the same content. Cheaper than {@link #equals(Object)} when the same entity is
+     * compared several times, e.g. while diffing lists, since every string is only hashed once.
+     * Distinct contents get the same version with negligible probability.
+     */
+    public long getContentVersion() {
+        long version = mContentVersion;
+        if (version == 0) {
+            version = FNV_OFFSET_BASIS;
+            version = hash(version, mDescription);
+            version = hash(version, mVideoUrls != null ? mVideoUrls.toString() : null);
+            version = hash(version, mCardImageUrl);
+            version = hash(version, mBgImageUrl);
+            version = hash(version, mTitle);
+            version = hash(version, mStudio);
+            version = hash(version, mVideoLocalStorageUrl);
+            version = hash(version, mVideoBgImageLocalStorageUrl);
+            version = hash(version, mVideoCardImageLocalStorageUrl);
+            version = hash(version, mCategory);
+            version = hash(version, mVideoUrl);
+            version = hash(version, mTrailerVideoUrl);
+            version = hash(version, mStatus);
+            version = (version ^ (mRented ? 1 : 0)) * FNV_PRIME;
+            if (version == 0) {
+                version = 1;
+            }
+            mContentVersion = version;
+        }
+        return version;
+    }
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // FNV-1a over the chars of the string, with a marker separating fields and nulls.
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+            }
+        }
+        return (hash ^ (value == null ? 0x10000 : 0x10001)) * FNV_PRIME;
+    }
+
     /**
      * For debugging
      *
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.leanback.leanbackshowcase.app.room.db.constant.DatabaseColumnConstant;
+
+/**
+ * Full text search index of the video titles and categories.
+ *
+ * <p>The table is an external content table of {@link VideoEntity}: it only stores the index, its
+ * rowid is the id of the video, and Room keeps it in sync with triggers on the video table.
+ */
+@Fts4(contentEntity = VideoEntity.class)
+@Entity(tableName = DatabaseColumnConstant.VideoFtsEntry.TABLE_NAME)
+public class VideoFtsEntity {
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_NAME)
+    private String mTitle;
+
+    @ColumnInfo(name = DatabaseColumnConstant.VideoEntry.COLUMN_CATEGORY)
+    private String mCategory;
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    public void setTitle(String title) {
+        mTitle = title;
+    }
+
+    public String getCategory() {
+        return mCategory;
+    }
+
+    public void setCategory(String category) {
+        mCategory = category;
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import android.util.Log;
+import androidx.annotation.WorkerThread;
+import androidx.leanback.leanbackshowcase.app.room.api.VideosWithGoogleTag;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import javax.inject.Provider;
+
+/**
+ * Populates the database with the videos fetched from the network or the debugging json file.
+ *
+ * <p>Everything runs on a dedicated thread, including the post processing of the entities. The
+ * videos are written in transactions of {@link #VIDEOS_PER_TRANSACTION} videos, so committing is
+ * not paid per category, and the categories are written with the last videos so a row is only
+ * shown once its videos are in the database.
+ */
+public class DatabasePopulator {
+
+    // For debugging purpose
+    private static final boolean DEBUG = false;
+    private static final String TAG = "DatabasePopulator";
+
+    // Large enough to make the commit cost negligible, small enough to report progress.
+    static final int VIDEOS_PER_TRANSACTION = 1000;
+
+    private static final String TRAILER_URL = "https://storage.googleapis.com/android-tv/"
+            + "Sample%20videos/Google%2B/Google%2B_%20Say%20more%20with%20Hangouts.mp4";
+
+    private final Provider<AppDatabase> mDb;
+    private final Executor mExecutor;
+
+    private final MutableLiveData<Integer> mProgress = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> mDatabaseReady = new MutableLiveData<>();
+
+    public DatabasePopulator(final AppDatabase db) {
+        this(new Provider<AppDatabase>() {
+            @Override
+            public AppDatabase get() {
+                return db;
+            }
+        });
+    }
+
+    /**
+     * @param db Provides the database on the populator's thread, so it is only created when the
+     *           videos are written.
+     */
+    public DatabasePopulator(Provider<AppDatabase> db) {
+        this(db, Executors.newSingleThreadExecutor());
+    }
+
+    DatabasePopulator(Provider<AppDatabase> db, Executor executor) {
+        mDb = db;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the percentage of the videos written to the database.
+     */
+    public LiveData<Integer> getProgress() {
+        return mProgress;
+    }
+
+    /**
+     * Returns a live data set to true once the database is populated, or to false if it could
+     * not be.
+     */
+    public LiveData<Boolean> getDatabaseReady() {
+        return mDatabaseReady;
+    }
+
+    /**
+     * Populates the database on the populator's thread.
+     */
+    public void populate(final VideosWithGoogleTag videosWithGoogleTag) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean populated = false;
+                try {
+                    populateNow(videosWithGoogleTag.getAllResources());
+                    populated = true;
+                } catch (RuntimeException e) {
+                    // Database errors as well as malformed content, e.g. a video without url.
+                    Log.e(TAG, "Fail to populate the database", e);
+                } finally {
+                    // Always signaled, the browse screen waits for it to hide its progress bar.
+                    mDatabaseReady.postValue(populated);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reports that the content to populate the database could not be fetched.
+     */
+    public void onContentUnavailable() {
+        mDatabaseReady.postValue(false);
+    }
+
+    /**
+     * Writes all the categories and their videos in the calling thread.
+     */
+    @WorkerThread
+    void populateNow(List<VideosWithGoogleTag.VideosGroupByCategory> videosGroupByCategories) {
+        long startTime = System.currentTimeMillis();
+        List<CategoryEntity> categories = new ArrayList<>(videosGroupByCategories.size());
+        List<VideoEntity> videos = new ArrayList<>();
+        for (VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory :
+                videosGroupByCategories) {
+            CategoryEntity categoryEntity = new CategoryEntity();
+            categoryEntity.setCategoryName(videosGroupByCategory.getCategory());
+            categories.add(categoryEntity);
+
+            postProcessing(videosGroupByCategory);
+            videos.addAll(videosGroupByCategory.getVideos());
+        }
+
+        AppDatabase db = mDb.get();
+        int total = videos.size();
+        int written = 0;
+        do {
+            int end = Math.min(total, written + VIDEOS_PER_TRANSACTION);
+            try {
+                db.beginTransaction();
+                db.videoDao().insertAllVideos(videos.subList(written, end));
+                if (end == total) {
+                    db.categoryDao().insertAllCategories(categories);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            written = end;
+            mProgress.postValue(total == 0 ? 100 : 100 * written / total);
+        } while (written < total);
+
+        if (DEBUG) {
+            Log.d(TAG, "populateNow: " + categories.size() + " categories, " + total
+                    + " videos in " + (System.currentTimeMillis() - startTime) + "ms");
+        }
+    }
+
+    /**
+     * Helper function to make some customization on raw data
+     */
+    static void postProcessing(VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory) {
+        for (VideoEntity each : videosGroupByCategory.getVideos()) {
+            each.setCategory(videosGroupByCategory.getCategory());
+            each.setVideoLocalStorageUrl("");
+            each.setVideoBgImageLocalStorageUrl("");
+            each.setVideoCardImageLocalStorageUrl("");
+            each.setVideoUrl(each.getVideoUrls().get(0));
+            each.setRented(false);
+            each.setStatus("");
+            each.setTrailerVideoUrl(TRAILER_URL);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread safe cache of live data by key, so the same live data is shared among the components
+ * observing the same key.
+ *
+ * <p>The cache is bounded: when it grows above its max size, the least recently used entries
+ * which have no observer are evicted. Entries still observed, even by a stopped component, are
+ * never evicted, as their observers would stop sharing the live data with the next caller; the
+ * cache may then stay above its max size until they are no longer observed.
+ */
+public class LiveDataCache<K, T> {
+
+    /**
+     * Creates the live data of a key missing from the cache. Called with the cache lock held, so
+     * it should only create the live data, not load its value.
+     */
+    public interface Loader<K, T> {
+        LiveData<T> load(K key);
+    }
+
+    private final Loader<K, T> mLoader;
+    private final int mMaxSize;
+
+    // Least recently used first. Guarded by this.
+    private final LinkedHashMap<K, LiveData<T>> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int mHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+
+    /**
+     * @param maxSize Number of entries above which unobserved entries are evicted.
+     */
+    public LiveDataCache(int maxSize, Loader<K, T> loader) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        mMaxSize = maxSize;
+        mLoader = loader;
+    }
+
+    /**
+     * Returns the live data of the key, creating it if it is not cached.
+     */
+    public synchronized LiveData<T> get(K key) {
+        LiveData<T> liveData = mEntries.get(key);
+        if (liveData != null) {
+            mHitCount++;
+            return liveData;
+        }
+        mMissCount++;
+        liveData = mLoader.load(key);
+        mEntries.put(key, liveData);
+        // The new entry is not observed yet, it must not be the one evicted.
+        trimToSize(mMaxSize, key);
+        return liveData;
+    }
+
+    /**
+     * Creates the live data of the key if needed and starts loading its value, so the first
+     * component observing it gets the value without waiting for the query.
+     */
+    @MainThread
+    public void prewarm(K key) {
+        final LiveData<T> liveData = get(key);
+        if (liveData.hasObservers()) {
+            return;
+        }
+        // Observing activates the live data, which then keeps its value once unobserved.
+        liveData.observeForever(new Observer<T>() {
+            @Override
+            public void onChanged(@Nullable T value) {
+                liveData.removeObserver(this);
+            }
+        });
+    }
+
+    /**
+     * Evicts the least recently used entries without observers until the cache has no
+     * more than {@code maxSize} entries, or only observed entries are left.
+     */
+    public synchronized void trimToSize(int maxSize) {
+        trimToSize(maxSize, null);
+    }
+
+    private void trimToSize(int maxSize, @Nullable K keep) {
+        Iterator<Map.Entry<K, LiveData<T>>> iterator = mEntries.entrySet().iterator();
+        while (mEntries.size() > maxSize && iterator.hasNext()) {
+            Map.Entry<K, LiveData<T>> entry = iterator.next();
+            if (!entry.getValue().hasObservers() && !entry.getKey().equals(keep)) {
+                iterator.remove();
+                mEvictionCount++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    public int maxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of times {@link #get} returned a cached live data.
+     */
+    public synchronized int hitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * Returns the number of times {@link #get} created a live data.
+     */
+    public synchronized int missCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of entries evicted.
+     */
+    public synchronized int evictionCount() {
+        return mEvictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = mHitCount + mMissCount;
+        int hitPercent = accesses != 0 ? (100 * mHitCount / accesses) : 0;
+        return String.format("LiveDataCache[size=%d,maxSize=%d,hits=%d,misses=%d,hitRate=%d%%,"
+                        + "evictions=%d]", mEntries.size(), mMaxSize, mHitCount, mMissCount,
+                hitPercent, mEvictionCount);
+    }
+}
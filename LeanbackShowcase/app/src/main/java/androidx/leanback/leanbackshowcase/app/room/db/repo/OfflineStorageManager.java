@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import android.net.Uri;
+import android.os.Environment;
+import android.util.Log;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
+import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.StorageUsage;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.network.DownloadScheduler;
+import androidx.lifecycle.LiveData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Provider;
+
+/**
+ * Keeps the offline downloads within a storage quota.
+ *
+ * <p>The size of the downloaded resources of each video is tracked in the database. Once they
+ * use more than the quota, or would leave less than {@link #MIN_FREE_BYTES} on the storage, the
+ * least recently watched videos with downloaded resources are evicted: their columns are
+ * cleared in one transaction, so the videos can be downloaded again, then their downloads are
+ * removed from the download manager, which deletes their files. Downloading a video counts as
+ * watching it, so a new download is not the first one evicted.
+ */
+public class OfflineStorageManager {
+
+    // For debugging purpose
+    private static final boolean DEBUG = false;
+    private static final String TAG = "OfflineStorageManager";
+
+    // Space left to the rest of the device, whatever the quota.
+    static final long MIN_FREE_BYTES = 512L * 1024 * 1024;
+
+    /**
+     * Deletes the files of the evicted videos.
+     */
+    interface FileRemover {
+        @WorkerThread
+        void remove(List<String> localUris);
+    }
+
+    // Removes the downloads from the download manager, so they are not adopted again once the
+    // videos are downloaded again. The files it does not know are deleted directly.
+    private static final FileRemover DOWNLOAD_REMOVER = new FileRemover() {
+        @Override
+        public void remove(List<String> localUris) {
+            for (String localUri : DownloadScheduler.getInstance().removeDownloads(localUris)) {
+                delete(localUri);
+            }
+        }
+    };
+
+    private final Provider<AppDatabase> mDb;
+    private final long mQuotaBytes;
+    private final FileRemover mFileRemover;
+
+    // Guarded by this.
+    private int mEvictedVideos;
+    private long mEvictedBytes;
+
+    /**
+     * @param quotaBytes Storage the downloads can use at most.
+     */
+    OfflineStorageManager(Provider<AppDatabase> db, long quotaBytes) {
+        this(db, quotaBytes, DOWNLOAD_REMOVER);
+    }
+
+    @VisibleForTesting
+    OfflineStorageManager(Provider<AppDatabase> db, long quotaBytes, FileRemover fileRemover) {
+        mDb = db;
+        mQuotaBytes = quotaBytes;
+        mFileRemover = fileRemover;
+    }
+
+    /**
+     * Records the size of the resources of the video after one of them was downloaded or
+     * removed, then evicts other downloads if the quota is exceeded.
+     */
+    @WorkerThread
+    public synchronized void onResourcesChanged(long videoId, boolean downloaded) {
+        VideoDao videoDao = mDb.get().videoDao();
+        VideoEntity video = videoDao.loadVideo(videoId);
+        if (video == null) {
+            return;
+        }
+        long bytes = sizeOf(video.getVideoCardImageLocalStorageUrl())
+                + sizeOf(video.getVideoBgImageLocalStorageUrl())
+                + sizeOf(video.getVideoLocalStorageUrl());
+        videoDao.updateDownloadedBytes(videoId, bytes);
+        if (downloaded) {
+            videoDao.updateLastWatchedTime(videoId, System.currentTimeMillis());
+            enforceQuota(videoId);
+        }
+    }
+
+    /**
+     * Evicts the least recently watched videos with downloaded resources, except the given one,
+     * until the downloads fit in the quota.
+     */
+    @WorkerThread
+    public synchronized void enforceQuota(long keptVideoId) {
+        final VideoDao videoDao = mDb.get().videoDao();
+        long usedBytes = videoDao.loadDownloadedBytes();
+        long limitBytes = getLimitBytes(usedBytes);
+        if (usedBytes <= limitBytes) {
+            return;
+        }
+
+        final List<VideoEntity> evicted = new ArrayList<>();
+        long evictedBytes = 0;
+        for (VideoEntity video : videoDao.loadVideosWithDownloadsByLastWatched()) {
+            if (usedBytes - evictedBytes <= limitBytes) {
+                break;
+            }
+            if (video.getId() != keptVideoId) {
+                evicted.add(video);
+                evictedBytes += video.getDownloadedBytes();
+            }
+        }
+        if (evicted.isEmpty()) {
+            return;
+        }
+
+        // The columns are cleared before the files are removed: if the process dies in between,
+        // the files are only leaked, while a video pointing to a deleted file would fail to play.
+        mDb.get().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (VideoEntity video : evicted) {
+                    videoDao.clearDownload(video.getId());
+                }
+            }
+        });
+        List<String> localUris = new ArrayList<>();
+        for (VideoEntity video : evicted) {
+            addLocalUri(localUris, video.getVideoCardImageLocalStorageUrl());
+            addLocalUri(localUris, video.getVideoBgImageLocalStorageUrl());
+            addLocalUri(localUris, video.getVideoLocalStorageUrl());
+        }
+        mFileRemover.remove(localUris);
+        mEvictedVideos += evicted.size();
+        mEvictedBytes += evictedBytes;
+        if (DEBUG) {
+            Log.d(TAG, "enforceQuota: evicted " + evicted.size() + " videos, " + this);
+        }
+    }
+
+    /**
+     * Returns the number of downloaded videos and the storage they use.
+     */
+    public LiveData<StorageUsage> getUsage() {
+        return mDb.get().videoDao().loadStorageUsage();
+    }
+
+    public long getQuotaBytes() {
+        return mQuotaBytes;
+    }
+
+    public synchronized int getEvictedVideoCount() {
+        return mEvictedVideos;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("OfflineStorageManager[quota=%d,evictedVideos=%d,evictedBytes=%d]",
+                mQuotaBytes, mEvictedVideos, mEvictedBytes);
+    }
+
+    /**
+     * Returns the quota, lowered if the storage is almost full.
+     */
+    private long getLimitBytes(long usedBytes) {
+        long usableBytes = Environment.getExternalStorageDirectory().getUsableSpace();
+        if (usableBytes == 0) {
+            // The storage is not mounted, its space is unknown.
+            return mQuotaBytes;
+        }
+        return Math.max(0, Math.min(mQuotaBytes, usedBytes + usableBytes - MIN_FREE_BYTES));
+    }
+
+    private static void addLocalUri(List<String> localUris, String localUri) {
+        if (localUri != null && !localUri.isEmpty()) {
+            localUris.add(localUri);
+        }
+    }
+
+    private static long sizeOf(String localUri) {
+        File file = toFile(localUri);
+        return file != null ? file.length() : 0;
+    }
+
+    private static void delete(String localUri) {
+        File file = toFile(localUri);
+        if (file != null && file.exists() && !file.delete()) {
+            Log.e(TAG, "Fail to delete " + file);
+        }
+    }
+
+    private static File toFile(String localUri) {
+        if (localUri == null || localUri.isEmpty()) {
+            return null;
+        }
+        String path = Uri.parse(localUri).getPath();
+        return path != null ? new File(path) : null;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Turns the text typed by the user into a full text search query.
+ */
+public final class SearchQuery {
+
+    private SearchQuery() {
+    }
+
+    /**
+     * Returns a query matching the videos containing a word starting with each word of the text,
+     * e.g. {@code "Google I/O"} gives {@code "google"* "i"* "o"*}. Words are quoted so the user
+     * cannot type search operators. Returns null if the text has no word.
+     */
+    @Nullable
+    public static String toMatchQuery(@Nullable String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean inWord = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append('"').append(text.substring(start, i).toLowerCase()).append("\"*");
+                start = -1;
+            }
+        }
+        return query.length() == 0 ? null : query.toString();
+    }
+}
@@ -17,9 +17,13 @@
 
 package androidx.leanback.leanbackshowcase.app.room.db.repo;
 
+import android.os.AsyncTask;
 import androidx.lifecycle.LiveData;
+import androidx.paging.LivePagedListBuilder;
+import androidx.paging.PagedList;
 import androidx.room.Room;
-import android.os.AsyncTask;
+import androidx.annotation.MainThread;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
@@ -30,19 +34,20 @@ import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.StorageUsage;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.network.DownloadingTaskDescription;
 import androidx.leanback.leanbackshowcase.utils.Utils;
 import android.util.Log;
 
 import com.google.gson.Gson;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
-
-import javax.inject.Inject;
-import javax.inject.Singleton;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import javax.inject.Provider;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -50,7 +55,6 @@ import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
-@Singleton
 public class VideosRepository {
 
     // For debugging purpose
@@ -64,21 +68,56 @@ public class VideosRepository {
     private static final String BACKGROUND = "background";
     private static final String VIDEO = "video";
 
-    private static VideosRepository sVideosRepository;
-
-    private AppDatabase mDb;
-    private VideoDao mVideoDao;
-    private CategoryDao mCategoryDao;
+    // Paging of the category rows. A row shows about 5 cards, so a page covers a few screens and
+    // at most MAX_PAGED_VIDEOS videos of a row are kept in memory, however large the category is.
+    private static final int PAGE_SIZE = 20;
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final int MAX_PAGED_VIDEOS = 200;
+    private static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setPrefetchDistance(PREFETCH_DISTANCE)
+            .setInitialLoadSizeHint(2 * PAGE_SIZE)
+            .setMaxSize(MAX_PAGED_VIDEOS)
+            .setEnablePlaceholders(true)
+            .build();
+
+    // Categories whose live data is kept while unobserved; a browse session visits more.
+    private static final int MAX_CACHED_CATEGORIES = 24;
+    // The first rows are the ones the user most likely opens first.
+    private static final int PREWARMED_CATEGORIES = 6;
+
+    // Number of locks the video updates are spread over, a power of 2.
+    private static final int VIDEO_LOCK_STRIPES = 16;
+
+    private static volatile VideosRepository sVideosRepository;
+
+    // Created on first access, see getDatabase().
+    private volatile AppDatabase mDb;
+    private final DatabasePopulator mPopulator;
+    private final OfflineStorageManager mOfflineStorage;
 
     // maintain the local cache so the live data can be shared among different components
-    private Map<String, LiveData<List<VideoEntity>>> mVideoEntitiesCache;
+    private final LiveDataCache<String, List<VideoEntity>> mVideoEntitiesCache;
+    private final LiveDataCache<String, PagedList<VideoEntity>> mPagedVideoEntitiesCache;
     private LiveData<List<CategoryEntity>> mCategories;
+    private final Object[] mVideoLocks = new Object[VIDEO_LOCK_STRIPES];
 
+    /**
+     * Returns the repository, creating it on first use. Safe to call from any thread; the
+     * dependency injection modules provide the same instance.
+     */
     public static VideosRepository getVideosRepositoryInstance() {
-        if (sVideosRepository == null) {
-            sVideosRepository = new VideosRepository();
+        VideosRepository repository = sVideosRepository;
+        if (repository == null) {
+            synchronized (VideosRepository.class) {
+                repository = sVideosRepository;
+                if (repository == null) {
+                    repository = new VideosRepository();
+                    sVideosRepository = repository;
+                }
+            }
         }
-        return sVideosRepository;
+        return repository;
     }
 
     /**
@@ -90,90 +129,296 @@ public class VideosRepository {
     public LiveData<List<VideoEntity>> getVideosInSameCategoryLiveData(String category) {
 
         // always try to retrive from local cache firstly
-        if (mVideoEntitiesCache.containsKey(category)) {
-            return mVideoEntitiesCache.get(category);
+        return mVideoEntitiesCache.get(category);
+    }
+
+    /**
+     * Returns the videos in the same category as a paged list wrapped in a live data. Only the
+     * pages around the accessed positions are loaded, and a database update reloads the pages
+     * around the last accessed position only.
+     *
+     * @param category category
+     * @return The paged list of videos which is wrapped in a live data.
+     */
+    public LiveData<PagedList<VideoEntity>> getPagedVideosInSameCategoryLiveData(String category) {
+        return mPagedVideoEntitiesCache.get(category);
+    }
+
+    /**
+     * Starts loading the first rows of the given categories, so they are shown as soon as they
+     * are bound.
+     */
+    @MainThread
+    public void prewarmCategories(List<CategoryEntity> categories) {
+        int count = Math.min(PREWARMED_CATEGORIES, categories.size());
+        for (int i = 0; i < count; i++) {
+            mPagedVideoEntitiesCache.prewarm(categories.get(i).getCategoryName());
+        }
+        if (DEBUG) {
+            Log.d(TAG, "prewarmCategories: " + getCacheStats());
         }
-        LiveData<List<VideoEntity>> videoEntities = mVideoDao.loadVideoInSameCateogry(category);
-        mVideoEntitiesCache.put(category, videoEntities);
-        return videoEntities;
     }
 
-    public LiveData<List<CategoryEntity>> getAllCategories() {
+    /**
+     * Returns the hit, miss and eviction counts of the category caches.
+     */
+    public String getCacheStats() {
+        return "videos " + mVideoEntitiesCache + ", paged videos " + mPagedVideoEntitiesCache;
+    }
+
+    public synchronized LiveData<List<CategoryEntity>> getAllCategories() {
 
         if (mCategories == null) {
-            mCategories = mCategoryDao.loadAllCategories();
+            mCategories = getCategoryDao().loadAllCategories();
         }
         return mCategories;
     }
 
-    public LiveData<List<VideoEntity>> getSearchResult(String query) {
-        return mVideoDao.searchVideos(query);
+    /**
+     * Returns a live data set to true once the database is populated, or to false if it could
+     * not be.
+     */
+    public LiveData<Boolean> getDatabaseReady() {
+        return mPopulator.getDatabaseReady();
+    }
+
+    /**
+     * Returns the percentage of the videos written to the database while it is populated.
+     */
+    public LiveData<Integer> getPopulationProgress() {
+        return mPopulator.getProgress();
+    }
+
+    /**
+     * Returns the videos whose title or category contain words starting with the words of the
+     * query, built by {@link SearchQuery#toMatchQuery(String)}.
+     */
+    public LiveData<List<VideoEntity>> searchVideos(String matchQuery) {
+        return getVideoDao().searchVideos(matchQuery);
     }
 
     public LiveData<VideoEntity> getVideoById(Long id) {
-        return mVideoDao.loadVideoById(id);
+        return getVideoDao().loadVideoById(id);
+    }
+
+    /**
+     * Returns the number of downloaded videos and the storage they use.
+     */
+    public LiveData<StorageUsage> getOfflineStorageUsage() {
+        return mOfflineStorage.getUsage();
+    }
+
+    /**
+     * Records that the video was watched, so its download is among the last ones evicted.
+     */
+    @WorkerThread
+    public void markWatched(VideoEntity video) {
+        getVideoDao().updateLastWatchedTime(video.getId(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the videos with the given working status, e.g. the ones being downloaded.
+     */
+    @WorkerThread
+    public List<VideoEntity> getVideosWithStatus(String status) {
+        return getVideoDao().loadVideosWithStatus(status);
     }
 
 
 
     /**
      * Helper function to access the database and update the video information in the database.
+     * Only the column of the changed field is written. Updates of the same video are serialized,
+     * updates of different videos mostly run concurrently.
      *
      * @param video    video entity
      * @param category which fields to update
      * @param value    updated value
      */
     @WorkerThread
-    public synchronized void updateDatabase(VideoEntity video, String category, String value) {
-        try {
-            mDb.beginTransaction();
-            switch (category) {
-                case VIDEO:
-                    video.setVideoLocalStorageUrl(value);
-                    break;
-                case BACKGROUND:
-                    video.setVideoBgImageLocalStorageUrl(value);
-                    break;
-                case CARD:
-                    video.setVideoCardImageLocalStorageUrl(value);
-                    break;
-                case STATUS:
-                    video.setStatus(value);
-                    break;
-                case RENTED:
-                    video.setRented(true);
-                    break;
+    public void updateDatabase(VideoEntity video, String category, String value) {
+        updateVideo(video, category, value);
+        switch (category) {
+            case VIDEO:
+            case BACKGROUND:
+            case CARD:
+                mOfflineStorage.onResourcesChanged(video.getId(), !value.isEmpty());
+                break;
+        }
+    }
+
+    /**
+     * Saves the local storage paths of the downloaded resources in one transaction, then
+     * accounts for the storage they use.
+     */
+    @WorkerThread
+    public void updateDownloadedResources(final List<DownloadingTaskDescription> tasks) {
+        final VideoDao videoDao = getVideoDao();
+
+        // The video locks are not taken in the transaction: a thread holding one may be waiting
+        // for the database, which the transaction holds.
+        getDatabase().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                for (DownloadingTaskDescription task : tasks) {
+                    applyUpdate(videoDao, task.getVideo(), task.getCategory(),
+                            task.getStoragePath());
+                }
+            }
+        });
+        Set<Long> videoIds = new LinkedHashSet<>();
+        for (DownloadingTaskDescription task : tasks) {
+            videoIds.add(task.getVideo().getId());
+        }
+        for (long videoId : videoIds) {
+            mOfflineStorage.onResourcesChanged(videoId, true);
+        }
+    }
+
+    private void updateVideo(VideoEntity video, String category, String value) {
+        VideoDao videoDao = getVideoDao();
+        synchronized (getVideoLock(video.getId())) {
+            applyUpdate(videoDao, video, category, value);
+        }
+    }
+
+    private static void applyUpdate(VideoDao videoDao, VideoEntity video, String category,
+            String value) {
+        long id = video.getId();
+        switch (category) {
+            case VIDEO:
+                video.setVideoLocalStorageUrl(value);
+                videoDao.updateVideoLocalStorageUrl(id, value);
+                break;
+            case BACKGROUND:
+                video.setVideoBgImageLocalStorageUrl(value);
+                videoDao.updateVideoBgImageLocalStorageUrl(id, value);
+                break;
+            case CARD:
+                video.setVideoCardImageLocalStorageUrl(value);
+                videoDao.updateVideoCardImageLocalStorageUrl(id, value);
+                break;
+            case STATUS:
+                video.setStatus(value);
+                videoDao.updateStatus(id, value);
+                break;
+            case RENTED:
+                video.setRented(true);
+                videoDao.updateRented(id, true);
+                break;
+        }
+    }
+
+    /**
+     * Returns the lock guarding the updates of a video. Videos share VIDEO_LOCK_STRIPES locks.
+     */
+    private Object getVideoLock(long videoId) {
+        int hash = (int) (videoId ^ (videoId >>> 32));
+        return mVideoLocks[hash & (VIDEO_LOCK_STRIPES - 1)];
+    }
+
+    @VisibleForTesting
+    VideosRepository() {
+        this(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    /**
+     * Creates the repository without touching the database, the resources or the network, so it
+     * can be injected on the main thread. The database is built on first access, and its content
+     * is loaded and written by the bootstrap, which runs on the given executor.
+     */
+    private VideosRepository(Executor bootstrapExecutor) {
+        Provider<AppDatabase> db = new Provider<AppDatabase>() {
+            @Override
+            public AppDatabase get() {
+                return getDatabase();
+            }
+        };
+        mPopulator = new DatabasePopulator(db);
+        mOfflineStorage = new OfflineStorageManager(db,
+                AppConfiguration.OFFLINE_STORAGE_QUOTA_BYTES);
+        for (int i = 0; i < VIDEO_LOCK_STRIPES; i++) {
+            mVideoLocks[i] = new Object();
+        }
+        mVideoEntitiesCache = new LiveDataCache<>(MAX_CACHED_CATEGORIES,
+                new LiveDataCache.Loader<String, List<VideoEntity>>() {
+                    @Override
+                    public LiveData<List<VideoEntity>> load(String category) {
+                        return getVideoDao().loadVideoInSameCateogry(category);
+                    }
+                });
+        mPagedVideoEntitiesCache = new LiveDataCache<>(MAX_CACHED_CATEGORIES,
+                new LiveDataCache.Loader<String, PagedList<VideoEntity>>() {
+                    @Override
+                    public LiveData<PagedList<VideoEntity>> load(String category) {
+                        return new LivePagedListBuilder<>(
+                                getVideoDao().loadPagedVideosInSameCategory(category),
+                                PAGED_LIST_CONFIG).build();
+                    }
+                });
+        bootstrapExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                bootstrap();
+            }
+        });
+    }
+
+    /**
+     * Returns the database, building it if needed. Building does not open the database, the
+     * first query does, on the thread running it.
+     */
+    private AppDatabase getDatabase() {
+        AppDatabase db = mDb;
+        if (db == null) {
+            synchronized (this) {
+                db = mDb;
+                if (db == null) {
+                    db = Room.databaseBuilder(SampleApplication.getInstance(),
+                            AppDatabase.class, AppDatabase.DATABASE_NAME)
+                            .addMigrations(AppDatabase.MIGRATION_2_3)
+                            .fallbackToDestructiveMigration()
+                            .build();
+                    mDb = db;
+                }
             }
-            mDb.videoDao().updateVideo(video);
-            mDb.setTransactionSuccessful();
-        } finally {
-            mDb.endTransaction();
         }
+        return db;
+    }
+
+    private VideoDao getVideoDao() {
+        return getDatabase().videoDao();
     }
 
-    @Inject
-    public VideosRepository() {
-        createAndPopulateDatabase();
-        mVideoDao = mDb.videoDao();
-        mCategoryDao = mDb.categoryDao();
-        mVideoEntitiesCache = new HashMap<>();
+    private CategoryDao getCategoryDao() {
+        return getDatabase().categoryDao();
     }
 
-    private void createAndPopulateDatabase() {
-        mDb = Room.databaseBuilder(SampleApplication.getInstance(),
-                AppDatabase.class, AppDatabase.DATABASE_NAME).build();
+    /**
+     * Builds the database and loads the content to populate it with. The readiness is reported
+     * through {@link #getDatabaseReady()}.
+     */
+    @WorkerThread
+    private void bootstrap() {
+        long startTime = System.currentTimeMillis();
+        getDatabase();
 
         // insert contents into database
         try {
             String url =
                     "https://storage.googleapis.com/android-tv/";
-            initializeDb(mDb, url);
-        } catch (IOException e) {
-            e.printStackTrace();
+            initializeDb(url);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Fail to load the content", e);
+            mPopulator.onContentUnavailable();
+        }
+        if (DEBUG) {
+            Log.d(TAG, "bootstrap: " + (System.currentTimeMillis() - startTime) + "ms");
         }
     }
 
-    private void initializeDb(AppDatabase db, String url) throws IOException {
+    @WorkerThread
+    private void initializeDb(String url) throws IOException {
 
         // json data
         String json;
@@ -190,18 +435,19 @@ public class VideosRepository {
             Gson gson = new Gson();
             VideosWithGoogleTag videosWithGoogleTag = gson.fromJson(json,
                     VideosWithGoogleTag.class);
-            populateDatabase(videosWithGoogleTag,db);
+            mPopulator.populate(videosWithGoogleTag);
         } else {
-            buildDatabase(db, url);
+            buildDatabase(mPopulator, url);
         }
     }
 
     /**
      * Takes the contents of a JSON object and populates the database
      *
-     * @param db Room database.
+     * @param populator Populator of the Room database.
      */
-    private static void buildDatabase(final AppDatabase db, String url) throws IOException {
+    private static void buildDatabase(final DatabasePopulator populator, String url)
+            throws IOException {
         Retrofit retrofit = new Retrofit
                 .Builder()
                 .baseUrl(url)
@@ -216,61 +462,18 @@ public class VideosRepository {
                 VideosWithGoogleTag videosWithGoogleTag = response.body();
                 if (videosWithGoogleTag == null) {
                     Log.d(TAG, "onResponse: result is null");
+                    populator.onContentUnavailable();
                     return;
                 }
-                populateDatabase(videosWithGoogleTag, db);
+                populator.populate(videosWithGoogleTag);
             }
 
             @Override
             public void onFailure(Call<VideosWithGoogleTag> call, Throwable t) {
                 Log.d(TAG, "Fail to download the content");
+                populator.onContentUnavailable();
             }
         });
 
     }
-
-    private static void populateDatabase(VideosWithGoogleTag videosWithGoogleTag, final AppDatabase db) {
-        for (final VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory :
-                videosWithGoogleTag.getAllResources()) {
-
-            // create category table
-            final CategoryEntity categoryEntity = new CategoryEntity();
-            categoryEntity.setCategoryName(videosGroupByCategory.getCategory());
-
-            // create video table with customization
-            postProcessing(videosGroupByCategory);
-
-            new AsyncTask<Void, Void, Void>() {
-                @Override
-                protected Void doInBackground(Void... voids) {
-                    try {
-                        db.beginTransaction();
-                        db.categoryDao().insertCategory(categoryEntity);
-                        db.videoDao().insertAllVideos(videosGroupByCategory.getVideos());
-                        db.setTransactionSuccessful();
-                    } finally {
-                        db.endTransaction();
-                    }
-                    return null;
-                }
-            }.execute();
-
-        }
-    }
-
-    /**
-     * Helper function to make some customization on raw data
-     */
-    private static void postProcessing(VideosWithGoogleTag.VideosGroupByCategory videosGroupByCategory) {
-        for (VideoEntity each : videosGroupByCategory.getVideos()) {
-            each.setCategory(videosGroupByCategory.getCategory());
-            each.setVideoLocalStorageUrl("");
-            each.setVideoBgImageLocalStorageUrl("");
-            each.setVideoCardImageLocalStorageUrl("");
-            each.setVideoUrl(each.getVideoUrls().get(0));
-            each.setRented(false);
-            each.setStatus("");
-            each.setTrailerVideoUrl("https://storage.googleapis.com/android-tv/Sample%20videos/Google%2B/Google%2B_%20Say%20more%20with%20Hangouts.mp4");
-        }
-    }
 }
@@ -78,6 +78,9 @@ public class AdapterModule {
     @PerFragment
     @Provides
     ListAdapter<VideoEntity> provideRelatedAdapter(PresenterSelector mps) {
-        return new ListAdapter<>(mps.getPresenter(new VideoEntity()));
+        ListAdapter<VideoEntity> relatedAdapter =
+                new ListAdapter<>(mps.getPresenter(new VideoEntity()));
+        relatedAdapter.setItemCallback(LiveDataRowPresenter.VIDEO_LIST_ITEM_CALLBACK);
+        return relatedAdapter;
     }
 }
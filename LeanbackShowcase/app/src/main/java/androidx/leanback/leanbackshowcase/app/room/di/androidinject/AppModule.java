@@ -20,6 +20,7 @@ import androidx.room.Room;
 import androidx.leanback.leanbackshowcase.app.room.db.AppDatabase;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.CategoryDao;
 import androidx.leanback.leanbackshowcase.app.room.db.dao.VideoDao;
+import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
 import androidx.leanback.leanbackshowcase.app.room.di.androidinjectorannotation.LiveDataOverviewActivitySubcomponent;
 import androidx.leanback.leanbackshowcase.app.room.di.viewmodel.ViewModelModule;
 import dagger.Module;
@@ -33,7 +34,10 @@ public class AppModule {
   @Singleton
   @Provides
   AppDatabase provideAppDatabase(Application app) {
-    return Room.databaseBuilder(app, AppDatabase.class, AppDatabase.DATABASE_NAME).build();
+    return Room.databaseBuilder(app, AppDatabase.class, AppDatabase.DATABASE_NAME)
+        .addMigrations(AppDatabase.MIGRATION_2_3)
+        .fallbackToDestructiveMigration()
+        .build();
   }
 
   @Singleton
@@ -47,4 +51,10 @@ public class AppModule {
   VideoDao provideVideoDao(AppDatabase db) {
     return db.videoDao();
   }
+
+  @Singleton
+  @Provides
+  VideosRepository provideVideosRepository() {
+    return VideosRepository.getVideosRepositoryInstance();
+  }
 }
@@ -68,6 +68,10 @@ public class ListenerModule {
             @Override
             public void onItemClicked(Presenter.ViewHolder itemViewHolder, Object item,
                     RowPresenter.ViewHolder rowViewHolder, Row row) {
+                // Placeholder of a page which is not loaded yet
+                if (item == null) {
+                    return;
+                }
                 Intent intent;
                 Long videoItemId = ((VideoEntity) item).getId();
                 intent = new Intent(currentActivity, LiveDataDetailActivity.class);
@@ -167,6 +171,9 @@ public class ListenerModule {
             @Override
             public void onItemSelected(Presenter.ViewHolder itemViewHolder, Object item,
                     RowPresenter.ViewHolder rowViewHolder, Row row) {
+                if (item == null) {
+                    return;
+                }
                 VideoEntity selectedVideo = (VideoEntity) item;
                 RunnableClass backgroundRunnable = new RunnableClass(selectedVideo, activity,
                         metrics, backgroundManager, defaultPlaceHolder, finalDrawable);
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Observer;
+
+/**
+ * The network and storage permission state of the process, for the components which only need
+ * its current value, e.g. the popup menu of each video card.
+ *
+ * <p>The state observes {@link NetworkLiveData} and {@link PermissionLiveData} once for the
+ * life of the process, so reading it costs no observer, and a connectivity change is dispatched
+ * to a single observer however many cards were bound.
+ */
+public class ConnectivityState {
+
+    // The state should exist as long as the application is running, like the live data it
+    // observes.
+    private static ConnectivityState sConnectivityState;
+
+    // Unknown until the network live data reports it.
+    private Boolean mNetworkAvailable;
+    private boolean mWritePermissionGranted;
+
+    @MainThread
+    public static ConnectivityState get(Context context) {
+        if (sConnectivityState == null) {
+            sConnectivityState = new ConnectivityState(context.getApplicationContext());
+        }
+        return sConnectivityState;
+    }
+
+    private ConnectivityState(Context context) {
+        mWritePermissionGranted = ContextCompat.checkSelfPermission(context,
+                Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
+        NetworkLiveData.sync(context).observeForever(new Observer<Boolean>() {
+            @Override
+            public void onChanged(@Nullable Boolean isNetworkAvailable) {
+                mNetworkAvailable = isNetworkAvailable;
+            }
+        });
+        PermissionLiveData.get().observeForever(new Observer<Boolean>() {
+            @Override
+            public void onChanged(@Nullable Boolean isGranted) {
+                if (isGranted != null) {
+                    mWritePermissionGranted = isGranted;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns false once the network is reported unavailable. Assumed available until the
+     * first report, so a download can be requested before it arrives.
+     */
+    @MainThread
+    public boolean isNetworkAvailable() {
+        return mNetworkAvailable == null || mNetworkAvailable;
+    }
+
+    @MainThread
+    public boolean isWritePermissionGranted() {
+        return mWritePermissionGranted;
+    }
+}
@@ -18,25 +18,52 @@ package androidx.leanback.leanbackshowcase.app.room.network;
 
 import android.app.DownloadManager;
 
+import androidx.annotation.MainThread;
+import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
+import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
 import androidx.lifecycle.LifecycleObserver;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Receives the completed downloads and hands them to a {@link DownloadCompletionWorker}, so the
+ * download manager is queried and the database updated off the main thread. The listeners are
+ * notified on the main thread once the tasks are saved.
+ */
 public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
         implements LifecycleObserver{
 
+    // For debugging purpose
+    private static final boolean DEBUG = false;
+    private static final String TAG = "DownloadReceiver";
+
+    // resource category
+    private static final String VIDEO = "video";
+    private static final String BACKGROUND = "background";
+    private static final String CARD = "card";
+
     // singleton design pattern
     private static DownloadCompleteBroadcastReceiver sReceiver;
 
-    private List<DownloadCompleteListener> downloadingCompletionListener;
+    private final List<DownloadCompleteListener> downloadingCompletionListener;
+    private final DownloadCompletionWorker mWorker;
 
     public interface DownloadCompleteListener {
+
+        /**
+         * Called on the main thread once the local storage path of the resource is saved.
+         */
+        @MainThread
         void onDownloadingCompleted(DownloadingTaskDescription desc);
     }
 
@@ -44,42 +71,35 @@ public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
         downloadingCompletionListener.add(listener);
     }
 
+    public void unregisterListener(DownloadCompleteListener listener) {
+        downloadingCompletionListener.remove(listener);
+    }
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        final DownloadManager dm = (DownloadManager) context.getSystemService(
-                Context.DOWNLOAD_SERVICE);
-        Long downloadingTaskId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1L);
-        if (NetworkManagerUtil.downloadingTaskQueue.containsKey(downloadingTaskId)) {
-            DownloadManager.Query query = new DownloadManager.Query();
-            query.setFilterById(downloadingTaskId);
-            Cursor cursor = dm.query(query);
-
-            // retrieve downloaded content's information through download manager.
-            if (!cursor.moveToFirst()) {
-                return;
-            }
-
-            if (cursor.getInt(cursor.getColumnIndex(DownloadManager.COLUMN_STATUS))
-                    != DownloadManager.STATUS_SUCCESSFUL) {
-                return;
-            }
-
-            String path = cursor.getString(
-                    cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI));
-
-            final DownloadingTaskDescription desc =
-                    NetworkManagerUtil.downloadingTaskQueue.get(downloadingTaskId);
+        long downloadingTaskId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, -1L);
+        if (DownloadScheduler.getInstance().isRunning(downloadingTaskId)) {
+            mWorker.onDownloadCompleted(downloadingTaskId);
+        }
+    }
 
-            // update local storage path
-            desc.setStoragePath(path);
+    /**
+     * Saves and reports the tasks the scheduler completed without a broadcast, e.g. the downloads
+     * which finished while the process was dead.
+     */
+    void onTasksCompleted(List<DownloadingTaskDescription> descs) {
+        mWorker.onTasksCompleted(descs);
+    }
 
-            for (final DownloadCompleteListener listener: downloadingCompletionListener) {
-                        listener.onDownloadingCompleted(desc);
-            }
-        }
+    /**
+     * Returns the number of completions processed, and how long they took to reach the
+     * listeners.
+     */
+    public DownloadCompletionWorker.Metrics getCompletionMetrics() {
+        return mWorker.getMetrics();
     }
 
-    public static DownloadCompleteBroadcastReceiver getInstance() {
+    public static synchronized DownloadCompleteBroadcastReceiver getInstance() {
         if (sReceiver == null) {
             sReceiver = new DownloadCompleteBroadcastReceiver();
         }
@@ -87,6 +107,76 @@ public class DownloadCompleteBroadcastReceiver extends BroadcastReceiver
     }
 
     private DownloadCompleteBroadcastReceiver() {
-        downloadingCompletionListener = new ArrayList<>();
+        downloadingCompletionListener = new CopyOnWriteArrayList<>();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        DownloadScheduler scheduler = DownloadScheduler.getInstance();
+        mWorker = new DownloadCompletionWorker(scheduler, scheduler.getDownloader(),
+                new DownloadCompletionWorker.Store() {
+                    @Override
+                    public void saveCompletedTasks(List<DownloadingTaskDescription> descs) {
+                        if (AppConfiguration.IS_NETWORK_LATENCY_ENABLED) {
+                            addLatency(descs);
+                        }
+
+                        // update local storage paths in one transaction
+                        VideosRepository.getVideosRepositoryInstance()
+                                .updateDownloadedResources(descs);
+                    }
+                },
+                Executors.newSingleThreadExecutor(),
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        mainHandler.post(command);
+                    }
+                },
+                new DownloadCompletionWorker.Callback() {
+                    @Override
+                    public void onTasksCompleted(List<DownloadingTaskDescription> descs) {
+                        for (DownloadingTaskDescription desc : descs) {
+                            for (DownloadCompleteListener listener
+                                    : downloadingCompletionListener) {
+                                listener.onDownloadingCompleted(desc);
+                            }
+                        }
+                        if (DEBUG) {
+                            Log.d(TAG, "onTasksCompleted: " + descs.size() + " tasks, "
+                                    + mWorker.getMetrics());
+                        }
+                    }
+
+                    @Override
+                    public void onSaveFailed(List<DownloadingTaskDescription> descs,
+                            RuntimeException e) {
+                        Log.e(TAG, "Fail to save " + descs.size() + " completed tasks", e);
+                    }
+                });
+    }
+
+    /**
+     * Simulates the network latency once per batch, the longest of its resources.
+     */
+    private static void addLatency(List<DownloadingTaskDescription> descs) {
+        long ms = 0;
+        for (DownloadingTaskDescription desc : descs) {
+            switch (desc.getCategory()) {
+                case VIDEO:
+                    ms = Math.max(ms, 3000L);
+                    break;
+                case BACKGROUND:
+                    ms = Math.max(ms, 2000L);
+                    break;
+                case CARD:
+                    ms = Math.max(ms, 1000L);
+                    break;
+            }
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            if (DEBUG) {
+                Log.e(TAG, "addLatency: ", e);
+            }
+        }
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processes the completed downloads on a worker thread.
+ *
+ * <p>The completions received while the worker is busy are processed as one batch: the
+ * downloader is queried once for all of them, the scheduler is told which ones succeeded, the
+ * completed tasks are saved together, then the callback gets the saved tasks on the main thread.
+ * The latency is measured from the completion being received to the callback. A batch whose
+ * tasks could not be saved is counted as failed and reported to the callback instead.
+ */
+public class DownloadCompletionWorker {
+
+    /**
+     * Saves the completed tasks, e.g. in the database.
+     */
+    interface Store {
+        @WorkerThread
+        void saveCompletedTasks(List<DownloadingTaskDescription> tasks);
+    }
+
+    interface Callback {
+        @MainThread
+        void onTasksCompleted(List<DownloadingTaskDescription> tasks);
+
+        /**
+         * Called instead of {@link #onTasksCompleted} when the tasks could not be saved.
+         */
+        @MainThread
+        void onSaveFailed(List<DownloadingTaskDescription> tasks, RuntimeException e);
+    }
+
+    /**
+     * Snapshot of the completions processed so far.
+     */
+    public static final class Metrics {
+        public final int completions;
+        public final int batches;
+        public final int completedTasks;
+        public final int failedBatches;
+        public final long averageLatencyMs;
+        public final long maxLatencyMs;
+
+        Metrics(int completions, int batches, int completedTasks, int failedBatches,
+                long averageLatencyMs, long maxLatencyMs) {
+            this.completions = completions;
+            this.batches = batches;
+            this.completedTasks = completedTasks;
+            this.failedBatches = failedBatches;
+            this.averageLatencyMs = averageLatencyMs;
+            this.maxLatencyMs = maxLatencyMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("DownloadCompletionWorker.Metrics[completions=%d,batches=%d,"
+                            + "tasks=%d,failedBatches=%d,averageLatencyMs=%d,maxLatencyMs=%d]",
+                    completions, batches, completedTasks, failedBatches, averageLatencyMs,
+                    maxLatencyMs);
+        }
+    }
+
+    private final DownloadScheduler mScheduler;
+    private final DownloadScheduler.Downloader mDownloader;
+    private final Store mStore;
+    private final Executor mWorkerExecutor;
+    private final Executor mMainExecutor;
+    private final Callback mCallback;
+
+    private final Runnable mProcessBatch = new Runnable() {
+        @Override
+        public void run() {
+            processBatch();
+        }
+    };
+
+    // Guarded by this.
+    private List<Long> mPendingIds = new ArrayList<>();
+    private List<DownloadingTaskDescription> mPendingTasks = new ArrayList<>();
+    private List<Long> mPendingReceivedNs = new ArrayList<>();
+    private boolean mBatchScheduled;
+    private int mCompletions;
+    private int mBatches;
+    private int mCompletedTasks;
+    private int mFailedBatches;
+    private long mTotalLatencyNs;
+    private long mMaxLatencyNs;
+
+    /**
+     * @param workerExecutor Runs the batches, one at a time.
+     */
+    DownloadCompletionWorker(DownloadScheduler scheduler, DownloadScheduler.Downloader downloader,
+            Store store, Executor workerExecutor, Executor mainExecutor, Callback callback) {
+        mScheduler = scheduler;
+        mDownloader = downloader;
+        mStore = store;
+        mWorkerExecutor = workerExecutor;
+        mMainExecutor = mainExecutor;
+        mCallback = callback;
+    }
+
+    /**
+     * Queues the completion of a download started by the scheduler.
+     */
+    void onDownloadCompleted(long downloadId) {
+        synchronized (this) {
+            mPendingIds.add(downloadId);
+            mPendingReceivedNs.add(System.nanoTime());
+            scheduleBatchLocked();
+        }
+    }
+
+    /**
+     * Queues tasks the scheduler already completed, e.g. the downloads which finished while the
+     * process was dead.
+     */
+    void onTasksCompleted(List<DownloadingTaskDescription> tasks) {
+        synchronized (this) {
+            mPendingTasks.addAll(tasks);
+            mPendingReceivedNs.add(System.nanoTime());
+            scheduleBatchLocked();
+        }
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(mCompletions, mBatches, mCompletedTasks, mFailedBatches,
+                mCompletions == 0 ? 0
+                        : TimeUnit.NANOSECONDS.toMillis(mTotalLatencyNs / mCompletions),
+                TimeUnit.NANOSECONDS.toMillis(mMaxLatencyNs));
+    }
+
+    private void scheduleBatchLocked() {
+        if (!mBatchScheduled) {
+            mBatchScheduled = true;
+            mWorkerExecutor.execute(mProcessBatch);
+        }
+    }
+
+    @WorkerThread
+    private void processBatch() {
+        List<Long> ids;
+        final List<DownloadingTaskDescription> tasks;
+        final List<Long> receivedNs;
+        synchronized (this) {
+            ids = mPendingIds;
+            tasks = mPendingTasks;
+            receivedNs = mPendingReceivedNs;
+            mPendingIds = new ArrayList<>();
+            mPendingTasks = new ArrayList<>();
+            mPendingReceivedNs = new ArrayList<>();
+
+            // The completions received from now on are processed by the next batch.
+            mBatchScheduled = false;
+        }
+
+        if (!ids.isEmpty()) {
+            long[] downloadIds = new long[ids.size()];
+            for (int i = 0; i < downloadIds.length; i++) {
+                downloadIds[i] = ids.get(i);
+            }
+            Map<Long, DownloadScheduler.Download> downloads = new HashMap<>();
+            for (DownloadScheduler.Download download
+                    : mDownloader.queryDownloadsById(downloadIds)) {
+                downloads.put(download.mId, download);
+            }
+
+            // A download is gone if the user cancelled it.
+            for (long downloadId : downloadIds) {
+                DownloadScheduler.Download download = downloads.get(downloadId);
+                if (download != null && download.mSuccessful) {
+                    tasks.addAll(mScheduler.onDownloadFinished(downloadId, true,
+                            download.mLocalUri));
+                } else {
+                    mScheduler.onDownloadFinished(downloadId, false, null);
+                }
+            }
+        }
+        if (!tasks.isEmpty()) {
+            try {
+                mStore.saveCompletedTasks(tasks);
+            } catch (final RuntimeException e) {
+                // The files are downloaded but the videos do not point to them, the scheduler
+                // already counted them as completed.
+                onBatchFailed();
+                mMainExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        mCallback.onSaveFailed(tasks, e);
+                    }
+                });
+                return;
+            }
+        }
+
+        mMainExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!tasks.isEmpty()) {
+                    mCallback.onTasksCompleted(tasks);
+                }
+                onBatchDelivered(receivedNs, tasks.size());
+            }
+        });
+    }
+
+    private synchronized void onBatchFailed() {
+        mFailedBatches++;
+    }
+
+    private synchronized void onBatchDelivered(List<Long> receivedNs, int completedTasks) {
+        long now = System.nanoTime();
+        for (long received : receivedNs) {
+            long latencyNs = now - received;
+            mTotalLatencyNs += latencyNs;
+            mMaxLatencyNs = Math.max(mMaxLatencyNs, latencyNs);
+        }
+        mCompletions += receivedNs.size();
+        mCompletedTasks += completedTasks;
+        mBatches++;
+    }
+}
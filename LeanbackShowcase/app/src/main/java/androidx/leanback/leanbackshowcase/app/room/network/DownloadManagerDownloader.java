@@ -18,21 +18,22 @@ package androidx.leanback.leanbackshowcase.app.room.network;
 
 import android.app.DownloadManager;
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
-import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
-import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.annotation.WorkerThread;
 import android.util.Log;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
- * The utility class to simpify the network operation.
+ * Downloads the resources of the videos through the system download manager, which keeps
+ * downloading when the process dies.
  */
-public class NetworkManagerUtil {
+public class DownloadManagerDownloader implements DownloadScheduler.Downloader {
 
     // resource category
     private static final String VIDEO = "video";
@@ -41,7 +42,7 @@ public class NetworkManagerUtil {
 
     // For debugging purpose.
     private static final Boolean DEBUG = false;
-    private static final String TAG = "NetworkManagerUtil";
+    private static final String TAG = "ManagerDownloader";
 
     // Prompt Notification.
     private static final String DOWNLOAD_VIDEO = "Download Video";
@@ -52,38 +53,25 @@ public class NetworkManagerUtil {
     private static final String DOWNLOAD_CARD_IMAGE = "Download card image";
     private static final String DOWNLOADING_CARD_IMAGE_FILE = "Downloading card image file";
     public static final String SUFFIX_SEPARATOR = ".";
-    // A queue which maintain all downloading task
-    final static Map<Long, DownloadingTaskDescription> downloadingTaskQueue = new HashMap<>();
-
-    public static void download(VideoEntity mSelectedVideo) {
-        String videoUrl = mSelectedVideo.getVideoUrl();
-        String bgUrl = mSelectedVideo.getBgImageUrl();
-        String cardUrl = mSelectedVideo.getCardImageUrl();
-
-        String[] downloadUrls = new String[]{videoUrl, bgUrl, cardUrl};
-        String[] categories = new String[]{VIDEO, BACKGROUND, CARD};
-
-        // download all related resources
-        for (int i = 0; i < downloadUrls.length; i++) {
-            Long downloadManagerGeneratedTaskId = downloadFromNetworkHelper(mSelectedVideo.getId(),
-                    downloadUrls[i], categories[i]);
-            downloadingTaskQueue.put(downloadManagerGeneratedTaskId, new DownloadingTaskDescription(
-                    mSelectedVideo, categories[i]
-            ));
-        }
+
+    private final DownloadManager mDownloadManager;
+
+    public DownloadManagerDownloader(Context context) {
+        mDownloadManager = (DownloadManager) context.getApplicationContext().getSystemService(
+                Context.DOWNLOAD_SERVICE);
     }
 
     /**
-     * The helper function to submit actual download task to download manager.
+     * Submits the actual download task to download manager.
      *
-     * @param videoId        The id of this video. Used to name the resource stored in local
-     *                       storage.
      * @param downloadingUrl The url of the resource for downloading.
      * @param category       The resource category.
+     * @param videoId        The id of this video. Used to name the resource stored in local
+     *                       storage.
      * @return Download manager generated id. (Return 0 when error occurs)
      */
-    private static long downloadFromNetworkHelper(long videoId, String downloadingUrl,
-                                                  String category) {
+    @Override
+    public long enqueue(String downloadingUrl, String category, long videoId) {
 
         // Currently we only support downloading for the following format.
         String[] allowedTypes = {"png", "jpg", "jpeg", "gif", "webp", "mp4"};
@@ -148,11 +136,52 @@ public class NetworkManagerUtil {
                 mediaName + videoId + SUFFIX_SEPARATOR + suffix);
 
         // submit the downloading task to download manager.
-        final DownloadManager dm =
-                (DownloadManager) SampleApplication.getInstance().getSystemService(
-                        Context.DOWNLOAD_SERVICE);
-        final long DownloadManagerGeneratedId = dm.enqueue(request);
+        return mDownloadManager.enqueue(request);
+    }
+
+    @Override
+    @WorkerThread
+    public List<DownloadScheduler.Download> queryDownloads() {
+        DownloadManager.Query query = new DownloadManager.Query();
+        query.setFilterByStatus(DownloadManager.STATUS_PENDING | DownloadManager.STATUS_RUNNING
+                | DownloadManager.STATUS_PAUSED | DownloadManager.STATUS_SUCCESSFUL);
+        return query(query);
+    }
+
+    @Override
+    @WorkerThread
+    public List<DownloadScheduler.Download> queryDownloadsById(long... ids) {
+        DownloadManager.Query query = new DownloadManager.Query();
+        query.setFilterById(ids);
+        return query(query);
+    }
+
+    @Override
+    @WorkerThread
+    public void remove(long... ids) {
+        mDownloadManager.remove(ids);
+    }
 
-        return DownloadManagerGeneratedId;
+    private List<DownloadScheduler.Download> query(DownloadManager.Query query) {
+        List<DownloadScheduler.Download> downloads = new ArrayList<>();
+        Cursor cursor = mDownloadManager.query(query);
+        if (cursor == null) {
+            return downloads;
+        }
+        try {
+            int idIndex = cursor.getColumnIndex(DownloadManager.COLUMN_ID);
+            int uriIndex = cursor.getColumnIndex(DownloadManager.COLUMN_URI);
+            int statusIndex = cursor.getColumnIndex(DownloadManager.COLUMN_STATUS);
+            int localUriIndex = cursor.getColumnIndex(DownloadManager.COLUMN_LOCAL_URI);
+            while (cursor.moveToNext()) {
+                downloads.add(new DownloadScheduler.Download(cursor.getLong(idIndex),
+                        cursor.getString(uriIndex),
+                        cursor.getInt(statusIndex) == DownloadManager.STATUS_SUCCESSFUL,
+                        cursor.getString(localUriIndex)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return downloads;
     }
 }
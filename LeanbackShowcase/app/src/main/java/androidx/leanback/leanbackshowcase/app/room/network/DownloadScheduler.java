@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import android.os.AsyncTask;
+import android.util.Log;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.leanback.leanbackshowcase.app.room.controller.app.SampleApplication;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules the downloads of the videos' resources.
+ *
+ * <p>Each video is a chain of jobs: its card image, then its background image, then the video
+ * itself, so the small images are shown first. The jobs ready to start are ordered by priority,
+ * then images before videos, then in the order they were scheduled, and at most
+ * {@link #MAX_CONCURRENT_DOWNLOADS} of them are given to the {@link Downloader} at once. Batch
+ * downloads do not swamp the network, and a video the user asks for starts before a batch
+ * scheduled earlier.
+ *
+ * <p>A url is downloaded once: scheduling a video already scheduled, or a resource whose url is
+ * already being downloaded, joins the existing job.
+ *
+ * <p>The videos being downloaded are persisted by their downloading status in the database.
+ * After the process died, {@link #resumeAsync()} schedules them again, adopting the downloads the
+ * downloader still has instead of starting them again.
+ */
+public class DownloadScheduler {
+
+    // For debugging purpose
+    private static final boolean DEBUG = false;
+    private static final String TAG = "DownloadScheduler";
+
+    // Downloads requested by the user.
+    public static final int PRIORITY_HIGH = 0;
+    // Batch downloads and downloads resumed after the process died.
+    public static final int PRIORITY_LOW = 1;
+
+    // Enough to keep the network busy, few enough to let a new high priority download start soon.
+    static final int MAX_CONCURRENT_DOWNLOADS = 3;
+
+    // Resource category
+    static final String CARD = "card";
+    static final String BACKGROUND = "background";
+    static final String VIDEO = "video";
+
+    // The job graph of a video, smallest resource first.
+    private static final String[] STEPS = {CARD, BACKGROUND, VIDEO};
+
+    private static final String DOWNLOADING = "downloading";
+
+    private static volatile DownloadScheduler sDownloadScheduler;
+
+    /**
+     * Downloads the resources, e.g. through the system DownloadManager.
+     */
+    public interface Downloader {
+
+        /**
+         * Starts downloading the url.
+         *
+         * @return The id of the download, or 0 if it cannot be downloaded.
+         */
+        long enqueue(String url, String category, long videoId);
+
+        /**
+         * Returns the downloads which are pending, running or successful, including the ones
+         * started by a previous process.
+         */
+        @WorkerThread
+        List<Download> queryDownloads();
+
+        /**
+         * Returns the downloads with the given ids, whatever their status. The ids unknown by
+         * the downloader, e.g. the downloads cancelled by the user, are missing.
+         */
+        @WorkerThread
+        List<Download> queryDownloadsById(long... ids);
+
+        /**
+         * Forgets the downloads and deletes their files.
+         */
+        @WorkerThread
+        void remove(long... ids);
+    }
+
+    /**
+     * A download known by the {@link Downloader}.
+     */
+    public static class Download {
+        final long mId;
+        final String mUrl;
+        final boolean mSuccessful;
+        final String mLocalUri;
+
+        public Download(long id, String url, boolean successful, @Nullable String localUri) {
+            mId = id;
+            mUrl = url;
+            mSuccessful = successful;
+            mLocalUri = localUri;
+        }
+    }
+
+    public interface Listener {
+        void onMetricsChanged(Metrics metrics);
+    }
+
+    /**
+     * Snapshot of the state of the scheduler.
+     */
+    public static final class Metrics {
+        public final int queuedJobs;
+        public final int runningJobs;
+        public final int pendingVideos;
+        public final int completedJobs;
+        public final int failedJobs;
+        public final int completedVideos;
+        public final int deduplicatedJobs;
+        public final long averageJobMs;
+
+        Metrics(int queuedJobs, int runningJobs, int pendingVideos, int completedJobs,
+                int failedJobs, int completedVideos, int deduplicatedJobs, long averageJobMs) {
+            this.queuedJobs = queuedJobs;
+            this.runningJobs = runningJobs;
+            this.pendingVideos = pendingVideos;
+            this.completedJobs = completedJobs;
+            this.failedJobs = failedJobs;
+            this.completedVideos = completedVideos;
+            this.deduplicatedJobs = deduplicatedJobs;
+            this.averageJobMs = averageJobMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("DownloadScheduler.Metrics[queued=%d,running=%d,videos=%d,"
+                            + "completed=%d,failed=%d,completedVideos=%d,deduplicated=%d,"
+                            + "averageJobMs=%d]", queuedJobs, runningJobs, pendingVideos,
+                    completedJobs, failedJobs, completedVideos, deduplicatedJobs, averageJobMs);
+        }
+    }
+
+    /**
+     * The download of a url, shared by all the videos needing it.
+     */
+    private static class Job {
+        final String mUrl;
+        final String mCategory;
+        final int mStep;
+        final long mSequence;
+        int mPriority;
+        final List<DownloadingTaskDescription> mTasks = new ArrayList<>();
+        long mDownloadId;
+        long mStartTime;
+
+        Job(String url, String category, int step, int priority, long sequence) {
+            mUrl = url;
+            mCategory = category;
+            mStep = step;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+    }
+
+    /**
+     * The steps of a video which are not downloaded yet.
+     */
+    private static class VideoDownload {
+        final VideoEntity mVideo;
+        final ArrayDeque<Integer> mRemainingSteps = new ArrayDeque<>();
+        int mPriority;
+        Job mCurrentJob;
+
+        VideoDownload(VideoEntity video, int priority) {
+            mVideo = video;
+            mPriority = priority;
+        }
+    }
+
+    private static final Comparator<Job> JOB_ORDER = new Comparator<Job>() {
+        @Override
+        public int compare(Job o1, Job o2) {
+            if (o1.mPriority != o2.mPriority) {
+                return o1.mPriority < o2.mPriority ? -1 : 1;
+            }
+            if (o1.mStep != o2.mStep) {
+                return o1.mStep < o2.mStep ? -1 : 1;
+            }
+            return o1.mSequence < o2.mSequence ? -1 : (o1.mSequence == o2.mSequence ? 0 : 1);
+        }
+    };
+
+    private final Downloader mDownloader;
+    private final int mMaxConcurrentDownloads;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean mResumed = new AtomicBoolean();
+
+    // Guarded by this.
+    private final Map<Long, VideoDownload> mVideos = new HashMap<>();
+    private final Map<String, Job> mJobsByUrl = new HashMap<>();
+    private final PriorityQueue<Job> mQueuedJobs = new PriorityQueue<>(16, JOB_ORDER);
+    private final Map<Long, Job> mRunningJobs = new HashMap<>();
+    private long mSequence;
+    private int mCompletedJobs;
+    private int mFailedJobs;
+    private int mCompletedVideos;
+    private int mDeduplicatedJobs;
+    private long mTotalJobMs;
+
+    private LiveData<Metrics> mMetricsLiveData;
+
+    public static DownloadScheduler getInstance() {
+        DownloadScheduler scheduler = sDownloadScheduler;
+        if (scheduler == null) {
+            synchronized (DownloadScheduler.class) {
+                scheduler = sDownloadScheduler;
+                if (scheduler == null) {
+                    scheduler = new DownloadScheduler(
+                            new DownloadManagerDownloader(SampleApplication.getInstance()),
+                            MAX_CONCURRENT_DOWNLOADS);
+                    sDownloadScheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    DownloadScheduler(Downloader downloader, int maxConcurrentDownloads) {
+        mDownloader = downloader;
+        mMaxConcurrentDownloads = maxConcurrentDownloads;
+    }
+
+    /**
+     * Schedules the download of the resources of the video which are not downloaded yet.
+     *
+     * @return false if the video is already scheduled, in which case its priority is raised if
+     * needed, or if it has nothing to download.
+     */
+    public boolean schedule(VideoEntity video, int priority) {
+        boolean scheduled;
+        synchronized (this) {
+            scheduled = scheduleLocked(video, priority);
+            dispatchLocked();
+        }
+        notifyMetricsChanged();
+        return scheduled;
+    }
+
+    /**
+     * Reports the end of a download.
+     *
+     * @return The tasks completed by the download, one per video needing it, with their storage
+     * path set. Empty if the download failed or was not scheduled.
+     */
+    public List<DownloadingTaskDescription> onDownloadFinished(long downloadId,
+            boolean successful, @Nullable String localUri) {
+        List<DownloadingTaskDescription> completedTasks;
+        synchronized (this) {
+            completedTasks = finishLocked(downloadId, successful, localUri);
+            dispatchLocked();
+        }
+        notifyMetricsChanged();
+        return completedTasks;
+    }
+
+    Downloader getDownloader() {
+        return mDownloader;
+    }
+
+    /**
+     * Returns true if the download was started by the scheduler and is not finished.
+     */
+    public synchronized boolean isRunning(long downloadId) {
+        return mRunningJobs.containsKey(downloadId);
+    }
+
+    /**
+     * Schedules the videos which were being downloaded when the process died. Runs once per
+     * process.
+     */
+    @MainThread
+    public void resumeAsync() {
+        if (!mResumed.compareAndSet(false, true)) {
+            return;
+        }
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<VideoEntity> videos = VideosRepository.getVideosRepositoryInstance()
+                        .getVideosWithStatus(DOWNLOADING);
+                List<DownloadingTaskDescription> completedTasks =
+                        resume(videos, mDownloader.queryDownloads());
+                if (DEBUG) {
+                    Log.d(TAG, "resume: " + videos.size() + " videos, "
+                            + completedTasks.size() + " completed while stopped, " + getMetrics());
+                }
+                if (!completedTasks.isEmpty()) {
+                    DownloadCompleteBroadcastReceiver.getInstance()
+                            .onTasksCompleted(completedTasks);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules the videos with a low priority. The jobs whose url is among the downloads are
+     * not started again, and the ones already downloaded are completed.
+     *
+     * @return The tasks completed by the downloads which finished.
+     */
+    @WorkerThread
+    List<DownloadingTaskDescription> resume(List<VideoEntity> videos, List<Download> downloads) {
+        List<DownloadingTaskDescription> completedTasks = new ArrayList<>();
+        synchronized (this) {
+            for (VideoEntity video : videos) {
+                scheduleLocked(video, PRIORITY_LOW);
+            }
+
+            Map<String, Download> downloadsByUrl = new HashMap<>();
+            for (Download download : downloads) {
+                downloadsByUrl.put(download.mUrl, download);
+            }
+            // Completing a job queues the next step of its videos, which may be adopted too.
+            List<Download> adopted = adoptQueuedJobsLocked(downloadsByUrl);
+            while (!adopted.isEmpty()) {
+                for (Download download : adopted) {
+                    if (download.mSuccessful) {
+                        completedTasks.addAll(finishLocked(download.mId, true,
+                                download.mLocalUri));
+                    }
+                }
+                adopted = adoptQueuedJobsLocked(downloadsByUrl);
+            }
+            dispatchLocked();
+        }
+        notifyMetricsChanged();
+        return completedTasks;
+    }
+
+    /**
+     * Removes the successful downloads stored at the given local uris, deleting their files. A
+     * removed download is not adopted by {@link #resume} once its video is downloaded again,
+     * while its file is gone.
+     *
+     * @return The local uris of the files no download was found for.
+     */
+    @WorkerThread
+    public Set<String> removeDownloads(Collection<String> localUris) {
+        Set<String> notFound = new HashSet<>(localUris);
+        List<Download> removed = new ArrayList<>();
+        for (Download download : mDownloader.queryDownloads()) {
+            if (download.mSuccessful && localUris.contains(download.mLocalUri)) {
+                removed.add(download);
+                notFound.remove(download.mLocalUri);
+            }
+        }
+        if (!removed.isEmpty()) {
+            long[] ids = new long[removed.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = removed.get(i).mId;
+            }
+            mDownloader.remove(ids);
+        }
+        return notFound;
+    }
+
+    public synchronized Metrics getMetrics() {
+        return new Metrics(mQueuedJobs.size(), mRunningJobs.size(), mVideos.size(),
+                mCompletedJobs, mFailedJobs, mCompletedVideos, mDeduplicatedJobs,
+                mCompletedJobs == 0 ? 0 : mTotalJobMs / mCompletedJobs);
+    }
+
+    /**
+     * Returns the metrics, updated while observed.
+     */
+    @MainThread
+    public LiveData<Metrics> getMetricsLiveData() {
+        if (mMetricsLiveData == null) {
+            mMetricsLiveData = new MetricsLiveData(this);
+        }
+        return mMetricsLiveData;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    private boolean scheduleLocked(VideoEntity video, int priority) {
+        VideoDownload videoDownload = mVideos.get(video.getId());
+        if (videoDownload != null) {
+            mDeduplicatedJobs++;
+            if (priority < videoDownload.mPriority) {
+                videoDownload.mPriority = priority;
+                raisePriorityLocked(videoDownload.mCurrentJob, priority);
+            }
+            return false;
+        }
+
+        videoDownload = new VideoDownload(video, priority);
+        for (int step = 0; step < STEPS.length; step++) {
+            if (isEmpty(getLocalUrl(video, STEPS[step]))
+                    && !isEmpty(getUrl(video, STEPS[step]))) {
+                videoDownload.mRemainingSteps.add(step);
+            }
+        }
+        if (videoDownload.mRemainingSteps.isEmpty()) {
+            return false;
+        }
+        mVideos.put(video.getId(), videoDownload);
+        startNextStepLocked(videoDownload);
+        return true;
+    }
+
+    /**
+     * Queues the next step of the video, or joins the job downloading the same url.
+     */
+    private void startNextStepLocked(VideoDownload videoDownload) {
+        Integer step = videoDownload.mRemainingSteps.poll();
+        if (step == null) {
+            videoDownload.mCurrentJob = null;
+            mVideos.remove(videoDownload.mVideo.getId());
+            mCompletedVideos++;
+            return;
+        }
+        String category = STEPS[step];
+        String url = getUrl(videoDownload.mVideo, category);
+        Job job = mJobsByUrl.get(url);
+        if (job != null) {
+            mDeduplicatedJobs++;
+            raisePriorityLocked(job, videoDownload.mPriority);
+        } else {
+            job = new Job(url, category, step, videoDownload.mPriority, mSequence++);
+            mJobsByUrl.put(url, job);
+            mQueuedJobs.add(job);
+        }
+        job.mTasks.add(new DownloadingTaskDescription(videoDownload.mVideo, category));
+        videoDownload.mCurrentJob = job;
+    }
+
+    private void raisePriorityLocked(Job job, int priority) {
+        if (job == null || priority >= job.mPriority) {
+            return;
+        }
+        // The queue is only ordered on insertion.
+        if (mQueuedJobs.remove(job)) {
+            job.mPriority = priority;
+            mQueuedJobs.add(job);
+        } else {
+            job.mPriority = priority;
+        }
+    }
+
+    /**
+     * Starts the queued jobs while fewer than the max number of jobs are running.
+     */
+    private void dispatchLocked() {
+        while (mRunningJobs.size() < mMaxConcurrentDownloads && !mQueuedJobs.isEmpty()) {
+            Job job = mQueuedJobs.poll();
+            long downloadId = mDownloader.enqueue(job.mUrl, job.mCategory,
+                    job.mTasks.get(0).getVideo().getId());
+            if (downloadId == 0) {
+                failLocked(job);
+                continue;
+            }
+            startLocked(job, downloadId);
+        }
+    }
+
+    private void startLocked(Job job, long downloadId) {
+        job.mDownloadId = downloadId;
+        job.mStartTime = System.currentTimeMillis();
+        mRunningJobs.put(downloadId, job);
+    }
+
+    private List<Download> adoptQueuedJobsLocked(Map<String, Download> downloadsByUrl) {
+        List<Download> adopted = new ArrayList<>();
+        Iterator<Job> iterator = mQueuedJobs.iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            Download download = downloadsByUrl.remove(job.mUrl);
+            if (download != null) {
+                iterator.remove();
+                startLocked(job, download.mId);
+                adopted.add(download);
+            }
+        }
+        return adopted;
+    }
+
+    private List<DownloadingTaskDescription> finishLocked(long downloadId, boolean successful,
+            @Nullable String localUri) {
+        Job job = mRunningJobs.remove(downloadId);
+        if (job == null) {
+            return Collections.emptyList();
+        }
+        mJobsByUrl.remove(job.mUrl);
+        if (!successful) {
+            failLocked(job);
+            return Collections.emptyList();
+        }
+        mCompletedJobs++;
+        mTotalJobMs += System.currentTimeMillis() - job.mStartTime;
+        for (DownloadingTaskDescription task : job.mTasks) {
+            task.setStoragePath(localUri);
+            VideoDownload videoDownload = mVideos.get(task.getVideo().getId());
+            if (videoDownload != null) {
+                startNextStepLocked(videoDownload);
+            }
+        }
+        return job.mTasks;
+    }
+
+    /**
+     * Gives up the videos needing the job. They keep their downloading status, so they are
+     * scheduled again when the process restarts.
+     */
+    private void failLocked(Job job) {
+        mJobsByUrl.remove(job.mUrl);
+        mFailedJobs++;
+        for (DownloadingTaskDescription task : job.mTasks) {
+            mVideos.remove(task.getVideo().getId());
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Fail to download " + job.mUrl);
+        }
+    }
+
+    private void notifyMetricsChanged() {
+        if (mListeners.isEmpty()) {
+            return;
+        }
+        Metrics metrics = getMetrics();
+        for (Listener listener : mListeners) {
+            listener.onMetricsChanged(metrics);
+        }
+    }
+
+    private static String getUrl(VideoEntity video, String category) {
+        switch (category) {
+            case CARD:
+                return video.getCardImageUrl();
+            case BACKGROUND:
+                return video.getBgImageUrl();
+            default:
+                return video.getVideoUrl();
+        }
+    }
+
+    private static String getLocalUrl(VideoEntity video, String category) {
+        switch (category) {
+            case CARD:
+                return video.getVideoCardImageLocalStorageUrl();
+            case BACKGROUND:
+                return video.getVideoBgImageLocalStorageUrl();
+            default:
+                return video.getVideoLocalStorageUrl();
+        }
+    }
+
+    private static boolean isEmpty(String string) {
+        return string == null || string.isEmpty();
+    }
+
+    /**
+     * Live data of the metrics, listening to the scheduler only while observed.
+     */
+    private static class MetricsLiveData extends LiveData<Metrics> implements Listener {
+        private final DownloadScheduler mScheduler;
+
+        MetricsLiveData(DownloadScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        @Override
+        public void onMetricsChanged(Metrics metrics) {
+            postValue(metrics);
+        }
+
+        @Override
+        protected void onActive() {
+            mScheduler.addListener(this);
+            postValue(mScheduler.getMetrics());
+        }
+
+        @Override
+        protected void onInactive() {
+            mScheduler.removeListener(this);
+        }
+    }
+}
@@ -22,8 +22,10 @@ import androidx.lifecycle.LiveData;
 import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.lifecycle.ViewModelProviders;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.leanback.leanbackshowcase.app.room.adapter.ListAdapter;
+import androidx.leanback.leanbackshowcase.app.room.adapter.PagedListObjectAdapter;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 import androidx.leanback.leanbackshowcase.app.room.viewmodel.VideosInSameCategoryViewModel;
 import androidx.leanback.widget.HorizontalGridView;
@@ -31,11 +33,12 @@ import androidx.leanback.widget.ListRow;
 import androidx.leanback.widget.ListRowPresenter;
 import androidx.leanback.widget.RowPresenter;
 import androidx.fragment.app.FragmentActivity;
+import androidx.paging.PagedList;
+import androidx.recyclerview.widget.DiffUtil;
 import android.view.View;
 import android.view.ViewGroup;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 
@@ -44,6 +47,42 @@ import java.util.List;
  */
 public class LiveDataRowPresenter extends ListRowPresenter {
 
+    /**
+     * Identifies videos by their database id and compares their content through the content
+     * version, so diffing a category does not compare every string of every video.
+     */
+    public static final DiffUtil.ItemCallback<VideoEntity> VIDEO_ITEM_CALLBACK =
+            new DiffUtil.ItemCallback<VideoEntity>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull VideoEntity oldItem,
+                        @NonNull VideoEntity newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull VideoEntity oldItem,
+                        @NonNull VideoEntity newItem) {
+                    return oldItem.getContentVersion() == newItem.getContentVersion();
+                }
+            };
+
+    /**
+     * The same identity and content comparison, for the rows of videos backed by a
+     * {@link ListAdapter}.
+     */
+    public static final ListAdapter.ItemCallback<VideoEntity> VIDEO_LIST_ITEM_CALLBACK =
+            new ListAdapter.ItemCallback<VideoEntity>() {
+                @Override
+                public long getId(VideoEntity item) {
+                    return item.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(VideoEntity oldItem, VideoEntity newItem) {
+                    return oldItem.getContentVersion() == newItem.getContentVersion();
+                }
+            };
+
     private ListRow mRow;
     private List<DataLoadedListener> mDataLoadedListeners;
     private LifecycleOwner mLifecycleOwner;
@@ -89,14 +128,14 @@ public class LiveDataRowPresenter extends ListRowPresenter {
 
     @Override
     protected void onBindRowViewHolder(RowPresenter.ViewHolder holder, Object item) {
-        super.onBindRowViewHolder(holder, item);
         mRow = (ListRow) item;
+        final PagedListObjectAdapter<VideoEntity> adapter =
+                (PagedListObjectAdapter<VideoEntity>) mRow.getAdapter();
+        super.onBindRowViewHolder(holder, item);
         LiveDataRowPresenterViewHolder vh = (LiveDataRowPresenterViewHolder)holder;
 
         String category = mRow.getHeaderItem().getName();
 
-        final ListAdapter<VideoEntity> adapter = (ListAdapter<VideoEntity>) mRow.getAdapter();
-
         FragmentActivity attachedFragmentActivity = (FragmentActivity) holder.view.getContext();
 
         // In our case, attached activity should be a lifecycle owner
@@ -114,30 +153,19 @@ public class LiveDataRowPresenter extends ListRowPresenter {
 
         // observe the live data when this row is bound to view holder
         vh.getLiveData().observe(mLifecycleOwner,
-                new Observer<List<VideoEntity>>() {
+                new Observer<PagedList<VideoEntity>>() {
                     @Override
                     public void onChanged(
-                            @Nullable List<VideoEntity> videoEntities) {
+                            @Nullable PagedList<VideoEntity> videoEntities) {
                         if (videoEntities != null) {
 
                             // When the data is bound to the adapter, dispatch start Entrance
                             // transition event
                             notifyDataLoaded();
 
-                            adapter.setItems(videoEntities,
-                                    new Comparator<VideoEntity>() {
-                                        @Override
-                                        public int compare(VideoEntity o1,
-                                                           VideoEntity o2) {
-                                            return o1.getId() == o2.getId() ? 0 : -1;
-                                        }
-                                    }, new Comparator<VideoEntity>() {
-                                        @Override
-                                        public int compare(VideoEntity o1,
-                                                           VideoEntity o2) {
-                                            return o1.equals(o2) ? 0 : -1;
-                                        }
-                                    });
+                            // The diff is computed off the main thread, only the pages around
+                            // the focused card are loaded
+                            adapter.submitList(videoEntities);
                         }
                     }
                 });
@@ -155,18 +183,18 @@ public class LiveDataRowPresenter extends ListRowPresenter {
      */
     private class LiveDataRowPresenterViewHolder extends ListRowPresenter.ViewHolder {
 
-        private LiveData<List<VideoEntity>> mLiveData;
+        private LiveData<PagedList<VideoEntity>> mLiveData;
 
         public LiveDataRowPresenterViewHolder(View rootView, HorizontalGridView gridView, ListRowPresenter p) {
             super(rootView, gridView, p);
         }
 
 
-        public void setLiveData(LiveData<List<VideoEntity>> liveData) {
+        public void setLiveData(LiveData<PagedList<VideoEntity>> liveData) {
             mLiveData = liveData;
         }
 
-        public final LiveData<List<VideoEntity>> getLiveData() {
+        public final LiveData<PagedList<VideoEntity>> getLiveData() {
             return mLiveData;
         }
     }
@@ -16,20 +16,16 @@
 
 package androidx.leanback.leanbackshowcase.app.room.ui;
 
-import androidx.lifecycle.LifecycleOwner;
-import androidx.lifecycle.Observer;
 import androidx.lifecycle.ViewModelProviders;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
-import androidx.annotation.Nullable;
 import androidx.leanback.leanbackshowcase.R;
 import androidx.leanback.leanbackshowcase.app.room.config.AppConfiguration;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
-import androidx.leanback.leanbackshowcase.app.room.network.NetworkLiveData;
-import androidx.leanback.leanbackshowcase.app.room.network.NetworkManagerUtil;
-import androidx.leanback.leanbackshowcase.app.room.network.PermissionLiveData;
+import androidx.leanback.leanbackshowcase.app.room.network.ConnectivityState;
+import androidx.leanback.leanbackshowcase.app.room.network.DownloadScheduler;
 import androidx.leanback.leanbackshowcase.app.room.viewmodel.VideosViewModel;
 import androidx.leanback.widget.ImageCardView;
 import androidx.leanback.widget.Presenter;
@@ -73,10 +69,20 @@ public class VideoCardPresenter extends Presenter {
     private static final String DOWNLOAD_VIDEO_NO_PERMISSION = "Download Video (No Permission)";
     private static final String DOWNLOAD_VIDEO_NO_NETWORK = "Download Video (No Network)";
 
-    // The default resource when the network or local content are not available.
+    // The default resource when the network or local content are not available. Loaded with the
+    // first view holder and shared by all the cards, none of them changes them.
     private static int sSelectedBackgroundColor = -1;
     private static int sDefaultBackgroundColor = -1;
-    private static Drawable sDefaultCardImage;
+    private static Drawable.ConstantState sDefaultCardImage;
+    private static int sCardWidth;
+    private static int sCardHeight;
+
+    // when glide library cannot fetch data from internet, and there is no local content, it
+    // will be used as place holder
+    private static RequestOptions sDefaultPlaceHolder;
+
+    // Shared by the view holders, all created in the same activity.
+    private VideosViewModel mViewModel;
 
     @Inject
     public VideoCardPresenter() {
@@ -85,14 +91,15 @@ public class VideoCardPresenter extends Presenter {
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent) {
-        Context mContext = parent.getContext();
-        sDefaultBackgroundColor =
-                ContextCompat.getColor(parent.getContext(), R.color.default_background);
-        sSelectedBackgroundColor =
-                ContextCompat.getColor(parent.getContext(), R.color.selected_background);
-        sDefaultCardImage =
-                parent.getResources().getDrawable(R.drawable.no_cache_no_internet, null);
-        ImageCardView cardView = new ImageCardView(parent.getContext()) {
+        Context context = parent.getContext();
+        if (sDefaultCardImage == null) {
+            loadResources(context);
+        }
+        if (mViewModel == null) {
+            mViewModel = ViewModelProviders.of((FragmentActivity) context)
+                    .get(VideosViewModel.class);
+        }
+        ImageCardView cardView = new ImageCardView(context) {
             @Override
             public void setSelected(boolean selected) {
                 updateCardBackgroundColor(this, selected);
@@ -101,8 +108,9 @@ public class VideoCardPresenter extends Presenter {
         };
         cardView.setFocusable(true);
         cardView.setFocusableInTouchMode(true);
+        cardView.setMainImageDimensions(sCardWidth, sCardHeight);
         updateCardBackgroundColor(cardView, false);
-        return new CardViewHolder(cardView, mContext);
+        return new CardViewHolder(cardView, context);
     }
 
     @Override
@@ -120,6 +128,17 @@ public class VideoCardPresenter extends Presenter {
         cardView.setMainImage(null);
     }
 
+    private static void loadResources(Context context) {
+        Resources resources = context.getResources();
+        sDefaultBackgroundColor = ContextCompat.getColor(context, R.color.default_background);
+        sSelectedBackgroundColor = ContextCompat.getColor(context, R.color.selected_background);
+        sDefaultCardImage =
+                resources.getDrawable(R.drawable.no_cache_no_internet, null).getConstantState();
+        sCardWidth = resources.getDimensionPixelSize(R.dimen.card_width);
+        sCardHeight = resources.getDimensionPixelSize(R.dimen.card_height);
+        sDefaultPlaceHolder = new RequestOptions().placeholder(R.drawable.no_cache_no_internet);
+    }
+
     /**
      * Helper function to update selected video clip's background color. Info field should also
      * be updated for consistent ui.
@@ -141,49 +160,31 @@ public class VideoCardPresenter extends Presenter {
             View.OnLongClickListener, PopupMenu.OnMenuItemClickListener {
         private VideoEntity mVideo;
         private Context mContext;
-        private PopupMenu mPopupMenu;
-        private FragmentActivity mFragmentActivity;
-        private LifecycleOwner mOwner;
-
 
-        // when glide library cannot fetch data from internet, and there is no local content, it
-        // will be used as place holder
-        private RequestOptions mDefaultPlaceHolder;
-        private Drawable mDefaultBackground;
+        // Created on the first long click, most cards never show it.
+        private PopupMenu mPopupMenu;
 
         private ImageCardView mCardView;
 
-        private VideosViewModel mViewModel;
-
-
         CardViewHolder(ImageCardView view, Context context) {
             super(view);
             mContext = context;
-            Context wrapper = new ContextThemeWrapper(mContext, R.style.MyPopupMenu);
-            mPopupMenu = new PopupMenu(wrapper, view);
-            mPopupMenu.inflate(R.menu.popup_menu);
-
-            mPopupMenu.setOnMenuItemClickListener(this);
+            mCardView = view;
             view.setOnLongClickListener(this);
-
-            mOwner = (LifecycleOwner) mContext;
-
-            mDefaultBackground = mContext.getResources().getDrawable(R.drawable.no_cache_no_internet, null);
-            mDefaultPlaceHolder = new RequestOptions().
-                    placeholder(mDefaultBackground);
-
-            mCardView = (ImageCardView) CardViewHolder.this.view;
-            Resources resources = mCardView.getContext().getResources();
-            mCardView.setMainImageDimensions(Math.round(
-                    resources.getDimensionPixelSize(R.dimen.card_width)),
-                    resources.getDimensionPixelSize(R.dimen.card_height));
-
-            mFragmentActivity = (FragmentActivity) context;
-            mViewModel = ViewModelProviders.of(mFragmentActivity).get(VideosViewModel.class);
         }
 
         @Override
         public boolean onLongClick(View v) {
+            if (mVideo == null) {
+                return false;
+            }
+            if (mPopupMenu == null) {
+                Context wrapper = new ContextThemeWrapper(mContext, R.style.MyPopupMenu);
+                mPopupMenu = new PopupMenu(wrapper, mCardView);
+                mPopupMenu.inflate(R.menu.popup_menu);
+                mPopupMenu.setOnMenuItemClickListener(this);
+            }
+            updatePopMenu(mVideo);
             mPopupMenu.show();
             return true;
         }
@@ -205,7 +206,8 @@ public class VideoCardPresenter extends Presenter {
                             return null;
                         }
                     }.execute(mVideo);
-                    NetworkManagerUtil.download(mVideo);
+                    DownloadScheduler.getInstance().schedule(mVideo,
+                            DownloadScheduler.PRIORITY_HIGH);
                     return true;
                 case R.id.remove_video_related_resource:
                     new AsyncTask<VideoEntity, Void, Void>() {
@@ -232,6 +234,16 @@ public class VideoCardPresenter extends Presenter {
             }
             mVideo = video;
 
+            if (video == null) {
+                // Placeholder of a page which is not loaded yet, bound again once it is.
+                Glide.with(mCardView.getContext()).clear(mCardView.getMainImageView());
+                mCardView.setTitleText(null);
+                mCardView.setContentText(null);
+                mCardView.setMainImage(
+                        sDefaultCardImage.newDrawable(mCardView.getResources()));
+                return;
+            }
+
             if (!video.isRented()) {
                 mCardView.setTitleText(video.getTitle());
             } else {
@@ -255,16 +267,15 @@ public class VideoCardPresenter extends Presenter {
             if (video.getCardImageUrl() != null) {
                 Glide.with(mCardView.getContext())
                         .load(loadedUri)
-                        .apply(mDefaultPlaceHolder)
+                        .apply(sDefaultPlaceHolder)
                         .into(mCardView.getMainImageView());
             }
-
-            updatePopMenu(video);
         }
 
         /**
          * Helper function to update pop up menu's item based on network environment and video
-         * entity's status
+         * entity's status. Called when the menu is about to show, so binding a card reads no
+         * state.
          *
          * @param videoEntity
          */
@@ -272,29 +283,17 @@ public class VideoCardPresenter extends Presenter {
             if (isDownloadable()) {
                 setInvisible(R.id.remove_video_related_resource);
 
-                PermissionLiveData.get().observe(mOwner, new Observer<Boolean>() {
-                    @Override
-                    public void onChanged(@Nullable Boolean aBoolean) {
-                        if (!aBoolean) {
-                            updatePopupMenuItem(R.id.download_video_related_resource, false,
-                                    DOWNLOAD_VIDEO_NO_PERMISSION);
-                            return;
-                        }
-                    }
-                });
-
-                NetworkLiveData.sync(mContext).observe(mOwner, new Observer<Boolean>() {
-                    @Override
-                    public void onChanged(@Nullable Boolean isNetworkAvailable) {
-                        if (isNetworkAvailable) {
-                            updatePopupMenuItem(R.id.download_video_related_resource, true,
-                                    DOWNLOAD_VIDEO);
-                        } else {
-                            updatePopupMenuItem(R.id.download_video_related_resource, false,
-                                    DOWNLOAD_VIDEO_NO_NETWORK);
-                        }
-                    }
-                });
+                ConnectivityState state = ConnectivityState.get(mContext);
+                if (!state.isWritePermissionGranted()) {
+                    updatePopupMenuItem(R.id.download_video_related_resource, false,
+                            DOWNLOAD_VIDEO_NO_PERMISSION);
+                } else if (!state.isNetworkAvailable()) {
+                    updatePopupMenuItem(R.id.download_video_related_resource, false,
+                            DOWNLOAD_VIDEO_NO_NETWORK);
+                } else {
+                    updatePopupMenuItem(R.id.download_video_related_resource, true,
+                            DOWNLOAD_VIDEO);
+                }
             } else if (isRemovable()) {
                 updatePopupMenuItem(R.id.remove_video_related_resource, true, REMOVE_LOCAL_VIDEO);
                 setInvisible(R.id.download_video_related_resource);
@@ -20,11 +20,10 @@ import android.app.Application;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.annotation.NonNull;
+import androidx.paging.PagedList;
 import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 
-import java.util.List;
-
 import javax.inject.Inject;
 
 public class VideosInSameCategoryViewModel extends AndroidViewModel {
@@ -40,17 +39,17 @@ public class VideosInSameCategoryViewModel extends AndroidViewModel {
     }
 
     /**
-     * Return the video entity list in same category using live data
+     * Return the video entity list in same category as a paged list using live data
      *
      * @return live data
      */
-    public LiveData<List<VideoEntity>> getVideosInSameCategory(String category) {
+    public LiveData<PagedList<VideoEntity>> getVideosInSameCategory(String category) {
 
         // The design here is: The view model will talk to repository to fetch the live data.
         // The data base is created on the main thread (The database creation won't block the UI)
         // If the database is not prepared (i.e. no valid data existed in the database), it will
         // return an empty live data automatically, there is no need to declare an empty live data
         // explicitly
-        return mRepository.getVideosInSameCategoryLiveData(category);
+        return mRepository.getPagedVideosInSameCategoryLiveData(category);
     }
 }
@@ -17,32 +17,90 @@
 package androidx.leanback.leanbackshowcase.app.room.viewmodel;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
 import androidx.arch.core.util.Function;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
 import androidx.lifecycle.Transformations;
+import androidx.leanback.leanbackshowcase.app.room.db.repo.LiveDataCache;
+import androidx.leanback.leanbackshowcase.app.room.db.repo.SearchQuery;
 import androidx.leanback.leanbackshowcase.app.room.db.repo.VideosRepository;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.CategoryEntity;
+import androidx.leanback.leanbackshowcase.app.room.db.entity.StorageUsage;
 import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
 
+import java.util.Collections;
 import java.util.List;
 import javax.inject.Inject;
 
 public class VideosViewModel extends AndroidViewModel {
+
+    // Time without typing after which the query is searched, so typing on the on screen keyboard
+    // does not search every prefix of the query.
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
+    // Number of queries whose results are kept, e.g. to go back to a previous query.
+    private static final int MAX_CACHED_SEARCHES = 16;
+
     // live data connect to database
     private final LiveData<List<CategoryEntity>> mAllCategories;
-    private final LiveData<List<VideoEntity>> mSearchResults;
+    private final MediatorLiveData<List<VideoEntity>> mSearchResults = new MediatorLiveData<>();
     private final LiveData<VideoEntity> mVideoById;
     private final LiveData<List<VideoEntity>> mAllVideosByCategory;
 
     // mutable live data can be changed by ui controllers through setter
-    private final MutableLiveData<String> mQuery = new MutableLiveData<>();
     private final MutableLiveData<Long> mVideoId = new MutableLiveData<>();
     private final MutableLiveData<String> mVideoCategory = new MutableLiveData<>();
 
     private final VideosRepository mRepository;
 
+    /**
+     * Search results by match query. Keeping the live data keeps its last results, which are
+     * delivered again without running the query unless the videos changed in between. Held by
+     * the view model, the results survive configuration changes.
+     */
+    private final LiveDataCache<String, List<VideoEntity>> mSearchCache;
+    private final LiveData<List<VideoEntity>> mNoSearchResult;
+
+    private final Handler mSearchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mSearchScheduled = false;
+            startSearch(mRequestedMatchQuery);
+            updateSearchPending();
+        }
+    };
+
+    // Whether a search waits for the user to stop typing, and whether the results of the
+    // searched query are not delivered yet.
+    private boolean mSearchScheduled;
+    private boolean mDeliveryPending;
+    private final MutableLiveData<Boolean> mSearchPending = new MutableLiveData<>();
+
+    // Match query of the last text set by the ui, which is searched once the user stops typing.
+    private String mRequestedMatchQuery;
+    // Match query whose results are delivered, and their source.
+    private String mSearchedMatchQuery;
+    private LiveData<List<VideoEntity>> mSearchSource;
+
+    private final Observer<List<VideoEntity>> mSearchSourceObserver =
+            new Observer<List<VideoEntity>>() {
+                @Override
+                public void onChanged(@Nullable List<VideoEntity> videoEntities) {
+                    mDeliveryPending = false;
+                    mSearchResults.setValue(videoEntities);
+                    updateSearchPending();
+                }
+            };
+
     @Inject
     public VideosViewModel(Application application, VideosRepository repository) {
         super(application);
@@ -51,13 +109,16 @@ public class VideosViewModel extends AndroidViewModel {
 
         mAllCategories = mRepository.getAllCategories();
 
-        mSearchResults = Transformations.switchMap(
-                mQuery, new Function<String, LiveData<List<VideoEntity>>>() {
+        mSearchCache = new LiveDataCache<>(MAX_CACHED_SEARCHES,
+                new LiveDataCache.Loader<String, List<VideoEntity>>() {
                     @Override
-                    public LiveData<List<VideoEntity>> apply(final String queryMessage) {
-                        return mRepository.getSearchResult(queryMessage);
+                    public LiveData<List<VideoEntity>> load(String matchQuery) {
+                        return mRepository.searchVideos(matchQuery);
                     }
                 });
+        MutableLiveData<List<VideoEntity>> noSearchResult = new MutableLiveData<>();
+        noSearchResult.setValue(Collections.<VideoEntity>emptyList());
+        mNoSearchResult = noSearchResult;
 
 
         mVideoById = Transformations.switchMap(
@@ -96,8 +157,94 @@ public class VideosViewModel extends AndroidViewModel {
         return mAllCategories;
     }
 
-    public void setQueryMessage(String queryMessage) {
-        mQuery.setValue(queryMessage);
+    public LiveData<Boolean> getDatabaseReady() {
+        return mRepository.getDatabaseReady();
+    }
+
+    public LiveData<Integer> getPopulationProgress() {
+        return mRepository.getPopulationProgress();
+    }
+
+    public LiveData<StorageUsage> getOfflineStorageUsage() {
+        return mRepository.getOfflineStorageUsage();
+    }
+
+    /**
+     * Searches the text once the user has not changed it for {@link #SEARCH_DEBOUNCE_MS}. Texts
+     * giving the same query as the one searched, e.g. differing only by case or punctuation, are
+     * ignored.
+     *
+     * @return true if a new search is scheduled.
+     */
+    @MainThread
+    public boolean setQueryMessage(String queryMessage) {
+        String matchQuery = SearchQuery.toMatchQuery(queryMessage);
+        if (mSearchSource != null && TextUtils.equals(matchQuery, mRequestedMatchQuery)) {
+            // Already searched or about to be.
+            return false;
+        }
+        mRequestedMatchQuery = matchQuery;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (mSearchSource != null && TextUtils.equals(matchQuery, mSearchedMatchQuery)) {
+            // Typed back to the query searched, its results are still delivered.
+            mSearchScheduled = false;
+            updateSearchPending();
+            return false;
+        }
+        mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MS);
+        mSearchScheduled = true;
+        updateSearchPending();
+        return true;
+    }
+
+    /**
+     * Searches the text immediately, e.g. when the user submits it.
+     *
+     * @return true if a new search is started.
+     */
+    @MainThread
+    public boolean submitQueryMessage(String queryMessage) {
+        mRequestedMatchQuery = SearchQuery.toMatchQuery(queryMessage);
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchScheduled = false;
+        boolean started = startSearch(mRequestedMatchQuery);
+        updateSearchPending();
+        return started;
+    }
+
+    /**
+     * Returns whether a search is scheduled or running, i.e. whether results for the text last
+     * set are still to be delivered. Becomes false when they are, or when the pending search is
+     * cancelled, e.g. the user typed back to the query whose results are shown.
+     */
+    public LiveData<Boolean> getSearchPending() {
+        return mSearchPending;
+    }
+
+    private void updateSearchPending() {
+        boolean pending = mSearchScheduled || mDeliveryPending;
+        if (mSearchPending.getValue() == null || mSearchPending.getValue() != pending) {
+            mSearchPending.setValue(pending);
+        }
+    }
+
+    /**
+     * Delivers the results of the match query instead of the ones of the previous query, whose
+     * results are no longer delivered even if its query is still running.
+     */
+    private boolean startSearch(@Nullable String matchQuery) {
+        if (mSearchSource != null && TextUtils.equals(matchQuery, mSearchedMatchQuery)) {
+            return false;
+        }
+        if (mSearchSource != null) {
+            mSearchResults.removeSource(mSearchSource);
+        }
+        mSearchedMatchQuery = matchQuery;
+        mSearchSource = matchQuery == null ? mNoSearchResult : mSearchCache.get(matchQuery);
+        // Cached results may be delivered right away by addSource.
+        mDeliveryPending = true;
+        mSearchResults.addSource(mSearchSource, mSearchSourceObserver);
+        return true;
     }
 
     public void setVideoId(Long videoIdVal) {
@@ -108,7 +255,27 @@ public class VideosViewModel extends AndroidViewModel {
         mVideoCategory.setValue(category);
     }
 
+    /**
+     * Starts loading the rows the user most likely opens first.
+     */
+    public void prewarmCategories(List<CategoryEntity> categories) {
+        mRepository.prewarmCategories(categories);
+    }
+
     public void updateDatabase(VideoEntity video, String category, String value) {
         mRepository.updateDatabase(video, category, value);
     }
+
+    public void markWatched(VideoEntity video) {
+        mRepository.markWatched(video);
+    }
+
+    @Override
+    protected void onCleared() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        if (mSearchSource != null) {
+            mSearchResults.removeSource(mSearchSource);
+        }
+        mSearchCache.clear();
+    }
 }
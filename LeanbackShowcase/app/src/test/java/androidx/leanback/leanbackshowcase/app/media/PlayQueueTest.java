@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class PlayQueueTest {
+
+    private static final PlayQueue.KeyProvider<String> KEY = new PlayQueue.KeyProvider<String>() {
+        @Override
+        public Object getKey(String item) {
+            return item;
+        }
+    };
+
+    @Test
+    public void indexFollowsEdits() {
+        PlayQueue<String> queue = new PlayQueue<>(KEY, new Random(1));
+        queue.setItems(Arrays.asList("a", "b", "c", "d"));
+        assertEquals(2, queue.indexOfKey("c"));
+        queue.add(0, "x");
+        assertEquals(3, queue.indexOfKey("c"));
+        assertEquals(0, queue.indexOfKey("x"));
+        queue.remove(1);
+        assertEquals(-1, queue.indexOfKey("a"));
+        assertEquals(2, queue.indexOfKey("c"));
+        queue.move(3, 0);
+        assertEquals(Arrays.asList("d", "x", "b", "c"), queue.snapshot());
+        assertEquals(0, queue.indexOfKey("d"));
+        assertEquals(3, queue.indexOfKey("c"));
+    }
+
+    @Test
+    public void duplicatesResolveToFirstOccurrence() {
+        PlayQueue<String> queue = new PlayQueue<>(KEY, new Random(1));
+        queue.setItems(Arrays.asList("a", "b", "a"));
+        assertEquals(0, queue.indexOfKey("a"));
+        queue.remove(0);
+        assertEquals(1, queue.indexOfKey("a"));
+    }
+
+    @Test
+    public void randomEditsMatchLinearScan() {
+        Random random = new Random(7);
+        PlayQueue<String> queue = new PlayQueue<>(KEY, random);
+        List<String> expected = new ArrayList<>();
+        queue.setShuffleEnabled(true, -1);
+        for (int step = 0; step < 2000; step++) {
+            int op = random.nextInt(4);
+            if (op == 0 || expected.isEmpty()) {
+                String item = "i" + random.nextInt(50);
+                int position = random.nextInt(expected.size() + 1);
+                expected.add(position, item);
+                queue.add(position, item);
+            } else if (op == 1) {
+                int position = random.nextInt(expected.size());
+                expected.remove(position);
+                queue.remove(position);
+            } else if (op == 2) {
+                int from = random.nextInt(expected.size());
+                int to = random.nextInt(expected.size());
+                expected.add(to, expected.remove(from));
+                queue.move(from, to);
+            } else {
+                List<String> added = Arrays.asList("j" + step, "i" + random.nextInt(50));
+                expected.addAll(added);
+                queue.addAll(added);
+            }
+            String key = "i" + random.nextInt(50);
+            assertEquals(expected.indexOf(key), queue.indexOfKey(key));
+            assertEquals(expected, queue.snapshot());
+            assertShuffleIsPermutation(queue);
+        }
+    }
+
+    @Test
+    public void shuffleKeepsOriginalOrder() {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add("i" + i);
+        }
+        PlayQueue<String> queue = new PlayQueue<>(KEY, new Random(3));
+        queue.setItems(items);
+        queue.setShuffleEnabled(true, 42);
+        assertEquals(items, queue.snapshot());
+        assertEquals(42, queue.getNextPosition(queue.getPreviousPosition(42, true), true));
+        assertEquals(-1, queue.getPreviousPosition(42, false));
+        assertShuffleIsPermutation(queue);
+
+        queue.setShuffleEnabled(false, -1);
+        assertEquals(43, queue.getNextPosition(42, false));
+        assertEquals(-1, queue.getNextPosition(99, false));
+        assertEquals(0, queue.getNextPosition(99, true));
+    }
+
+    @Test
+    public void snapshotIsSharedUntilChanged() {
+        PlayQueue<String> queue = new PlayQueue<>(KEY, new Random(1));
+        queue.setItems(Arrays.asList("a", "b"));
+        List<String> snapshot = queue.snapshot();
+        assertSame(snapshot, queue.snapshot());
+        queue.remove(0);
+        assertEquals(Arrays.asList("a", "b"), snapshot);
+        assertEquals(Arrays.asList("b"), queue.snapshot());
+    }
+
+    private static void assertShuffleIsPermutation(PlayQueue<String> queue) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        Set<Integer> visited = new HashSet<>();
+        int position = queue.getNextPosition(queue.getPreviousPosition(0, true), true);
+        assertEquals(0, position);
+        for (int i = 0; i < queue.size(); i++) {
+            assertTrue(visited.add(position));
+            position = queue.getNextPosition(position, true);
+        }
+        assertEquals(queue.size(), visited.size());
+    }
+}
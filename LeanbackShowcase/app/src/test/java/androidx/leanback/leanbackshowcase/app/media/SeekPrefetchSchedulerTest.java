@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests {@link SeekPrefetchScheduler} and replays scrub traces against a simulated loader to
+ * compare its hit rate and wasted decodes with the linear prefetch it replaced.
+ */
+public class SeekPrefetchSchedulerTest {
+
+    private static final int POSITIONS = 600;
+    private static final int DECODE_MS = 60;
+    private static final int WORKERS = 2;
+    private static final int QUEUE_SIZE = 16;
+    // Thumbnails fitting in the prefetch cache.
+    private static final int PREFETCH_CAPACITY = 12;
+
+    @Test
+    public void slowScrubPrefetchesEveryThumbnail() {
+        SeekPrefetchScheduler scheduler = new SeekPrefetchScheduler(4, 8);
+        scheduler.onRequest(10, 0);
+        scheduler.onRequest(11, 500);
+        scheduler.onRequest(12, 1000);
+        assertEquals(1, scheduler.getDirection());
+        assertEquals(1, scheduler.getStride());
+        assertArrayEquals(new int[] {13, 14, 15, 16}, scheduler.getWindow(POSITIONS));
+    }
+
+    @Test
+    public void fastScrubSkipsThumbnailsPassedDuringADecode() {
+        SeekPrefetchScheduler scheduler = new SeekPrefetchScheduler(4, 8);
+        scheduler.onDecoded(SeekPrefetchScheduler.DEFAULT_DECODE_TIME_MS);
+        for (int i = 0; i <= 10; i++) {
+            scheduler.onRequest(100 + i * 2, i * 25);
+        }
+        // 2 thumbnails every 25ms is 4 thumbnails per 50ms decode.
+        assertEquals(4, scheduler.getStride());
+        assertArrayEquals(new int[] {124, 128, 132, 136}, scheduler.getWindow(POSITIONS));
+        assertTrue(scheduler.isInWindow(136));
+        assertFalse(scheduler.isInWindow(137));
+        assertFalse(scheduler.isInWindow(119));
+    }
+
+    @Test
+    public void reversingDirectionFlipsWindow() {
+        SeekPrefetchScheduler scheduler = new SeekPrefetchScheduler(3, 8);
+        scheduler.onRequest(50, 0);
+        scheduler.onRequest(51, 200);
+        scheduler.onRequest(52, 400);
+        scheduler.onRequest(51, 600);
+        assertEquals(-1, scheduler.getDirection());
+        assertArrayEquals(new int[] {50, 49, 48}, scheduler.getWindow(POSITIONS));
+        assertFalse(scheduler.isInWindow(52));
+    }
+
+    @Test
+    public void windowIsClippedAtEnds() {
+        SeekPrefetchScheduler scheduler = new SeekPrefetchScheduler(4, 8);
+        scheduler.onRequest(1, 0);
+        scheduler.onRequest(0, 200);
+        assertEquals(0, scheduler.getWindow(POSITIONS).length);
+        scheduler.reset();
+        assertEquals(0, scheduler.getWindow(POSITIONS).length);
+        scheduler.onRequest(POSITIONS - 2, 0);
+        assertArrayEquals(new int[] {POSITIONS - 1}, scheduler.getWindow(POSITIONS));
+    }
+
+    @Test
+    public void slowScrubTrace() {
+        List<int[]> trace = scrub(100, 1, 200, 40);
+        Result linear = simulate(trace, new LinearPrefetch());
+        Result adaptive = simulate(trace, new AdaptivePrefetch());
+        assertTrue(adaptive.getHitRate() >= 0.95f);
+        assertTrue(adaptive.getHitRate() >= linear.getHitRate());
+        assertTrue(adaptive.mWasted <= linear.mWasted);
+    }
+
+    @Test
+    public void fastScrubTrace() {
+        List<int[]> trace = scrub(50, 1, 20, 400);
+        Result linear = simulate(trace, new LinearPrefetch());
+        Result adaptive = simulate(trace, new AdaptivePrefetch());
+        // Too fast for the loader to keep up, but a quarter of the thumbnails are still shown.
+        assertTrue(adaptive.getHitRate() >= 0.25f);
+        assertTrue(adaptive.getHitRate() > linear.getHitRate());
+        assertTrue(adaptive.mWasted < linear.mWasted);
+    }
+
+    @Test
+    public void backAndForthTrace() {
+        List<int[]> trace = new ArrayList<>();
+        int time = 0;
+        int index = 200;
+        for (int gesture = 0; gesture < 6; gesture++) {
+            int step = gesture % 2 == 0 ? 1 : -1;
+            for (int i = 0; i < 60; i++) {
+                index += step;
+                time += 40;
+                trace.add(new int[] {time, index});
+            }
+            time += 800;
+        }
+        Result linear = simulate(trace, new LinearPrefetch());
+        Result adaptive = simulate(trace, new AdaptivePrefetch());
+        assertTrue(adaptive.getHitRate() >= 0.95f);
+        assertTrue(adaptive.getHitRate() >= linear.getHitRate());
+        assertTrue(adaptive.mWasted < linear.mWasted);
+    }
+
+    private static List<int[]> scrub(int start, int step, int intervalMs, int count) {
+        List<int[]> trace = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            trace.add(new int[] {i * intervalMs, start + i * step});
+        }
+        return trace;
+    }
+
+    static class Result {
+        int mRequests;
+        int mHits;
+        int mWasted;
+
+        float getHitRate() {
+            return (float) mHits / mRequests;
+        }
+    }
+
+    interface Prefetcher {
+        /**
+         * Called when the user moves to {@code index}. Returns the indices to prefetch, and
+         * removes from {@code inFlight} the prefetches to cancel.
+         */
+        int[] onRequest(int index, int previousIndex, long nowMs, Set<Integer> inFlight);
+    }
+
+    /**
+     * The previous strategy: every following thumbnail in the direction of the last move, no
+     * cancellation.
+     */
+    static class LinearPrefetch implements Prefetcher {
+        @Override
+        public int[] onRequest(int index, int previousIndex, long nowMs, Set<Integer> inFlight) {
+            if (previousIndex < 0) {
+                return new int[0];
+            }
+            int inc = index > previousIndex ? 1 : -1;
+            int[] window = new int[PREFETCH_CAPACITY];
+            for (int i = 0; i < window.length; i++) {
+                window[i] = previousIndex + inc * i;
+            }
+            return window;
+        }
+    }
+
+    static class AdaptivePrefetch implements Prefetcher {
+        // Same window and stride as PlaybackSeekAsyncDataProvider.
+        final SeekPrefetchScheduler mScheduler = new SeekPrefetchScheduler(8, 8);
+
+        AdaptivePrefetch() {
+            mScheduler.onDecoded(DECODE_MS);
+            mScheduler.onDecoded(DECODE_MS);
+        }
+
+        @Override
+        public int[] onRequest(int index, int previousIndex, long nowMs, Set<Integer> inFlight) {
+            mScheduler.onRequest(index, nowMs);
+            for (Iterator<Integer> it = inFlight.iterator(); it.hasNext(); ) {
+                if (!mScheduler.isInWindow(it.next())) {
+                    it.remove();
+                }
+            }
+            return mScheduler.getWindow(POSITIONS);
+        }
+    }
+
+    /**
+     * Replays a trace of (time, index) requests on a loader with {@link #WORKERS} threads that
+     * take {@link #DECODE_MS} per thumbnail and a first in first out queue of
+     * {@link #QUEUE_SIZE} dropping its oldest entry, like the loader executor of
+     * PlaybackSeekAsyncDataProvider.
+     */
+    static Result simulate(List<int[]> trace, Prefetcher prefetcher) {
+        Result result = new Result();
+        Set<Integer> userCache = new HashSet<>();
+        // Iteration order is least recently used first.
+        LinkedHashSet<Integer> prefetchCache = new LinkedHashSet<>();
+        LinkedList<Integer> queue = new LinkedList<>();
+        Set<Integer> prefetches = new HashSet<>();
+        // Cancelling a running decode does not stop it, its result is dropped.
+        Set<Integer> cancelled = new HashSet<>();
+        int[] running = new int[WORKERS];
+        long[] finish = new long[WORKERS];
+        for (int w = 0; w < WORKERS; w++) {
+            running[w] = -1;
+        }
+        int previous = -1;
+        int next = 0;
+        long end = trace.get(trace.size() - 1)[0] + DECODE_MS * QUEUE_SIZE;
+        for (long now = 0; now <= end; now++) {
+            for (int w = 0; w < WORKERS; w++) {
+                if (running[w] >= 0 && finish[w] <= now) {
+                    Integer done = running[w];
+                    running[w] = -1;
+                    if (cancelled.remove(done)) {
+                        result.mWasted++;
+                    } else if (prefetches.remove(done)) {
+                        prefetchCache.add(done);
+                        if (prefetchCache.size() > PREFETCH_CAPACITY) {
+                            Iterator<Integer> it = prefetchCache.iterator();
+                            it.next();
+                            it.remove();
+                            result.mWasted++;
+                        }
+                    } else {
+                        if (done != previous) {
+                            // The user moved on before the thumbnail could be shown.
+                            result.mWasted++;
+                        }
+                        userCache.add(done);
+                    }
+                }
+            }
+            if (next < trace.size() && trace.get(next)[0] == now) {
+                Integer index = trace.get(next++)[1];
+                result.mRequests++;
+                if (userCache.contains(index)) {
+                    result.mHits++;
+                } else if (prefetchCache.remove(index)) {
+                    result.mHits++;
+                    userCache.add(index);
+                } else if (!prefetches.remove(index)) {
+                    // Not in flight either: load it, after the loads already queued.
+                    queue.addLast(index);
+                }
+                if (index != previous) {
+                    Set<Integer> inFlight = new HashSet<>(prefetches);
+                    int[] window = prefetcher.onRequest(index, previous, now, inFlight);
+                    for (Iterator<Integer> it = prefetches.iterator(); it.hasNext(); ) {
+                        Integer key = it.next();
+                        if (!inFlight.contains(key)) {
+                            it.remove();
+                            if (!queue.remove(key)) {
+                                cancelled.add(key);
+                            }
+                        }
+                    }
+                    for (int key : window) {
+                        if (key < 0 || key >= POSITIONS || userCache.contains(key)
+                                || prefetchCache.contains(key) || queue.contains(key)
+                                || isRunning(running, key)) {
+                            continue;
+                        }
+                        if (prefetches.size() + prefetchCache.size() >= PREFETCH_CAPACITY) {
+                            break;
+                        }
+                        prefetches.add(key);
+                        queue.addLast(key);
+                    }
+                    while (queue.size() > QUEUE_SIZE) {
+                        prefetches.remove(queue.removeFirst());
+                    }
+                    previous = index;
+                }
+            }
+            for (int w = 0; w < WORKERS; w++) {
+                if (running[w] < 0 && !queue.isEmpty()) {
+                    running[w] = queue.removeFirst();
+                    finish[w] = now + DECODE_MS;
+                }
+            }
+        }
+        result.mWasted += prefetchCache.size();
+        return result;
+    }
+
+    private static boolean isRunning(int[] running, int key) {
+        for (int index : running) {
+            if (index == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.media;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class TrickPlayFileTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("trickplay", ".tply");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void readsWhatWasWritten() throws IOException {
+        long[] positions = {0, 10000, 20000, 30000, 40000, 50000, 60000};
+        byte[] first = {1, 2, 3, 4, 5};
+        byte[] second = {6, 7, 8};
+        TrickPlayFile.write(mFile, positions, 160, 90, 3, 2, Arrays.asList(first, second));
+
+        TrickPlayFile trickPlayFile = new TrickPlayFile(mFile);
+        assertEquals(160, trickPlayFile.getTileWidth());
+        assertEquals(90, trickPlayFile.getTileHeight());
+        assertEquals(6, trickPlayFile.getTilesPerSheet());
+        assertEquals(2, trickPlayFile.getSheetCount());
+        assertArrayEquals(positions, trickPlayFile.getPositions());
+        assertArrayEquals(first, trickPlayFile.readSheet(0));
+        assertArrayEquals(second, trickPlayFile.readSheet(1));
+
+        // Thumbnail 5 is the last tile of the first sheet, 6 the first tile of the second.
+        assertEquals(0, trickPlayFile.getSheetIndex(5));
+        assertEquals(320, trickPlayFile.getTileLeft(5));
+        assertEquals(90, trickPlayFile.getTileTop(5));
+        assertEquals(1, trickPlayFile.getSheetIndex(6));
+        assertEquals(0, trickPlayFile.getTileLeft(6));
+        assertEquals(0, trickPlayFile.getTileTop(6));
+    }
+
+    @Test
+    public void rejectsInvalidGeometry() throws IOException {
+        // tile width, tile height, columns, rows, positions, sheets
+        assertRejected(160, 90, 0, 2, 0, 0);
+        assertRejected(160, 90, 3, 0, 0, 0);
+        assertRejected(-160, 90, 3, 2, 0, 0);
+        assertRejected(160, 0, 3, 2, 0, 0);
+        assertRejected(160, 90, 3, 2, -1, 0);
+        assertRejected(160, 90, 3, 2, 0, -1);
+
+        // 7 thumbnails do not fit in one sheet of 6 tiles.
+        assertRejected(160, 90, 3, 2, 7, 1);
+    }
+
+    @Test
+    public void rejectsSheetsOutsideOfFile() throws IOException {
+        writeHeader(160, 90, 3, 2, 0, 1, 1000);
+        try {
+            new TrickPlayFile(mFile);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private void assertRejected(int tileWidth, int tileHeight, int columns, int rows,
+            int positionCount, int sheetCount) throws IOException {
+        writeHeader(tileWidth, tileHeight, columns, rows, positionCount, sheetCount, 0);
+        try {
+            new TrickPlayFile(mFile);
+            fail("Accepted " + tileWidth + "x" + tileHeight + " tiles, " + columns + "x" + rows
+                    + " per sheet, " + positionCount + " positions, " + sheetCount + " sheets");
+        } catch (IOException expected) {
+        }
+    }
+
+    /**
+     * Writes a header followed by the positions and sheet entries it announces, each sheet of
+     * the given length starting right after the sheet table, without the sheet data.
+     */
+    private void writeHeader(int tileWidth, int tileHeight, int columns, int rows,
+            int positionCount, int sheetCount, int sheetLength) throws IOException {
+        int dataOffset = TrickPlayFile.HEADER_BYTES + Math.max(positionCount, 0) * 8
+                + Math.max(sheetCount, 0) * TrickPlayFile.SHEET_ENTRY_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(dataOffset);
+        buffer.putInt(TrickPlayFile.MAGIC)
+                .putInt(TrickPlayFile.VERSION)
+                .putInt(tileWidth)
+                .putInt(tileHeight)
+                .putInt(columns)
+                .putInt(rows)
+                .putInt(positionCount)
+                .putInt(sheetCount);
+        for (int i = 0; i < positionCount; i++) {
+            buffer.putLong(i * 10000L);
+        }
+        for (int i = 0; i < sheetCount; i++) {
+            buffer.putLong(dataOffset).putInt(sheetLength);
+        }
+        FileOutputStream out = new FileOutputStream(mFile);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import androidx.leanback.widget.ObjectAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that the edits of {@link ListAdapter}, made directly or through a batch, are notified as
+ * range operations. The notifications are replayed on a plain list to check that they describe
+ * the edits. The edits are timed by ListAdapterBatchBenchmark.
+ */
+public class ListAdapterTest {
+
+    private static final int ROW_SIZE = 10000;
+    private static final int BLOCK_SIZE = 500;
+
+    private ListAdapter<Integer> mAdapter;
+    private RecordingObserver mObserver;
+
+    @Before
+    public void setUp() {
+        mAdapter = new ListAdapter<>();
+        mObserver = new RecordingObserver();
+        mAdapter.registerObserver(mObserver);
+    }
+
+    @Test
+    public void batchMergesAdjacentEdits() {
+        fill(mAdapter, 10);
+        mObserver.reset(mAdapter);
+        ListAdapter<Integer>.Batch batch = mAdapter.beginBatch();
+        // Removing the same position three times, then the two preceding items.
+        batch.remove(4, 1).remove(4, 1).remove(4, 1).remove(2, 2);
+        batch.add(2, 100).add(3, 101).add(2, 99);
+        batch.replace(0, 50).replace(1, 51);
+        batch.move(7, 0);
+        assertEquals(4, batch.getNotificationCount());
+        assertEquals(10, mObserver.mMirror.size());
+        batch.commit();
+
+        assertEquals(Arrays.asList(9, 50, 51, 99, 100, 101, 7, 8),
+                mAdapter.unmodifiableList());
+        assertEquals(4, mObserver.mNotifications);
+        assertEquals(mAdapter.unmodifiableList(), mObserver.resolve());
+    }
+
+    @Test
+    public void batchCommitFailsIfAdapterChanged() {
+        fill(mAdapter, 3);
+        ListAdapter<Integer>.Batch batch = mAdapter.beginBatch().remove(0, 1);
+        mAdapter.add(4);
+        try {
+            batch.commit();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 4), mAdapter.unmodifiableList());
+    }
+
+    /**
+     * Moves a block of a 10k item row to another place, item by item, as a live reorder does.
+     */
+    @Test
+    public void batchReordersLongRowWithTwoNotifications() {
+        fill(mAdapter, ROW_SIZE);
+        mObserver.reset(mAdapter);
+        moveBlockItemByItem(mAdapter);
+        assertEquals(2 * BLOCK_SIZE, mObserver.mNotifications);
+        List<Integer> expected = new ArrayList<>(mAdapter.unmodifiableList());
+
+        fill(mAdapter, ROW_SIZE);
+        mObserver.reset(mAdapter);
+        moveBlockInBatch(mAdapter);
+        assertEquals(2, mObserver.mNotifications);
+        assertEquals(expected, mAdapter.unmodifiableList());
+        assertEquals(expected, mObserver.resolve());
+    }
+
+    @Test
+    public void removeItemsIsOneRangeOperation() {
+        fill(mAdapter, 10);
+        mObserver.reset(mAdapter);
+        assertEquals(4, mAdapter.removeItems(6, 10));
+        assertEquals(1, mObserver.mNotifications);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), mObserver.resolve());
+    }
+
+    @Test
+    public void removeItemsOfLongRowIsOneRangeOperation() {
+        fill(mAdapter, ROW_SIZE);
+        mObserver.reset(mAdapter);
+        assertEquals(ROW_SIZE / 2, mAdapter.removeItems(0, ROW_SIZE / 2));
+        assertEquals(1, mObserver.mNotifications);
+        assertEquals(ROW_SIZE / 2, mAdapter.size());
+        assertEquals(mAdapter.unmodifiableList(), mObserver.resolve());
+    }
+
+    @Test
+    public void moveIsOneMoveOperation() {
+        fill(mAdapter, 10);
+        mObserver.reset(mAdapter);
+        mAdapter.move(7, 2);
+        mAdapter.move(0, 9);
+        mAdapter.move(4, 4);
+        assertEquals(2, mObserver.mNotifications);
+        assertEquals(Arrays.asList(1, 7, 2, 3, 4, 5, 6, 8, 9, 0), mAdapter.unmodifiableList());
+        assertEquals(mAdapter.unmodifiableList(), mObserver.resolve());
+    }
+
+    /**
+     * Moves the items 1000 to 1499 to position 8000 with one notification per item.
+     */
+    static void moveBlockItemByItem(ListAdapter<Integer> adapter) {
+        List<Integer> block = new ArrayList<>(BLOCK_SIZE);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            Integer item = adapter.get(1000);
+            block.add(item);
+            adapter.remove(item);
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            adapter.add(8000 + i, block.get(i));
+        }
+    }
+
+    /**
+     * Moves the same items as {@link #moveBlockItemByItem} through a batch.
+     */
+    static void moveBlockInBatch(ListAdapter<Integer> adapter) {
+        ListAdapter<Integer>.Batch batch = adapter.beginBatch();
+        List<Integer> block = new ArrayList<>(BLOCK_SIZE);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            block.add(batch.get(1000));
+            batch.remove(1000, 1);
+        }
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            batch.add(8000 + i, block.get(i));
+        }
+        batch.commit();
+    }
+
+    static void fill(ListAdapter<Integer> adapter, int size) {
+        adapter.clear();
+        List<Integer> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        adapter.addAll(0, items);
+    }
+
+    /**
+     * Counts notifications and replays them on a mirror of the adapter content, with null in
+     * place of the inserted and changed items.
+     */
+    static class RecordingObserver extends ObjectAdapter.DataObserver {
+        private ListAdapter<Integer> mAdapter;
+        final List<Integer> mMirror = new ArrayList<>();
+        int mNotifications;
+
+        void reset(ListAdapter<Integer> adapter) {
+            mAdapter = adapter;
+            mMirror.clear();
+            mMirror.addAll(adapter.unmodifiableList());
+            mNotifications = 0;
+        }
+
+        /**
+         * Returns the mirror with the inserted and changed items read from the adapter.
+         */
+        List<Integer> resolve() {
+            assertEquals(mAdapter.size(), mMirror.size());
+            for (int i = 0; i < mMirror.size(); i++) {
+                if (mMirror.get(i) == null) {
+                    mMirror.set(i, mAdapter.get(i));
+                }
+            }
+            return mMirror;
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mNotifications++;
+            mMirror.addAll(positionStart, Collections.<Integer>nCopies(itemCount, null));
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mNotifications++;
+            mMirror.subList(positionStart, positionStart + itemCount).clear();
+        }
+
+        @Override
+        public void onItemMoved(int fromPosition, int toPosition) {
+            mNotifications++;
+            mMirror.add(toPosition, mMirror.remove(fromPosition));
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount) {
+            mNotifications++;
+            for (int i = positionStart; i < positionStart + itemCount; i++) {
+                mMirror.set(i, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LiveDataCacheTest {
+
+    private final AtomicInteger mLoads = new AtomicInteger();
+
+    private final LiveDataCache.Loader<String, String> mLoader =
+            new LiveDataCache.Loader<String, String>() {
+                @Override
+                public LiveData<String> load(String key) {
+                    mLoads.incrementAndGet();
+                    return new FakeLiveData();
+                }
+            };
+
+    @Test
+    public void sharesLiveDataOfSameKey() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(4, mLoader);
+        LiveData<String> first = cache.get("a");
+        assertSame(first, cache.get("a"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(1, mLoads.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedUnobservedEntries() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(2, mLoader);
+        LiveData<String> a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertSame(a, cache.get("a"));
+        assertEquals(3, mLoads.get());
+    }
+
+    @Test
+    public void keepsObservedEntriesAboveMaxSize() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(2, mLoader);
+        FakeLiveData a = (FakeLiveData) cache.get("a");
+        FakeLiveData b = (FakeLiveData) cache.get("b");
+        a.mActive = true;
+        b.mActive = true;
+        cache.get("c");
+        assertEquals(3, cache.size());
+        assertEquals(0, cache.evictionCount());
+
+        // Once unobserved, entries are evicted on the next trim.
+        a.mActive = false;
+        cache.trimToSize(cache.maxSize());
+        assertEquals(2, cache.size());
+        assertSame(b, cache.get("b"));
+        assertNotSame(a, cache.get("a"));
+    }
+
+    @Test
+    public void keepsEntriesObservedByStoppedComponents() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(1, mLoader);
+        FakeLiveData a = (FakeLiveData) cache.get("a");
+        // Observed by a fragment in the back stack.
+        a.mInactive = true;
+        cache.get("b");
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get("a"));
+    }
+
+    @Test
+    public void prewarmObservesUntilTheFirstValue() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(1, mLoader);
+        cache.prewarm("a");
+        cache.prewarm("a");
+        FakeLiveData a = (FakeLiveData) cache.get("a");
+        assertEquals(1, mLoads.get());
+        assertEquals(1, a.mObservers.size());
+
+        // Still loading, the entry is not evicted.
+        cache.get("b");
+        assertSame(a, cache.get("a"));
+
+        a.dispatch("value");
+        assertTrue(a.mObservers.isEmpty());
+        cache.get("c");
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void prewarmDoesNotObserveObservedEntries() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(4, mLoader);
+        FakeLiveData a = (FakeLiveData) cache.get("a");
+        a.mActive = true;
+        cache.prewarm("a");
+        assertTrue(a.mObservers.isEmpty());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void longBrowseSessionStaysBounded() {
+        LiveDataCache<String, String> cache = new LiveDataCache<>(24, mLoader);
+        List<FakeLiveData> visible = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            FakeLiveData row = (FakeLiveData) cache.get("category" + i);
+            // About 3 rows are on screen at once.
+            row.mActive = true;
+            visible.add(row);
+            if (visible.size() > 3) {
+                visible.remove(0).mActive = false;
+            }
+            assertTrue(cache.size() <= cache.maxSize());
+        }
+        assertEquals(500 - 24, cache.evictionCount());
+    }
+
+    @Test
+    public void concurrentGetsShareOneLiveData() throws InterruptedException {
+        final LiveDataCache<String, String> cache = new LiveDataCache<>(8, mLoader);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<LiveData<String>> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        LiveData<String> liveData = cache.get("k" + (j % 4));
+                        if (j == 0) {
+                            synchronized (results) {
+                                results.add(liveData);
+                            }
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4, mLoads.get());
+        assertEquals(8 * 1000, cache.hitCount() + cache.missCount());
+        for (LiveData<String> liveData : results) {
+            assertSame(results.get(0), liveData);
+        }
+    }
+
+    /**
+     * Live data whose observers are simulated, as observing needs the main thread. Observers
+     * registered forever are kept and called by {@link #dispatch}.
+     */
+    private static class FakeLiveData extends LiveData<String> {
+        // Observed by a started component.
+        boolean mActive;
+        // Observed by a stopped component.
+        boolean mInactive;
+        final List<Observer<String>> mObservers = new ArrayList<>();
+
+        @Override
+        public void observeForever(Observer<String> observer) {
+            mObservers.add(observer);
+        }
+
+        @Override
+        public void removeObserver(Observer<String> observer) {
+            mObservers.remove(observer);
+        }
+
+        void dispatch(String value) {
+            for (Observer<String> observer : new ArrayList<>(mObservers)) {
+                observer.onChanged(value);
+            }
+        }
+
+        @Override
+        public boolean hasActiveObservers() {
+            return mActive || !mObservers.isEmpty();
+        }
+
+        @Override
+        public boolean hasObservers() {
+            return mActive || mInactive || !mObservers.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.db.repo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SearchQueryTest {
+
+    @Test
+    public void wordsArePrefixesOfAllMatchingVideos() {
+        assertEquals("\"google\"*", SearchQuery.toMatchQuery("Google"));
+        assertEquals("\"google\"* \"i\"* \"o\"*", SearchQuery.toMatchQuery("  Google I/O "));
+    }
+
+    @Test
+    public void operatorsAreQuoted() {
+        assertEquals("\"cats\"* \"or\"* \"dogs\"*", SearchQuery.toMatchQuery("cats OR \"dogs\""));
+        assertEquals("\"near\"* \"x\"*", SearchQuery.toMatchQuery("NEAR -x*"));
+    }
+
+    @Test
+    public void textWithoutWordsHasNoQuery() {
+        assertNull(SearchQuery.toMatchQuery(null));
+        assertNull(SearchQuery.toMatchQuery(""));
+        assertNull(SearchQuery.toMatchQuery(" %*\" "));
+    }
+}
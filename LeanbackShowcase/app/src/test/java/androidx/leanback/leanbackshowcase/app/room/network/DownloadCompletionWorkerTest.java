@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import static androidx.leanback.leanbackshowcase.app.room.network.DownloadTestHelper.createVideo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class DownloadCompletionWorkerTest {
+
+    private final DownloadTestHelper.FakeDownloader mDownloader =
+            new DownloadTestHelper.FakeDownloader();
+    private final DownloadScheduler mScheduler = new DownloadScheduler(mDownloader, 10);
+    private final QueuedExecutor mWorkerExecutor = new QueuedExecutor();
+    private final QueuedExecutor mMainExecutor = new QueuedExecutor();
+    private final List<List<DownloadingTaskDescription>> mSaved = new ArrayList<>();
+    private final List<List<DownloadingTaskDescription>> mDelivered = new ArrayList<>();
+    private final List<List<DownloadingTaskDescription>> mNotSaved = new ArrayList<>();
+    private RuntimeException mSaveFailure;
+
+    private final DownloadCompletionWorker mWorker = new DownloadCompletionWorker(mScheduler,
+            mDownloader,
+            new DownloadCompletionWorker.Store() {
+                @Override
+                public void saveCompletedTasks(List<DownloadingTaskDescription> tasks) {
+                    if (mSaveFailure != null) {
+                        throw mSaveFailure;
+                    }
+                    mSaved.add(tasks);
+                }
+            },
+            mWorkerExecutor, mMainExecutor,
+            new DownloadCompletionWorker.Callback() {
+                @Override
+                public void onTasksCompleted(List<DownloadingTaskDescription> tasks) {
+                    mDelivered.add(tasks);
+                }
+
+                @Override
+                public void onSaveFailed(List<DownloadingTaskDescription> tasks,
+                        RuntimeException e) {
+                    mNotSaved.add(tasks);
+                }
+            });
+
+    @Test
+    public void batchesCompletionsReceivedTogether() {
+        for (int i = 1; i <= 3; i++) {
+            mScheduler.schedule(createVideo(i), DownloadScheduler.PRIORITY_HIGH);
+        }
+        mDownloader.mSuccessful.add(1L);
+        mDownloader.mSuccessful.add(2L);
+        mDownloader.mSuccessful.add(3L);
+        mWorker.onDownloadCompleted(1);
+        mWorker.onDownloadCompleted(2);
+        mWorker.onDownloadCompleted(3);
+        assertEquals(1, mWorkerExecutor.mCommands.size());
+
+        // Nothing is saved or delivered on the receiving thread.
+        assertTrue(mSaved.isEmpty());
+        mWorkerExecutor.runAll();
+        assertEquals(1, mDownloader.mQueries);
+        assertEquals(1, mSaved.size());
+        assertEquals(3, mSaved.get(0).size());
+        assertTrue(mDelivered.isEmpty());
+
+        mMainExecutor.runAll();
+        assertEquals(mSaved, mDelivered);
+        DownloadCompletionWorker.Metrics metrics = mWorker.getMetrics();
+        assertEquals(3, metrics.completions);
+        assertEquals(1, metrics.batches);
+        assertEquals(3, metrics.completedTasks);
+    }
+
+    @Test
+    public void completionsReceivedDuringBatchGoToNextBatch() {
+        mScheduler.schedule(createVideo(1), DownloadScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(createVideo(2), DownloadScheduler.PRIORITY_HIGH);
+        mDownloader.mSuccessful.add(1L);
+        mDownloader.mSuccessful.add(2L);
+        mWorker.onDownloadCompleted(1);
+        mWorkerExecutor.runNext();
+        mWorker.onDownloadCompleted(2);
+        mWorkerExecutor.runAll();
+        mMainExecutor.runAll();
+        assertEquals(2, mDelivered.size());
+        assertEquals(2, mWorker.getMetrics().batches);
+    }
+
+    @Test
+    public void failedAndCancelledDownloadsAreNotSaved() {
+        mScheduler.schedule(createVideo(1), DownloadScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(createVideo(2), DownloadScheduler.PRIORITY_HIGH);
+        mDownloader.mFailed.add(1L);
+        mWorker.onDownloadCompleted(1);
+        mWorker.onDownloadCompleted(2);
+        mWorkerExecutor.runAll();
+        mMainExecutor.runAll();
+        assertTrue(mSaved.isEmpty());
+        assertTrue(mDelivered.isEmpty());
+        assertEquals(2, mScheduler.getMetrics().failedJobs);
+        assertEquals(2, mWorker.getMetrics().completions);
+    }
+
+    @Test
+    public void batchNotSavedIsNotDelivered() {
+        mScheduler.schedule(createVideo(1), DownloadScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(createVideo(2), DownloadScheduler.PRIORITY_HIGH);
+        mDownloader.mSuccessful.add(1L);
+        mDownloader.mSuccessful.add(2L);
+        mSaveFailure = new IllegalStateException("Cannot write the database");
+        mWorker.onDownloadCompleted(1);
+        mWorkerExecutor.runAll();
+        assertTrue(mNotSaved.isEmpty());
+        mMainExecutor.runAll();
+        assertTrue(mDelivered.isEmpty());
+        assertEquals(1, mNotSaved.size());
+        assertEquals(1, mNotSaved.get(0).size());
+        DownloadCompletionWorker.Metrics metrics = mWorker.getMetrics();
+        assertEquals(0, metrics.batches);
+        assertEquals(0, metrics.completedTasks);
+        assertEquals(1, metrics.failedBatches);
+
+        // The next batch is delivered once saved.
+        mSaveFailure = null;
+        mWorker.onDownloadCompleted(2);
+        mWorkerExecutor.runAll();
+        mMainExecutor.runAll();
+        assertEquals(1, mDelivered.size());
+        assertEquals(1, mWorker.getMetrics().batches);
+        assertEquals(1, mWorker.getMetrics().failedBatches);
+    }
+
+    @Test
+    public void savesTasksCompletedWithoutBroadcast() {
+        VideoEntity video = createVideo(1);
+        DownloadingTaskDescription task =
+                new DownloadingTaskDescription(video, DownloadScheduler.CARD);
+        task.setStoragePath("file://card1");
+        mWorker.onTasksCompleted(Collections.singletonList(task));
+        mWorkerExecutor.runAll();
+        mMainExecutor.runAll();
+        assertEquals(0, mDownloader.mQueries);
+        assertEquals(Collections.singletonList(Collections.singletonList(task)), mDelivered);
+    }
+
+    private static class QueuedExecutor implements Executor {
+        final List<Runnable> mCommands = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mCommands.add(command);
+        }
+
+        void runNext() {
+            mCommands.remove(0).run();
+        }
+
+        void runAll() {
+            while (!mCommands.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import static androidx.leanback.leanbackshowcase.app.room.network.DownloadTestHelper.createVideo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class DownloadSchedulerTest {
+
+    private final DownloadTestHelper.FakeDownloader mDownloader = new DownloadTestHelper.FakeDownloader();
+    private final DownloadScheduler mScheduler = new DownloadScheduler(mDownloader, 2);
+
+    @Test
+    public void downloadsImagesBeforeVideo() {
+        VideoEntity video = createVideo(1);
+        assertTrue(mScheduler.schedule(video, DownloadScheduler.PRIORITY_HIGH));
+        assertEquals(Arrays.asList("card1"), mDownloader.mUrls);
+
+        List<DownloadingTaskDescription> tasks = finish("card1");
+        assertEquals(1, tasks.size());
+        assertEquals(DownloadScheduler.CARD, tasks.get(0).getCategory());
+        assertEquals("file://card1", tasks.get(0).getStoragePath());
+
+        finish("bg1");
+        finish("video1");
+        assertEquals(Arrays.asList("card1", "bg1", "video1"), mDownloader.mUrls);
+        assertEquals(1, mScheduler.getMetrics().completedVideos);
+        assertEquals(0, mScheduler.getMetrics().pendingVideos);
+    }
+
+    @Test
+    public void limitsConcurrentDownloads() {
+        for (int i = 0; i < 50; i++) {
+            mScheduler.schedule(createVideo(i), DownloadScheduler.PRIORITY_LOW);
+        }
+        assertEquals(2, mDownloader.mUrls.size());
+        assertEquals(2, mScheduler.getMetrics().runningJobs);
+        assertEquals(48, mScheduler.getMetrics().queuedJobs);
+
+        // The images of all the videos are downloaded before the first video.
+        while (!mDownloader.mRunning.isEmpty()) {
+            assertTrue(mScheduler.getMetrics().runningJobs <= 2);
+            finish(mDownloader.mRunning.get(0));
+        }
+        assertEquals(150, mDownloader.mUrls.size());
+        assertEquals("bg49", mDownloader.mUrls.get(99));
+        assertEquals("video0", mDownloader.mUrls.get(100));
+        assertEquals(50, mScheduler.getMetrics().completedVideos);
+    }
+
+    @Test
+    public void startsHighPriorityDownloadsFirst() {
+        for (int i = 0; i < 10; i++) {
+            mScheduler.schedule(createVideo(i), DownloadScheduler.PRIORITY_LOW);
+        }
+        mScheduler.schedule(createVideo(100), DownloadScheduler.PRIORITY_HIGH);
+        finish("card0");
+        assertEquals("card100", last(mDownloader.mUrls));
+
+        // Scheduling again raises the priority of a queued video.
+        mScheduler.schedule(createVideo(9), DownloadScheduler.PRIORITY_HIGH);
+        finish("card1");
+        assertEquals("card9", last(mDownloader.mUrls));
+    }
+
+    @Test
+    public void deduplicatesVideosAndUrls() {
+        VideoEntity video = createVideo(1);
+        assertTrue(mScheduler.schedule(video, DownloadScheduler.PRIORITY_HIGH));
+        assertFalse(mScheduler.schedule(video, DownloadScheduler.PRIORITY_HIGH));
+
+        // Another video with the same card image.
+        VideoEntity other = createVideo(2);
+        other.setCardImageUrl("card1");
+        mScheduler.schedule(other, DownloadScheduler.PRIORITY_HIGH);
+        assertEquals(Arrays.asList("card1"), mDownloader.mUrls);
+        assertEquals(2, mScheduler.getMetrics().deduplicatedJobs);
+
+        List<DownloadingTaskDescription> tasks = finish("card1");
+        assertEquals(2, tasks.size());
+        assertEquals(Arrays.asList("card1", "bg1", "bg2"), mDownloader.mUrls);
+    }
+
+    @Test
+    public void skipsDownloadedResources() {
+        VideoEntity video = createVideo(1);
+        video.setVideoCardImageLocalStorageUrl("file://card1");
+        video.setVideoBgImageLocalStorageUrl("file://bg1");
+        mScheduler.schedule(video, DownloadScheduler.PRIORITY_HIGH);
+        assertEquals(Arrays.asList("video1"), mDownloader.mUrls);
+
+        assertFalse(mScheduler.schedule(createDownloaded(2), DownloadScheduler.PRIORITY_HIGH));
+    }
+
+    @Test
+    public void failureGivesUpVideoAndStartsNextJob() {
+        mScheduler.schedule(createVideo(1), DownloadScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(createVideo(2), DownloadScheduler.PRIORITY_HIGH);
+        mScheduler.schedule(createVideo(3), DownloadScheduler.PRIORITY_HIGH);
+        assertTrue(mScheduler.onDownloadFinished(mDownloader.idOf("card1"), false, null)
+                .isEmpty());
+        assertEquals(Arrays.asList("card1", "card2", "card3"), mDownloader.mUrls);
+        assertEquals(1, mScheduler.getMetrics().failedJobs);
+        assertEquals(2, mScheduler.getMetrics().pendingVideos);
+
+        // Urls the downloader refuses fail without taking a slot.
+        mDownloader.mRefused.add("bg2");
+        finish("card2");
+        assertEquals(Arrays.asList("card1", "card2", "card3", "bg2"), mDownloader.mUrls);
+        assertEquals(2, mScheduler.getMetrics().failedJobs);
+        assertEquals(1, mScheduler.getMetrics().runningJobs);
+    }
+
+    @Test
+    public void resumeAdoptsDownloadsOfPreviousProcess() {
+        VideoEntity video = createVideo(1);
+        List<DownloadScheduler.Download> downloads = Arrays.asList(
+                new DownloadScheduler.Download(10, "card1", true, "file://card1"),
+                new DownloadScheduler.Download(11, "bg1", false, null));
+
+        List<DownloadingTaskDescription> tasks =
+                mScheduler.resume(Collections.singletonList(video), downloads);
+        assertEquals(1, tasks.size());
+        assertEquals("file://card1", tasks.get(0).getStoragePath());
+        assertTrue(mDownloader.mUrls.isEmpty());
+        assertTrue(mScheduler.isRunning(11));
+
+        tasks = mScheduler.onDownloadFinished(11, true, "file://bg1");
+        assertEquals(DownloadScheduler.BACKGROUND, tasks.get(0).getCategory());
+        assertEquals(Arrays.asList("video1"), mDownloader.mUrls);
+    }
+
+    @Test
+    public void removesSuccessfulDownloadsOfLocalUris() {
+        mDownloader.mDownloads.add(new DownloadScheduler.Download(1, "card1", true,
+                "file://card1"));
+        mDownloader.mDownloads.add(new DownloadScheduler.Download(2, "video1", true,
+                "file://video1"));
+        mDownloader.mDownloads.add(new DownloadScheduler.Download(3, "video2", true,
+                "file://video2"));
+        mDownloader.mDownloads.add(new DownloadScheduler.Download(4, "bg1", false, null));
+
+        Set<String> notFound = mScheduler.removeDownloads(
+                Arrays.asList("file://card1", "file://video1", "file://bg1"));
+        assertEquals(Arrays.asList(1L, 2L), mDownloader.mRemoved);
+        assertEquals(Collections.singleton("file://bg1"), notFound);
+    }
+
+    @Test
+    public void ignoresUnknownDownloads() {
+        assertTrue(mScheduler.onDownloadFinished(42, true, "file://other").isEmpty());
+        assertEquals(0, mScheduler.getMetrics().completedJobs);
+    }
+
+    private List<DownloadingTaskDescription> finish(String url) {
+        return mScheduler.onDownloadFinished(mDownloader.idOf(url), true, "file://" + url);
+    }
+
+    private static String last(List<String> list) {
+        return list.get(list.size() - 1);
+    }
+
+    private static VideoEntity createDownloaded(long id) {
+        VideoEntity video = createVideo(id);
+        video.setVideoCardImageLocalStorageUrl("file://card" + id);
+        video.setVideoBgImageLocalStorageUrl("file://bg" + id);
+        video.setVideoLocalStorageUrl("file://video" + id);
+        return video;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.leanback.leanbackshowcase.app.room.network;
+
+import static org.junit.Assert.assertTrue;
+
+import androidx.leanback.leanbackshowcase.app.room.db.entity.VideoEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Videos and downloader shared by the tests of the download scheduling.
+ */
+final class DownloadTestHelper {
+
+    private DownloadTestHelper() {
+    }
+
+    /**
+     * Returns a video with nothing downloaded, whose resources have the urls "card<id>",
+     * "bg<id>" and "video<id>".
+     */
+    static VideoEntity createVideo(long id) {
+        VideoEntity video = new VideoEntity();
+        video.setId(id);
+        video.setCardImageUrl("card" + id);
+        video.setBgImageUrl("bg" + id);
+        video.setVideoUrl("video" + id);
+        video.setVideoCardImageLocalStorageUrl("");
+        video.setVideoBgImageLocalStorageUrl("");
+        video.setVideoLocalStorageUrl("");
+        return video;
+    }
+
+    /**
+     * Downloader which only records the calls. The id of a download is the position of its url
+     * among the enqueued urls, starting at 1.
+     */
+    static class FakeDownloader implements DownloadScheduler.Downloader {
+        // Urls in the order they were enqueued, and the ones not finished yet.
+        final List<String> mUrls = new ArrayList<>();
+        final List<String> mRunning = new ArrayList<>();
+        final List<String> mRefused = new ArrayList<>();
+
+        // Returned by queryDownloads().
+        final List<DownloadScheduler.Download> mDownloads = new ArrayList<>();
+
+        // Status returned by queryDownloadsById(), the ids in neither list were cancelled.
+        final List<Long> mSuccessful = new ArrayList<>();
+        final List<Long> mFailed = new ArrayList<>();
+        int mQueries;
+
+        final List<Long> mRemoved = new ArrayList<>();
+
+        @Override
+        public long enqueue(String url, String category, long videoId) {
+            mUrls.add(url);
+            if (mRefused.contains(url)) {
+                return 0;
+            }
+            mRunning.add(url);
+            return mUrls.size();
+        }
+
+        @Override
+        public List<DownloadScheduler.Download> queryDownloads() {
+            return mDownloads;
+        }
+
+        @Override
+        public List<DownloadScheduler.Download> queryDownloadsById(long... ids) {
+            mQueries++;
+            List<DownloadScheduler.Download> downloads = new ArrayList<>();
+            for (long id : ids) {
+                if (mSuccessful.contains(id)) {
+                    downloads.add(new DownloadScheduler.Download(id, "url" + id, true,
+                            "file://url" + id));
+                } else if (mFailed.contains(id)) {
+                    downloads.add(new DownloadScheduler.Download(id, "url" + id, false, null));
+                }
+            }
+            return downloads;
+        }
+
+        @Override
+        public void remove(long... ids) {
+            for (long id : ids) {
+                mRemoved.add(id);
+            }
+        }
+
+        /**
+         * Returns the id of the running download of the url, which is no longer running.
+         */
+        long idOf(String url) {
+            assertTrue(url + " is not running", mRunning.remove(url));
+            return mUrls.indexOf(url) + 1;
+        }
+    }
+}